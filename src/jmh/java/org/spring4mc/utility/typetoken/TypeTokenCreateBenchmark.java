@@ -0,0 +1,56 @@
+package org.spring4mc.utility.typetoken;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Field;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Converting reflected types into tokens, through the cache of {@link TypeToken#create} and with a fresh converter.
+ */
+@State(Scope.Benchmark)
+public class TypeTokenCreateBenchmark {
+    private Field simple;
+    private Field nested;
+    private Field recursive;
+
+    @Setup
+    public void setup() throws NoSuchFieldException {
+        this.simple = Fixture.class.getDeclaredField("simple");
+        this.nested = Fixture.class.getDeclaredField("nested");
+        this.recursive = Fixture.class.getDeclaredField("recursive");
+    }
+
+    @Benchmark
+    public TypeToken<?> createSimple() {
+        return TypeToken.create(this.simple.getGenericType(), this.simple.getAnnotatedType());
+    }
+
+    @Benchmark
+    public TypeToken<?> createNested() {
+        return TypeToken.create(this.nested.getGenericType(), this.nested.getAnnotatedType());
+    }
+
+    @Benchmark
+    public TypeToken<?> createRecursive() {
+        return TypeToken.create(this.recursive.getGenericType(), this.recursive.getAnnotatedType());
+    }
+
+    @Benchmark
+    public TypeToken<?> convertNested() {
+        return new TypeTokenImpl.TypeTokenConverter().convert(this.nested.getGenericType(), this.nested.getAnnotatedType());
+    }
+
+    @Benchmark
+    public TypeToken<?> convertRecursive() {
+        return new TypeTokenImpl.TypeTokenConverter().convert(this.recursive.getGenericType(), this.recursive.getAnnotatedType());
+    }
+
+    static class Fixture<E extends Comparable<E>> {
+        String simple;
+        Map<String, List<Set<Integer>>> nested;
+        E recursive;
+    }
+}
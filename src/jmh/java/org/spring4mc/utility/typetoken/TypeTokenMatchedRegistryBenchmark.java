@@ -0,0 +1,40 @@
+package org.spring4mc.utility.typetoken;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Looking up a registry in which only the last registered matcher matches, with and without the lookup cache.
+ */
+@State(Scope.Benchmark)
+public class TypeTokenMatchedRegistryBenchmark {
+    @Param({"10", "100", "1000"})
+    private int entries;
+
+    @Param({"false", "true"})
+    private boolean cached;
+
+    private TypeTokenMatchedRegistry<Integer> registry;
+    private TypeToken<?> token;
+
+    @Setup
+    public void setup() {
+        this.registry = this.cached ? new TypeTokenMatchedRegistry<>(64) : new TypeTokenMatchedRegistry<>();
+        for (int i = 0; i < this.entries - 1; i++) {
+            // Kind checks and opaque predicates, like converters registered by hand
+            final int value = i;
+            this.registry.registerLast(i % 2 == 0 ? TypeTokenMatcher.isWildcard() : TypeTokenMatcher.declaredMatching(declared -> declared.getDeclaredType().hashCode() == value), value);
+        }
+
+        this.registry.registerLast(TypeTokenMatcher.isSuperClass(List.class), this.entries);
+        this.token = TypeToken.capture(new TypeToken.Capturing<List<String>>() {
+        });
+    }
+
+    @Benchmark
+    public Optional<Integer> findFirst() {
+        return this.registry.findFirst(this.token);
+    }
+}
@@ -0,0 +1,120 @@
+package org.spring4mc.utility.typetoken;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Operations on existing tokens. The compared tokens are equal but not the same instance, as interning would make
+ * them, so equals walks their structure.
+ * <p>
+ * Tokens memoize their hash code, string and stripped form, so the memoized benchmarks only measure the field read.
+ * The others run against a fresh deep copy per invocation, which has nothing memoized yet.
+ */
+@State(Scope.Benchmark)
+public class TypeTokenOperationsBenchmark {
+    private TypeToken<?> annotated;
+    private TypeToken<?> left;
+    private TypeToken<?> right;
+
+    @Setup
+    public void setup() {
+        this.annotated = TypeToken.capture(new TypeToken.Capturing<Map<@Marker String, List<@Marker Integer>>>() {
+        });
+        this.left = structure();
+        this.right = structure();
+    }
+
+    private static TypeToken<?> structure() {
+        final TypeToken<?> list = new TypeTokenImpl.ParameterizedImpl<>(TypeTokenCache.NO_ANNOTATIONS, List.class, null, new TypeToken<?>[]{TypeToken.ofClass(Integer.class)});
+        return new TypeTokenImpl.ParameterizedImpl<>(TypeTokenCache.NO_ANNOTATIONS, Map.class, null, new TypeToken<?>[]{TypeToken.ofClass(String.class), list});
+    }
+
+    private static TypeToken<?> copy(TypeToken<?> token) {
+        if (token instanceof TypeTokenImpl.ParameterizedImpl<?> parameterized) {
+            final TypeToken<?>[] typeArguments = parameterized.getTypeArguments().clone();
+            for (int i = 0; i < typeArguments.length; i++) {
+                typeArguments[i] = copy(typeArguments[i]);
+            }
+
+            return new TypeTokenImpl.ParameterizedImpl<>(parameterized.annotations, (Class) parameterized.getDeclaredType(), parameterized.getOwner(), typeArguments);
+        }
+
+        if (token instanceof TypeTokenImpl.DeclaredImpl<?> declared) {
+            return new TypeTokenImpl.DeclaredImpl<>(declared.annotations, declared.getDeclaredType());
+        }
+
+        return token;
+    }
+
+    @Benchmark
+    public TypeToken<?> stripAnnotations(FreshToken fresh) {
+        return fresh.token.stripAnnotations();
+    }
+
+    @Benchmark
+    public TypeToken<?> stripAnnotationsMemoized() {
+        return this.annotated.stripAnnotations();
+    }
+
+    @Benchmark
+    public boolean equalsStructure() {
+        return this.left.equals(this.right);
+    }
+
+    @Benchmark
+    public int hashCodeCached() {
+        return this.left.hashCode();
+    }
+
+    /**
+     * Hashes the outermost node as on construction, the hash codes of its children are cached by then.
+     */
+    @Benchmark
+    public int hashCodeComputed() {
+        return ((TypeTokenImpl<?>) this.left).cacheHash();
+    }
+
+    @Benchmark
+    public String toStringFresh(FreshToken fresh) {
+        return fresh.token.toString();
+    }
+
+    @Benchmark
+    public String toStringMemoized() {
+        return this.annotated.toString();
+    }
+
+    @Benchmark
+    public String toStringRendered() {
+        return TypeTokenToString.toString(this.annotated);
+    }
+
+    @Benchmark
+    public String toCanonicalString() {
+        return TypeTokenToString.toCanonicalString(this.annotated);
+    }
+
+    /**
+     * Deep copy of the annotated token, rebuilt before every invocation.
+     */
+    @State(Scope.Thread)
+    public static class FreshToken {
+        private TypeToken<?> token;
+
+        @Setup(Level.Invocation)
+        public void setup(TypeTokenOperationsBenchmark benchmark) {
+            this.token = copy(benchmark.annotated);
+        }
+    }
+
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target(ElementType.TYPE_USE)
+    @interface Marker {
+    }
+}
@@ -0,0 +1,84 @@
+package org.spring4mc.utility.typetoken;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resolving tokens against the bottom of an eight level hierarchy that swaps its type variables on every level.
+ * <p>
+ * {@link TypeTokenResolver#tryResolve(TypeToken, Class)} caches its results, so the uncached variant measures the
+ * resolution itself.
+ */
+@State(Scope.Benchmark)
+public class TypeTokenResolverBenchmark {
+    private TypeToken<?> wildcardParent;
+    private TypeToken<?> fieldType;
+    private TypeToken<?> returnType;
+    private TypeToken<?> parentType;
+
+    @Setup
+    public void setup() throws NoSuchFieldException, NoSuchMethodException {
+        this.wildcardParent = TypeToken.capture(new TypeToken.Capturing<Level0<? extends CharSequence, ? extends Number>>() {
+        });
+        this.fieldType = TypeToken.ofFieldType(Level0.class.getDeclaredField("second"));
+        this.returnType = TypeToken.ofMethodReturnType(Level0.class.getDeclaredMethod("map"));
+        this.parentType = TypeToken.ofClass(Level7.class);
+    }
+
+    @Benchmark
+    public TypeToken<?> tryResolve() {
+        return TypeTokenResolver.tryResolve(this.wildcardParent, Level7.class);
+    }
+
+    @Benchmark
+    public TypeToken<?> tryResolveUncached() {
+        return TypeTokenResolver.resolve(this.wildcardParent, Level7.class);
+    }
+
+    @Benchmark
+    public TypeToken<?> resolveDeclaredField() {
+        return TypeTokenResolver.resolveDeclaredTypes(this.fieldType, this.parentType);
+    }
+
+    @Benchmark
+    public TypeToken<?> resolveDeclaredReturnType() {
+        return TypeTokenResolver.resolveDeclaredTypes(this.returnType, this.parentType);
+    }
+
+    @Benchmark
+    public TypeTokenResolvedMembers resolveMembers() {
+        return TypeTokenResolver.resolveMembers(this.parentType);
+    }
+
+    static class Level0<A, B> {
+        A first;
+        List<B> second;
+
+        Map<A, B> map() {
+            return null;
+        }
+    }
+
+    static class Level1<B, A> extends Level0<A, B> {
+    }
+
+    static class Level2<A, B> extends Level1<B, A> {
+    }
+
+    static class Level3<B, A> extends Level2<A, B> {
+    }
+
+    static class Level4<A, B> extends Level3<B, A> {
+    }
+
+    static class Level5<B, A> extends Level4<A, B> {
+    }
+
+    static class Level6<A, B> extends Level5<B, A> {
+    }
+
+    static class Level7 extends Level6<String, Integer> {
+    }
+}
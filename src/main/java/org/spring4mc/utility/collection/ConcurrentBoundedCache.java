@@ -0,0 +1,703 @@
+package org.spring4mc.utility.collection;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.ToIntBiFunction;
+
+/**
+ * Concurrent cache bounded by entry count or total weight, evicting by W-TinyLFU.
+ * <p>
+ * New entries enter a small LRU window. Entries leaving the window are only admitted to the main space if they were
+ * used more often than the entry they would evict, as estimated by a count-min sketch that is halved periodically
+ * so old popularity fades. The main space is a segmented LRU: entries used again while on probation are promoted to
+ * the protected segment. Under memory pressure the cache therefore never flushes at once like a soft-referenced
+ * cache, and a scan of one-off keys can't displace the frequently used ones.
+ * <p>
+ * Reads never lock, they are recorded in lossy striped buffers and replayed against the policy in batches by
+ * whichever thread acquires the eviction lock. Writes update the map and then apply the policy under that lock.
+ * With weak keys, keys are held by weak references but still compared with {@code equals}, unless created by
+ * {@link #withWeakIdentityKeys(long)}, and entries of collected keys are dropped during maintenance. Values are held
+ * strongly, a value referencing its own key keeps the entry until it's evicted. Null keys and values are not supported.
+ *
+ * @param <K> the type of keys
+ * @param <V> the type of values
+ */
+public class ConcurrentBoundedCache<K, V> {
+    private static final int READ_BUFFER_SIZE = 16;
+    private static final int READ_BUFFER_MASK = READ_BUFFER_SIZE - 1;
+    private static final int MAXIMUM_READ_BUFFERS = 64;
+
+    // Share of the maximum for the admission window, and of the main space for its protected segment
+    private static final double WINDOW_RATIO = 0.01;
+    private static final double PROTECTED_RATIO = 0.8;
+
+    private static final byte NEW = 0;
+    private static final byte WINDOW = 1;
+    private static final byte PROBATION = 2;
+    private static final byte PROTECTED = 3;
+    private static final byte DEAD = 4;
+
+    private final ConcurrentHashMap<Object, Node<K, V>> data = new ConcurrentHashMap<>();
+    private final ToIntBiFunction<? super K, ? super V> weigher;
+    private final boolean weakKeys;
+    private final boolean identityKeys;
+    private final ReferenceQueue<K> keyQueue = new ReferenceQueue<>();
+    private final ReadBuffer<K, V>[] readBuffers;
+
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final long maximum;
+    private final long windowMaximum;
+    private final long protectedMaximum;
+    private final FrequencySketch sketch;
+    private final AccessOrder<K, V> window = new AccessOrder<>();
+    private final AccessOrder<K, V> probation = new AccessOrder<>();
+    private final AccessOrder<K, V> protectedSegment = new AccessOrder<>();
+    private long windowWeight;
+    private long protectedWeight;
+
+    // Written under the eviction lock only
+    private volatile long weightedSize;
+
+    public ConcurrentBoundedCache(long maximumSize) {
+        this(maximumSize, false);
+    }
+
+    public ConcurrentBoundedCache(long maximumSize, boolean weakKeys) {
+        this(maximumSize, (key, value) -> 1, weakKeys);
+    }
+
+    /**
+     * @param maximumWeight the maximum total weight of all entries
+     * @param weigher       the weight of an entry, must not be negative and is computed once per write of the entry
+     * @param weakKeys      whether keys are held by weak references
+     */
+    public ConcurrentBoundedCache(long maximumWeight, ToIntBiFunction<? super K, ? super V> weigher, boolean weakKeys) {
+        this(maximumWeight, weigher, weakKeys, false);
+    }
+
+    private ConcurrentBoundedCache(long maximumWeight, ToIntBiFunction<? super K, ? super V> weigher, boolean weakKeys, boolean identityKeys) {
+        if (maximumWeight < 0) {
+            throw new IllegalArgumentException("Maximum weight must not be negative");
+        }
+
+        this.maximum = maximumWeight;
+        this.weigher = Objects.requireNonNull(weigher, "Weigher must not be null");
+        this.weakKeys = weakKeys;
+        this.identityKeys = identityKeys;
+
+        final long mainMaximum = (long) (maximumWeight * (1 - WINDOW_RATIO));
+        this.windowMaximum = maximumWeight - mainMaximum;
+        this.protectedMaximum = (long) (mainMaximum * PROTECTED_RATIO);
+        this.sketch = new FrequencySketch();
+
+        int bufferCount = 1;
+        while (bufferCount < Math.min(Runtime.getRuntime().availableProcessors(), MAXIMUM_READ_BUFFERS)) {
+            bufferCount <<= 1;
+        }
+
+        this.readBuffers = new ReadBuffer[bufferCount];
+        for (int i = 0; i < bufferCount; i++) {
+            this.readBuffers[i] = new ReadBuffer<>();
+        }
+    }
+
+    /**
+     * Creates a cache bounded by entry count whose keys are held by weak references and compared by identity, e.g. for
+     * keys that are equal to differently behaving instances.
+     */
+    public static <K, V> ConcurrentBoundedCache<K, V> withWeakIdentityKeys(long maximumSize) {
+        return new ConcurrentBoundedCache<>(maximumSize, (key, value) -> 1, true, true);
+    }
+
+    /**
+     * Returns the cached value without locking, or null if the key isn't cached.
+     */
+    @Nullable
+    public V get(Object key) {
+        final Node<K, V> node = this.data.get(this.lookupKey(key));
+        if (node == null) {
+            return null;
+        }
+
+        final V value = node.value;
+        this.recordRead(node);
+        return value;
+    }
+
+    /**
+     * Returns the cached value, or computes and caches it. The function is called without holding any lock, so it
+     * may use the cache itself, and concurrent callers may compute the same key; the first stored value wins.
+     */
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        final V cached = this.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        final V value = Objects.requireNonNull(mappingFunction.apply(key), "Computed value must not be null");
+        final V previous = this.putIfAbsent(key, value);
+        return previous == null ? value : previous;
+    }
+
+    /**
+     * Stores the value, replacing the value of the key if it's already cached.
+     *
+     * @return the replaced value, or null
+     */
+    @Nullable
+    public V put(K key, V value) {
+        return this.put(key, value, false);
+    }
+
+    /**
+     * Stores the value unless the key is already cached.
+     *
+     * @return the cached value, or null if the value was stored
+     */
+    @Nullable
+    public V putIfAbsent(K key, V value) {
+        return this.put(key, value, true);
+    }
+
+    @Nullable
+    public V remove(Object key) {
+        final Node<K, V> node = this.data.remove(this.lookupKey(key));
+        if (node == null) {
+            return null;
+        }
+
+        this.evictionLock.lock();
+        try {
+            this.unlink(node);
+        } finally {
+            this.evictionLock.unlock();
+        }
+
+        return node.value;
+    }
+
+    public void invalidateAll() {
+        this.evictionLock.lock();
+        try {
+            for (final Node<K, V> node : this.data.values()) {
+                if (this.data.remove(node.keyReference, node)) {
+                    this.unlink(node);
+                }
+            }
+        } finally {
+            this.evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of entries, including entries of collected keys that weren't dropped yet.
+     */
+    public int size() {
+        return this.data.size();
+    }
+
+    public long weightedSize() {
+        return this.weightedSize;
+    }
+
+    public long getMaximum() {
+        return this.maximum;
+    }
+
+    /**
+     * Replays pending reads and drops the entries of collected keys, which otherwise happens with later operations.
+     */
+    public void cleanUp() {
+        this.evictionLock.lock();
+        try {
+            this.maintain();
+        } finally {
+            this.evictionLock.unlock();
+        }
+    }
+
+    @Nullable
+    private V put(K key, V value, boolean onlyIfAbsent) {
+        Objects.requireNonNull(key, "Key must not be null");
+        Objects.requireNonNull(value, "Value must not be null");
+
+        final int weight = this.weigher.applyAsInt(key, value);
+        if (weight < 0) {
+            throw new IllegalArgumentException("Weight must not be negative");
+        }
+
+        final Object keyReference = this.weakKeys ? new WeakKey<>(key, this.keyQueue, this.identityKeys) : key;
+        final Node<K, V> node = new Node<>(keyReference, keyReference.hashCode(), value, weight);
+        while (true) {
+            final Node<K, V> existing = this.data.putIfAbsent(keyReference, node);
+            if (existing == null) {
+                this.afterWrite(node, weight);
+                return null;
+            }
+
+            final V existingValue = existing.value;
+            if (onlyIfAbsent) {
+                this.recordRead(existing);
+                return existingValue;
+            }
+
+            if (!existing.isAlive()) {
+                // Evicted between the lookup and now, retry with the key gone
+                this.data.remove(keyReference, existing);
+                continue;
+            }
+
+            existing.value = value;
+            this.afterWrite(existing, weight);
+            return existingValue;
+        }
+    }
+
+    private Object lookupKey(Object key) {
+        return this.weakKeys ? new LookupKey(key, this.identityKeys) : key;
+    }
+
+    private void recordRead(Node<K, V> node) {
+        final ReadBuffer<K, V> buffer = this.readBuffers[spread((int) Thread.currentThread().getId()) & (this.readBuffers.length - 1)];
+        if (buffer.offer(node) && this.evictionLock.tryLock()) {
+            try {
+                this.maintain();
+            } finally {
+                this.evictionLock.unlock();
+            }
+        }
+    }
+
+    private void afterWrite(Node<K, V> node, int weight) {
+        this.evictionLock.lock();
+        try {
+            this.maintain();
+            if (node.queue == NEW) {
+                node.weight = weight;
+                node.queue = WINDOW;
+                this.window.addLast(node);
+                this.windowWeight += weight;
+                this.weightedSize += weight;
+                this.sketch.ensureCapacity(this.data.mappingCount());
+                this.sketch.increment(node.hash);
+            } else if (node.isAlive()) {
+                this.adjustWeight(node, weight - node.weight);
+                this.onAccess(node);
+            }
+
+            this.evict();
+        } finally {
+            this.evictionLock.unlock();
+        }
+    }
+
+    private void maintain() {
+        Reference<? extends K> collected;
+        while ((collected = this.keyQueue.poll()) != null) {
+            final Node<K, V> node = this.data.remove(collected);
+            if (node != null) {
+                this.unlink(node);
+            }
+        }
+
+        for (final ReadBuffer<K, V> buffer : this.readBuffers) {
+            buffer.drain(this);
+        }
+
+        this.evict();
+    }
+
+    private void onAccess(Node<K, V> node) {
+        this.sketch.increment(node.hash);
+        switch (node.queue) {
+            case WINDOW -> this.window.moveToLast(node);
+            case PROBATION -> {
+                this.probation.remove(node);
+                node.queue = PROTECTED;
+                this.protectedSegment.addLast(node);
+                this.protectedWeight += node.weight;
+
+                // Demote the least recently used protected entries to make room
+                while (this.protectedWeight > this.protectedMaximum) {
+                    final Node<K, V> demoted = this.protectedSegment.pollFirst();
+                    this.protectedWeight -= demoted.weight;
+                    demoted.queue = PROBATION;
+                    this.probation.addLast(demoted);
+                }
+            }
+            case PROTECTED -> this.protectedSegment.moveToLast(node);
+            default -> {
+                // Not linked yet or already removed
+            }
+        }
+    }
+
+    /**
+     * Moves the window overflow to the end of probation as candidates, then evicts either a candidate or the least
+     * recently used probation entry, whichever was used less often, until the cache fits its maximum.
+     */
+    private void evict() {
+        int candidates = 0;
+        while (this.windowWeight > this.windowMaximum) {
+            final Node<K, V> node = this.window.pollFirst();
+            if (node == null) {
+                break;
+            }
+
+            this.windowWeight -= node.weight;
+            node.queue = PROBATION;
+            this.probation.addLast(node);
+            candidates++;
+        }
+
+        while (this.weightedSize > this.maximum) {
+            Node<K, V> victim = this.probation.peekFirst();
+            if (victim == null) {
+                victim = this.protectedSegment.peekFirst() != null ? this.protectedSegment.peekFirst() : this.window.peekFirst();
+                if (victim == null) {
+                    return;
+                }
+
+                this.evictNode(victim);
+                continue;
+            }
+
+            final Node<K, V> candidate = candidates > 0 ? this.probation.peekLast() : null;
+            if (candidate == null || candidate == victim) {
+                this.evictNode(victim);
+                if (candidate == victim) {
+                    candidates--;
+                }
+            } else if (this.sketch.frequency(candidate.hash) > this.sketch.frequency(victim.hash)) {
+                this.evictNode(victim);
+            } else {
+                this.evictNode(candidate);
+                candidates--;
+            }
+        }
+    }
+
+    private void evictNode(Node<K, V> node) {
+        this.data.remove(node.keyReference, node);
+        this.unlink(node);
+    }
+
+    private void unlink(Node<K, V> node) {
+        switch (node.queue) {
+            case WINDOW -> {
+                this.window.remove(node);
+                this.windowWeight -= node.weight;
+            }
+            case PROBATION -> this.probation.remove(node);
+            case PROTECTED -> {
+                this.protectedSegment.remove(node);
+                this.protectedWeight -= node.weight;
+            }
+            default -> {
+                // A new node is dropped before it's linked, afterWrite skips it
+                node.queue = DEAD;
+                return;
+            }
+        }
+
+        node.queue = DEAD;
+        this.weightedSize -= node.weight;
+    }
+
+    private void adjustWeight(Node<K, V> node, int delta) {
+        node.weight += delta;
+        this.weightedSize += delta;
+        if (node.queue == WINDOW) {
+            this.windowWeight += delta;
+        } else if (node.queue == PROTECTED) {
+            this.protectedWeight += delta;
+        }
+    }
+
+    private static int spread(int hash) {
+        hash ^= hash >>> 17;
+        hash *= 0xed5ad4bb;
+        hash ^= hash >>> 11;
+        hash *= 0xac4c1b51;
+        hash ^= hash >>> 15;
+        return hash;
+    }
+
+    private static final class Node<K, V> {
+        private final Object keyReference;
+        private final int hash;
+        private volatile V value;
+        private volatile byte queue = NEW;
+
+        // Guarded by the eviction lock
+        private int weight;
+        private Node<K, V> previous;
+        private Node<K, V> next;
+
+        private Node(Object keyReference, int hash, V value, int weight) {
+            this.keyReference = keyReference;
+            this.hash = hash;
+            this.value = value;
+            this.weight = weight;
+        }
+
+        private boolean isAlive() {
+            return this.queue != DEAD;
+        }
+    }
+
+    /**
+     * Intrusive doubly linked list from least to most recently used, guarded by the eviction lock.
+     */
+    private static final class AccessOrder<K, V> {
+        private Node<K, V> first;
+        private Node<K, V> last;
+
+        private Node<K, V> peekFirst() {
+            return this.first;
+        }
+
+        private Node<K, V> peekLast() {
+            return this.last;
+        }
+
+        private Node<K, V> pollFirst() {
+            final Node<K, V> node = this.first;
+            if (node != null) {
+                this.remove(node);
+            }
+
+            return node;
+        }
+
+        private void addLast(Node<K, V> node) {
+            node.previous = this.last;
+            node.next = null;
+            if (this.last == null) {
+                this.first = node;
+            } else {
+                this.last.next = node;
+            }
+
+            this.last = node;
+        }
+
+        private void moveToLast(Node<K, V> node) {
+            if (node != this.last) {
+                this.remove(node);
+                this.addLast(node);
+            }
+        }
+
+        private void remove(Node<K, V> node) {
+            if (node.previous == null) {
+                this.first = node.next;
+            } else {
+                node.previous.next = node.next;
+            }
+
+            if (node.next == null) {
+                this.last = node.previous;
+            } else {
+                node.next.previous = node.previous;
+            }
+
+            node.previous = null;
+            node.next = null;
+        }
+    }
+
+    /**
+     * Count-min sketch of 4-bit counters, sixteen per long, with four hashed counters per key. All counters are halved
+     * once ten times the table size increments were recorded. Guarded by the eviction lock.
+     * <p>
+     * The table starts small and grows with the number of entries, up to a fixed maximum, instead of being allocated
+     * for the maximum weight up front, which for weighted caches says little about the number of entries.
+     */
+    private static final class FrequencySketch {
+        private static final long RESET_MASK = 0x7777777777777777L;
+        private static final int[] SEEDS = {0x97cb3127, 0xb3a5b6c1, 0xc2b2ae35, 0x85ebca6b};
+
+        private static final int MINIMUM_SIZE = 16;
+        private static final int MAXIMUM_SIZE = 1 << 20;
+
+        private long[] table = new long[MINIMUM_SIZE];
+        private int sampleSize = 10 * MINIMUM_SIZE;
+        private int additions;
+
+        /**
+         * Grows the table to one long per entry, rounded up to a power of two. Growing discards the counters
+         * collected so far, like a reset, which happens at most once per doubling.
+         */
+        private void ensureCapacity(long entries) {
+            if (entries <= this.table.length || this.table.length >= MAXIMUM_SIZE) {
+                return;
+            }
+
+            int size = this.table.length;
+            while (size < entries && size < MAXIMUM_SIZE) {
+                size <<= 1;
+            }
+
+            this.table = new long[size];
+            this.sampleSize = 10 * size;
+            this.additions = 0;
+        }
+
+        private int frequency(int hash) {
+            int frequency = Integer.MAX_VALUE;
+            for (int i = 0; i < SEEDS.length; i++) {
+                final int counter = spread(hash * SEEDS[i]);
+                final int shift = (counter & 15) << 2;
+                frequency = Math.min(frequency, (int) ((this.table[(counter >>> 4) & (this.table.length - 1)] >>> shift) & 15));
+            }
+
+            return frequency;
+        }
+
+        private void increment(int hash) {
+            boolean added = false;
+            for (int i = 0; i < SEEDS.length; i++) {
+                final int counter = spread(hash * SEEDS[i]);
+                final int shift = (counter & 15) << 2;
+                final int index = (counter >>> 4) & (this.table.length - 1);
+                if (((this.table[index] >>> shift) & 15) < 15) {
+                    this.table[index] += 1L << shift;
+                    added = true;
+                }
+            }
+
+            if (added && ++this.additions >= this.sampleSize) {
+                for (int i = 0; i < this.table.length; i++) {
+                    this.table[i] = (this.table[i] >>> 1) & RESET_MASK;
+                }
+
+                this.additions >>>= 1;
+            }
+        }
+    }
+
+    /**
+     * Lossy ring buffer of recorded reads. Any thread may offer, only the holder of the eviction lock drains.
+     * Reads offered to a full buffer are dropped, which only makes the policy slightly less precise.
+     */
+    private static final class ReadBuffer<K, V> {
+        private final AtomicReferenceArray<Node<K, V>> slots = new AtomicReferenceArray<>(READ_BUFFER_SIZE);
+        private final AtomicLong writes = new AtomicLong();
+        private volatile long reads;
+
+        /**
+         * @return whether the buffer is full and should be drained
+         */
+        private boolean offer(Node<K, V> node) {
+            final long write = this.writes.get();
+            final long pending = write - this.reads;
+            if (pending >= READ_BUFFER_SIZE) {
+                return true;
+            }
+
+            if (this.writes.compareAndSet(write, write + 1)) {
+                this.slots.lazySet((int) (write & READ_BUFFER_MASK), node);
+            }
+
+            return pending + 1 >= READ_BUFFER_SIZE;
+        }
+
+        private void drain(ConcurrentBoundedCache<K, V> cache) {
+            long read = this.reads;
+            final long write = this.writes.get();
+            while (read < write) {
+                final int index = (int) (read & READ_BUFFER_MASK);
+                final Node<K, V> node = this.slots.getAndSet(index, null);
+                if (node == null) {
+                    // Claimed but not published yet, continue with the next drain
+                    break;
+                }
+
+                cache.onAccess(node);
+                read++;
+            }
+
+            this.reads = read;
+        }
+    }
+
+    /**
+     * Weak reference to a key, equal to other references and lookups of an equal key, or the same key if compared by
+     * identity. Once cleared it's only equal to itself, which is enough to remove its entry.
+     */
+    private static final class WeakKey<K> extends WeakReference<K> {
+        private final int hash;
+        private final boolean identity;
+
+        private WeakKey(K key, ReferenceQueue<K> queue, boolean identity) {
+            super(key, queue);
+            this.hash = hash(key, identity);
+            this.identity = identity;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+
+            final Object key = this.get();
+            if (key == null) {
+                return false;
+            }
+
+            if (obj instanceof WeakKey<?> other) {
+                return keyEquals(key, other.get(), this.identity);
+            }
+
+            return obj instanceof LookupKey lookup && keyEquals(key, lookup.key, this.identity);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+    }
+
+    private static final class LookupKey {
+        private final Object key;
+        private final boolean identity;
+
+        private LookupKey(Object key, boolean identity) {
+            this.key = Objects.requireNonNull(key, "Key must not be null");
+            this.identity = identity;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj instanceof WeakKey<?> weakKey) {
+                return keyEquals(this.key, weakKey.get(), this.identity);
+            }
+
+            return obj instanceof LookupKey other && keyEquals(this.key, other.key, this.identity);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash(this.key, this.identity);
+        }
+    }
+
+    private static int hash(Object key, boolean identity) {
+        return identity ? System.identityHashCode(key) : key.hashCode();
+    }
+
+    private static boolean keyEquals(Object key, @Nullable Object other, boolean identity) {
+        return identity ? key == other : key.equals(other);
+    }
+}
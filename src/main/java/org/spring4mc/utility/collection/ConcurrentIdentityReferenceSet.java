@@ -0,0 +1,53 @@
+package org.spring4mc.utility.collection;
+
+import org.springframework.util.ConcurrentReferenceHashMap;
+
+/**
+ * {@link ConcurrentReferenceSet} comparing its elements by identity, for elements whose {@code hashCode} is expensive,
+ * mutable or not overridden on purpose, like entities or players.
+ * <p>
+ * Elements added with an eviction action have it run once they're collected while still in the set, so resources
+ * tied to them can be released without sweeping the set.
+ */
+public class ConcurrentIdentityReferenceSet<V> extends ConcurrentReferenceSet<V> {
+    public ConcurrentIdentityReferenceSet(ConcurrentReferenceHashMap.ReferenceType referenceType) {
+        super(referenceType);
+    }
+
+    public ConcurrentIdentityReferenceSet(int initialCapacity) {
+        super(initialCapacity);
+    }
+
+    public ConcurrentIdentityReferenceSet(int initialCapacity, ConcurrentReferenceHashMap.ReferenceType referenceType) {
+        super(initialCapacity, referenceType);
+    }
+
+    public ConcurrentIdentityReferenceSet(int initialCapacity, int concurrencyLevel) {
+        super(initialCapacity, concurrencyLevel);
+    }
+
+    public ConcurrentIdentityReferenceSet(int initialCapacity, float loadFactor, int concurrencyLevel, ConcurrentReferenceHashMap.ReferenceType referenceType) {
+        super(initialCapacity, loadFactor, concurrencyLevel, referenceType);
+    }
+
+    @Override
+    protected int hashOf(Object element) {
+        return System.identityHashCode(element);
+    }
+
+    @Override
+    protected boolean isEqual(V stored, Object element) {
+        return stored == element;
+    }
+
+    /**
+     * Adds the element and runs the action on a shared cleaner thread once the element was collected, unless it was
+     * removed from the set before. The action must not reference the element, or it is never collected.
+     *
+     * @return false if the element was already present, the action is then discarded
+     */
+    @Override
+    public boolean add(V element, Runnable evictionAction) {
+        return super.add(element, evictionAction);
+    }
+}
@@ -0,0 +1,362 @@
+package org.spring4mc.utility.collection;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
+/**
+ * Concurrent set of primitive {@code int} values, so values are never boxed.
+ * <p>
+ * The set is split into segments, each an open-addressing table like {@link IntSet} guarded by a
+ * {@link StampedLock}. Reads are optimistic and only take the read lock if a write to the same segment interfered,
+ * writes lock their segment exclusively. {@link #forEach(IntConsumer)} and {@link #removeIf(IntPredicate)} lock one
+ * segment at a time, as the locks aren't reentrant their callbacks must not access this set.
+ */
+public class ConcurrentIntSet {
+    private static final int DEFAULT_INITIAL_CAPACITY = 16;
+    private static final float DEFAULT_LOAD_FACTOR = 0.75f;
+    private static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+
+    private static final int MAXIMUM_CONCURRENCY_LEVEL = 1 << 16;
+    private static final int MAXIMUM_SEGMENT_SIZE = 1 << 30;
+
+    private final Segment[] segments;
+    private final int segmentShift;
+    private final int segmentMask;
+    private final LongAdder size = new LongAdder();
+
+    public ConcurrentIntSet() {
+        this(DEFAULT_INITIAL_CAPACITY);
+    }
+
+    public ConcurrentIntSet(int initialCapacity) {
+        this(initialCapacity, DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    public ConcurrentIntSet(int initialCapacity, int concurrencyLevel) {
+        this(initialCapacity, DEFAULT_LOAD_FACTOR, concurrencyLevel);
+    }
+
+    public ConcurrentIntSet(int initialCapacity, float loadFactor, int concurrencyLevel) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("Initial capacity must not be negative");
+        }
+
+        if (!(loadFactor > 0f && loadFactor < 1f)) {
+            throw new IllegalArgumentException("Load factor must be between 0 and 1");
+        }
+
+        if (concurrencyLevel <= 0) {
+            throw new IllegalArgumentException("Concurrency level must be positive");
+        }
+
+        int shift = 0;
+        int segmentCount = 1;
+        while (segmentCount < Math.min(concurrencyLevel, MAXIMUM_CONCURRENCY_LEVEL)) {
+            segmentCount <<= 1;
+            shift++;
+        }
+
+        // The upper bits of the hash select the segment, the lower ones the slot within it
+        this.segmentShift = 32 - shift;
+        this.segmentMask = segmentCount - 1;
+
+        final int segmentCapacity = (int) Math.min(MAXIMUM_SEGMENT_SIZE, ((long) initialCapacity + segmentCount - 1) / segmentCount);
+        final int tableSize = IntObjectMap.tableSize(segmentCapacity, loadFactor);
+
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            this.segments[i] = new Segment(tableSize, loadFactor);
+        }
+    }
+
+    /**
+     * Returns the number of values, which is only an estimate while the set is modified concurrently.
+     */
+    public int size() {
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(0, this.size.sum()));
+    }
+
+    public boolean isEmpty() {
+        return this.size() == 0;
+    }
+
+    public boolean contains(int key) {
+        final int hash = IntObjectMap.hash(key);
+        final Segment segment = this.segmentFor(hash);
+        final long stamp = segment.tryOptimisticRead();
+        final boolean contains = segment.contains(key, hash);
+        if (segment.validate(stamp)) {
+            return contains;
+        }
+
+        final long readStamp = segment.readLock();
+        try {
+            return segment.contains(key, hash);
+        } finally {
+            segment.unlockRead(readStamp);
+        }
+    }
+
+    /**
+     * @return whether the value was added
+     */
+    public boolean add(int key) {
+        final int hash = IntObjectMap.hash(key);
+        final Segment segment = this.segmentFor(hash);
+        final long stamp = segment.writeLock();
+        try {
+            final boolean added = segment.add(key, hash);
+            if (added) {
+                this.size.increment();
+            }
+
+            return added;
+        } finally {
+            segment.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @return whether the value was removed
+     */
+    public boolean remove(int key) {
+        final int hash = IntObjectMap.hash(key);
+        final Segment segment = this.segmentFor(hash);
+        final long stamp = segment.writeLock();
+        try {
+            final boolean removed = segment.remove(key, hash);
+            if (removed) {
+                this.size.decrement();
+            }
+
+            return removed;
+        } finally {
+            segment.unlockWrite(stamp);
+        }
+    }
+
+    public void clear() {
+        for (final Segment segment : this.segments) {
+            final long stamp = segment.writeLock();
+            try {
+                this.size.add(-segment.size());
+                segment.keys = new int[segment.keys.length];
+                segment.containsZero = false;
+                segment.count = 0;
+            } finally {
+                segment.unlockWrite(stamp);
+            }
+        }
+    }
+
+    /**
+     * Calls the action for every value while holding the read lock of its segment.
+     */
+    public void forEach(IntConsumer action) {
+        for (final Segment segment : this.segments) {
+            final long stamp = segment.readLock();
+            try {
+                if (segment.containsZero) {
+                    action.accept(0);
+                }
+
+                for (final int key : segment.keys) {
+                    if (key != 0) {
+                        action.accept(key);
+                    }
+                }
+            } finally {
+                segment.unlockRead(stamp);
+            }
+        }
+    }
+
+    /**
+     * Removes all values matching the filter, tested while holding the write lock of their segment.
+     */
+    public boolean removeIf(IntPredicate filter) {
+        boolean removed = false;
+        for (final Segment segment : this.segments) {
+            final long stamp = segment.writeLock();
+            try {
+                final int size = segment.size();
+                segment.removeIf(filter);
+                if (segment.size() != size) {
+                    this.size.add(segment.size() - size);
+                    removed = true;
+                }
+            } finally {
+                segment.unlockWrite(stamp);
+            }
+        }
+
+        return removed;
+    }
+
+    private Segment segmentFor(int hash) {
+        return this.segments[(hash >>> this.segmentShift) & this.segmentMask];
+    }
+
+    /**
+     * Open-addressing table of one segment, all writes happen under the write lock. Zero marks a free slot, the value
+     * zero itself is tracked by a flag of the segment it hashes to.
+     */
+    private static final class Segment extends StampedLock {
+        private final float loadFactor;
+        private int[] keys;
+        private boolean containsZero;
+        private int count;
+        private int threshold;
+
+        private Segment(int tableSize, float loadFactor) {
+            this.loadFactor = loadFactor;
+            this.keys = new int[tableSize];
+            this.threshold = Math.min((int) (tableSize * loadFactor), tableSize - 1);
+        }
+
+        private int size() {
+            return this.containsZero ? this.count + 1 : this.count;
+        }
+
+        /**
+         * Probes at most the whole table, so an optimistic read of a table changing underneath still terminates.
+         */
+        private boolean contains(int key, int hash) {
+            if (key == 0) {
+                return this.containsZero;
+            }
+
+            final int[] keys = this.keys;
+            final int mask = keys.length - 1;
+            int index = hash & mask;
+            for (int probes = 0; probes <= mask; probes++) {
+                final int current = keys[index];
+                if (current == 0) {
+                    return false;
+                }
+
+                if (current == key) {
+                    return true;
+                }
+
+                index = (index + 1) & mask;
+            }
+
+            return false;
+        }
+
+        private boolean add(int key, int hash) {
+            if (key == 0) {
+                final boolean added = !this.containsZero;
+                this.containsZero = true;
+                return added;
+            }
+
+            final int[] keys = this.keys;
+            final int mask = keys.length - 1;
+            int index = hash & mask;
+            int current;
+            while ((current = keys[index]) != 0) {
+                if (current == key) {
+                    return false;
+                }
+
+                index = (index + 1) & mask;
+            }
+
+            keys[index] = key;
+            if (++this.count > this.threshold) {
+                this.resize(keys.length << 1);
+            }
+
+            return true;
+        }
+
+        private boolean remove(int key, int hash) {
+            if (key == 0) {
+                final boolean removed = this.containsZero;
+                this.containsZero = false;
+                return removed;
+            }
+
+            final int[] keys = this.keys;
+            final int mask = keys.length - 1;
+            int index = hash & mask;
+            int current;
+            while ((current = keys[index]) != 0) {
+                if (current == key) {
+                    this.removeAt(keys, index);
+                    return true;
+                }
+
+                index = (index + 1) & mask;
+            }
+
+            return false;
+        }
+
+        private void removeIf(IntPredicate filter) {
+            if (this.containsZero && filter.test(0)) {
+                this.containsZero = false;
+            }
+
+            final int[] keys = this.keys;
+            final int mask = keys.length - 1;
+
+            // Start behind a free slot, so values shifted back by a removal only ever land on the current slot
+            int start = 0;
+            while (keys[start] != 0) {
+                start++;
+            }
+
+            for (int i = 1; i <= mask; i++) {
+                final int index = (start + i) & mask;
+                while (keys[index] != 0 && filter.test(keys[index])) {
+                    this.removeAt(keys, index);
+                }
+            }
+        }
+
+        private void removeAt(int[] keys, int index) {
+            final int mask = keys.length - 1;
+            int free = index;
+            int current = (index + 1) & mask;
+            while (keys[current] != 0) {
+                final int ideal = IntObjectMap.hash(keys[current]) & mask;
+                if (free <= current ? free >= ideal || ideal > current : free >= ideal && ideal > current) {
+                    keys[free] = keys[current];
+                    free = current;
+                }
+
+                current = (current + 1) & mask;
+            }
+
+            keys[free] = 0;
+            this.count--;
+        }
+
+        private void resize(int tableSize) {
+            if (tableSize > MAXIMUM_SEGMENT_SIZE) {
+                throw new IllegalStateException("Segment exceeds the maximum capacity");
+            }
+
+            final int[] newKeys = new int[tableSize];
+            final int mask = tableSize - 1;
+            for (final int key : this.keys) {
+                if (key != 0) {
+                    int index = IntObjectMap.hash(key) & mask;
+                    while (newKeys[index] != 0) {
+                        index = (index + 1) & mask;
+                    }
+
+                    newKeys[index] = key;
+                }
+            }
+
+            this.keys = newKeys;
+            this.threshold = Math.min((int) (tableSize * this.loadFactor), tableSize - 1);
+        }
+    }
+}
@@ -0,0 +1,401 @@
+package org.spring4mc.utility.collection;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.LongFunction;
+
+/**
+ * Concurrent map from primitive {@code long} keys to values, so keys are never boxed.
+ * <p>
+ * The map is split into segments, each an open-addressing table like {@link LongObjectMap} guarded by a
+ * {@link StampedLock}. Reads are optimistic and only take the read lock if a write to the same segment interfered,
+ * writes lock their segment exclusively. {@link #forEach(LongObjectMap.EntryConsumer)} and
+ * {@link #removeIf(LongObjectMap.EntryPredicate)} lock one segment at a time, as the locks aren't reentrant their
+ * callbacks must not access this map. Null values are not supported.
+ *
+ * @param <V> the type of values
+ */
+public class ConcurrentLongObjectMap<V> {
+    private static final int DEFAULT_INITIAL_CAPACITY = 16;
+    private static final float DEFAULT_LOAD_FACTOR = 0.75f;
+    private static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+
+    private static final int MAXIMUM_CONCURRENCY_LEVEL = 1 << 16;
+    private static final int MAXIMUM_SEGMENT_SIZE = 1 << 30;
+
+    private final Segment<V>[] segments;
+    private final int segmentShift;
+    private final int segmentMask;
+    private final LongAdder size = new LongAdder();
+
+    public ConcurrentLongObjectMap() {
+        this(DEFAULT_INITIAL_CAPACITY);
+    }
+
+    public ConcurrentLongObjectMap(int initialCapacity) {
+        this(initialCapacity, DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    public ConcurrentLongObjectMap(int initialCapacity, int concurrencyLevel) {
+        this(initialCapacity, DEFAULT_LOAD_FACTOR, concurrencyLevel);
+    }
+
+    public ConcurrentLongObjectMap(int initialCapacity, float loadFactor, int concurrencyLevel) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("Initial capacity must not be negative");
+        }
+
+        if (!(loadFactor > 0f && loadFactor < 1f)) {
+            throw new IllegalArgumentException("Load factor must be between 0 and 1");
+        }
+
+        if (concurrencyLevel <= 0) {
+            throw new IllegalArgumentException("Concurrency level must be positive");
+        }
+
+        int shift = 0;
+        int segmentCount = 1;
+        while (segmentCount < Math.min(concurrencyLevel, MAXIMUM_CONCURRENCY_LEVEL)) {
+            segmentCount <<= 1;
+            shift++;
+        }
+
+        // The upper bits of the hash select the segment, the lower ones the slot within it
+        this.segmentShift = 32 - shift;
+        this.segmentMask = segmentCount - 1;
+
+        final int segmentCapacity = (int) Math.min(MAXIMUM_SEGMENT_SIZE, ((long) initialCapacity + segmentCount - 1) / segmentCount);
+        final int tableSize = IntObjectMap.tableSize(segmentCapacity, loadFactor);
+
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            this.segments[i] = new Segment<>(tableSize, loadFactor);
+        }
+    }
+
+    /**
+     * Returns the number of entries, which is only an estimate while the map is modified concurrently.
+     */
+    public int size() {
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(0, this.size.sum()));
+    }
+
+    public boolean isEmpty() {
+        return this.size() == 0;
+    }
+
+    public boolean containsKey(long key) {
+        return this.get(key) != null;
+    }
+
+    @Nullable
+    public V get(long key) {
+        final int hash = LongObjectMap.hash(key);
+        final Segment<V> segment = this.segmentFor(hash);
+        final long stamp = segment.tryOptimisticRead();
+        final Object value = segment.find(key, hash);
+        if (segment.validate(stamp)) {
+            return (V) value;
+        }
+
+        final long readStamp = segment.readLock();
+        try {
+            return (V) segment.find(key, hash);
+        } finally {
+            segment.unlockRead(readStamp);
+        }
+    }
+
+    public V getOrDefault(long key, V defaultValue) {
+        final V value = this.get(key);
+        return value == null ? defaultValue : value;
+    }
+
+    /**
+     * @return the replaced value, or null
+     */
+    @Nullable
+    public V put(long key, V value) {
+        return this.put(key, value, false);
+    }
+
+    /**
+     * @return the present value, or null if the value was stored
+     */
+    @Nullable
+    public V putIfAbsent(long key, V value) {
+        return this.put(key, value, true);
+    }
+
+    /**
+     * Returns the present value, or computes and stores it. The function is called without holding a lock, so it may
+     * use this map, and concurrent callers may compute the same key; the first stored value wins.
+     */
+    public V computeIfAbsent(long key, LongFunction<? extends V> mappingFunction) {
+        final V present = this.get(key);
+        if (present != null) {
+            return present;
+        }
+
+        final V value = Objects.requireNonNull(mappingFunction.apply(key), "Computed value must not be null");
+        final V previous = this.putIfAbsent(key, value);
+        return previous == null ? value : previous;
+    }
+
+    @Nullable
+    public V remove(long key) {
+        final int hash = LongObjectMap.hash(key);
+        final Segment<V> segment = this.segmentFor(hash);
+        final long stamp = segment.writeLock();
+        try {
+            final Object previous = segment.remove(key, hash);
+            if (previous != null) {
+                this.size.decrement();
+            }
+
+            return (V) previous;
+        } finally {
+            segment.unlockWrite(stamp);
+        }
+    }
+
+    public void clear() {
+        for (final Segment<V> segment : this.segments) {
+            final long stamp = segment.writeLock();
+            try {
+                this.size.add(-segment.count);
+                segment.table = new Table(segment.table.keys.length);
+                segment.count = 0;
+            } finally {
+                segment.unlockWrite(stamp);
+            }
+        }
+    }
+
+    /**
+     * Calls the action for every entry while holding the read lock of its segment.
+     */
+    public void forEach(LongObjectMap.EntryConsumer<? super V> action) {
+        for (final Segment<V> segment : this.segments) {
+            final long stamp = segment.readLock();
+            try {
+                final Table table = segment.table;
+                for (int i = 0; i < table.values.length; i++) {
+                    if (table.values[i] != null) {
+                        action.accept(table.keys[i], (V) table.values[i]);
+                    }
+                }
+            } finally {
+                segment.unlockRead(stamp);
+            }
+        }
+    }
+
+    /**
+     * Removes all entries matching the filter, tested while holding the write lock of their segment.
+     */
+    public boolean removeIf(LongObjectMap.EntryPredicate<? super V> filter) {
+        boolean removed = false;
+        for (final Segment<V> segment : this.segments) {
+            final long stamp = segment.writeLock();
+            try {
+                final int count = segment.count;
+                segment.removeIf(filter);
+                if (segment.count != count) {
+                    this.size.add(segment.count - count);
+                    removed = true;
+                }
+            } finally {
+                segment.unlockWrite(stamp);
+            }
+        }
+
+        return removed;
+    }
+
+    @Nullable
+    private V put(long key, V value, boolean onlyIfAbsent) {
+        Objects.requireNonNull(value, "Value must not be null");
+        final int hash = LongObjectMap.hash(key);
+        final Segment<V> segment = this.segmentFor(hash);
+        final long stamp = segment.writeLock();
+        try {
+            final Object previous = segment.put(key, hash, value, onlyIfAbsent);
+            if (previous == null) {
+                this.size.increment();
+            }
+
+            return (V) previous;
+        } finally {
+            segment.unlockWrite(stamp);
+        }
+    }
+
+    private Segment<V> segmentFor(int hash) {
+        return this.segments[(hash >>> this.segmentShift) & this.segmentMask];
+    }
+
+    /**
+     * Keys and values of one segment, replaced as a whole on resize so optimistic readers always see arrays of the
+     * same length.
+     */
+    private static final class Table {
+        private final long[] keys;
+        private final Object[] values;
+
+        private Table(int size) {
+            this.keys = new long[size];
+            this.values = new Object[size];
+        }
+    }
+
+    /**
+     * Open-addressing table of one segment, all writes happen under the write lock.
+     */
+    private static final class Segment<V> extends StampedLock {
+        private final float loadFactor;
+        private Table table;
+        private int count;
+        private int threshold;
+
+        private Segment(int tableSize, float loadFactor) {
+            this.loadFactor = loadFactor;
+            this.table = new Table(tableSize);
+            this.threshold = Math.min((int) (tableSize * loadFactor), tableSize - 1);
+        }
+
+        /**
+         * Probes at most the whole table, so an optimistic read of a table changing underneath still terminates.
+         */
+        @Nullable
+        private Object find(long key, int hash) {
+            final Table table = this.table;
+            final int mask = table.keys.length - 1;
+            int index = hash & mask;
+            for (int probes = 0; probes <= mask; probes++) {
+                final Object value = table.values[index];
+                if (value == null) {
+                    return null;
+                }
+
+                if (table.keys[index] == key) {
+                    return value;
+                }
+
+                index = (index + 1) & mask;
+            }
+
+            return null;
+        }
+
+        @Nullable
+        private Object put(long key, int hash, Object value, boolean onlyIfAbsent) {
+            final Table table = this.table;
+            final int mask = table.keys.length - 1;
+            int index = hash & mask;
+            while (table.values[index] != null) {
+                if (table.keys[index] == key) {
+                    final Object previous = table.values[index];
+                    if (!onlyIfAbsent) {
+                        table.values[index] = value;
+                    }
+
+                    return previous;
+                }
+
+                index = (index + 1) & mask;
+            }
+
+            table.keys[index] = key;
+            table.values[index] = value;
+            if (++this.count > this.threshold) {
+                this.resize(table.keys.length << 1);
+            }
+
+            return null;
+        }
+
+        @Nullable
+        private Object remove(long key, int hash) {
+            final Table table = this.table;
+            final int mask = table.keys.length - 1;
+            int index = hash & mask;
+            while (table.values[index] != null) {
+                if (table.keys[index] == key) {
+                    final Object previous = table.values[index];
+                    this.removeAt(table, index);
+                    return previous;
+                }
+
+                index = (index + 1) & mask;
+            }
+
+            return null;
+        }
+
+        private void removeIf(LongObjectMap.EntryPredicate<? super V> filter) {
+            final Table table = this.table;
+            final int mask = table.keys.length - 1;
+
+            // Start behind a free slot, so entries shifted back by a removal only ever land on the current slot
+            int start = 0;
+            while (table.values[start] != null) {
+                start++;
+            }
+
+            for (int i = 1; i <= mask; i++) {
+                final int index = (start + i) & mask;
+                while (table.values[index] != null && filter.test(table.keys[index], (V) table.values[index])) {
+                    this.removeAt(table, index);
+                }
+            }
+        }
+
+        private void removeAt(Table table, int index) {
+            final int mask = table.keys.length - 1;
+            int free = index;
+            int current = (index + 1) & mask;
+            while (table.values[current] != null) {
+                final int ideal = LongObjectMap.hash(table.keys[current]) & mask;
+                if (free <= current ? free >= ideal || ideal > current : free >= ideal && ideal > current) {
+                    table.keys[free] = table.keys[current];
+                    table.values[free] = table.values[current];
+                    free = current;
+                }
+
+                current = (current + 1) & mask;
+            }
+
+            table.keys[free] = 0;
+            table.values[free] = null;
+            this.count--;
+        }
+
+        private void resize(int tableSize) {
+            if (tableSize > MAXIMUM_SEGMENT_SIZE) {
+                throw new IllegalStateException("Segment exceeds the maximum capacity");
+            }
+
+            final Table oldTable = this.table;
+            final Table newTable = new Table(tableSize);
+            final int mask = tableSize - 1;
+            for (int i = 0; i < oldTable.values.length; i++) {
+                if (oldTable.values[i] != null) {
+                    int index = LongObjectMap.hash(oldTable.keys[i]) & mask;
+                    while (newTable.values[index] != null) {
+                        index = (index + 1) & mask;
+                    }
+
+                    newTable.keys[index] = oldTable.keys[i];
+                    newTable.values[index] = oldTable.values[i];
+                }
+            }
+
+            this.table = newTable;
+            this.threshold = Math.min((int) (tableSize * this.loadFactor), tableSize - 1);
+        }
+    }
+}
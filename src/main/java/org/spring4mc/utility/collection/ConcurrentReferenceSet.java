@@ -1,20 +1,55 @@
 package org.spring4mc.utility.collection;
 
-import lombok.experimental.Delegate;
+import org.jetbrains.annotations.Nullable;
 import org.springframework.util.ConcurrentReferenceHashMap;
 
-import java.util.Collections;
-import java.util.Set;
-
-public class ConcurrentReferenceSet<V> implements Set<V> {
-    @Delegate
-    private final Set<V> delegate;
+import java.lang.ref.Cleaner;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
+/**
+ * Concurrent set holding its elements by soft or weak references.
+ * <p>
+ * The set is split into segments that are locked for writes only. {@code contains} and iteration never lock, they
+ * walk the bucket chains through volatile reads and skip references that were cleared. Cleared references are
+ * purged in bounded batches before writes, outside of the segment lock of the write, or all at once by
+ * {@link #purge()}. Until then they are still counted by {@link #size()}, which reads a striped counter instead of
+ * visiting the segments.
+ * <p>
+ * Iterators, spliterators and the bulk operations are weakly consistent, they never throw
+ * {@link java.util.ConcurrentModificationException} and see the elements that were present at some point during
+ * traversal. Spliterators split by segments and then by buckets, so parallel streams spread evenly even over a
+ * single segment. Null elements are not supported.
+ */
+public class ConcurrentReferenceSet<V> extends AbstractSet<V> {
     private static final int DEFAULT_INITIAL_CAPACITY = 16;
     private static final float DEFAULT_LOAD_FACTOR = 0.75f;
     private static final int DEFAULT_CONCURRENCY_LEVEL = 16;
     private static final ConcurrentReferenceHashMap.ReferenceType DEFAULT_REFERENCE_TYPE = ConcurrentReferenceHashMap.ReferenceType.SOFT;
 
+    private static final int MAXIMUM_CONCURRENCY_LEVEL = 1 << 16;
+    private static final int MAXIMUM_SEGMENT_SIZE = 1 << 30;
+
+    // Cleared references purged before each write, bounds the extra work of a single write
+    private static final int PURGE_BATCH_SIZE = 32;
+
+    private final Segment[] segments;
+    private final int segmentShift;
+    private final int segmentMask;
+    private final float loadFactor;
+    private final ConcurrentReferenceHashMap.ReferenceType referenceType;
+    private final ReferenceQueue<V> queue = new ReferenceQueue<>();
+    private final LongAdder size = new LongAdder();
+
     public ConcurrentReferenceSet(ConcurrentReferenceHashMap.ReferenceType referenceType) {
         this(DEFAULT_INITIAL_CAPACITY, referenceType);
     }
@@ -32,6 +67,694 @@ public class ConcurrentReferenceSet<V> implements Set<V> {
     }
 
     public ConcurrentReferenceSet(int initialCapacity, float loadFactor, int concurrencyLevel, ConcurrentReferenceHashMap.ReferenceType referenceType) {
-        this.delegate = Collections.newSetFromMap(new ConcurrentReferenceHashMap<>(initialCapacity, loadFactor, concurrencyLevel, referenceType));
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("Initial capacity must not be negative");
+        }
+
+        if (!(loadFactor > 0f)) {
+            throw new IllegalArgumentException("Load factor must be positive");
+        }
+
+        if (concurrencyLevel <= 0) {
+            throw new IllegalArgumentException("Concurrency level must be positive");
+        }
+
+        this.loadFactor = loadFactor;
+        this.referenceType = Objects.requireNonNull(referenceType, "Reference type must not be null");
+
+        int shift = 0;
+        int segmentCount = 1;
+        while (segmentCount < Math.min(concurrencyLevel, MAXIMUM_CONCURRENCY_LEVEL)) {
+            segmentCount <<= 1;
+            shift++;
+        }
+
+        // The upper bits of the hash select the segment, the lower ones the bucket within it
+        this.segmentShift = 32 - shift;
+        this.segmentMask = segmentCount - 1;
+
+        int segmentSize = 1;
+        final int targetSegmentSize = (int) Math.min(MAXIMUM_SEGMENT_SIZE, ((long) initialCapacity + segmentCount - 1) / segmentCount);
+        while (segmentSize < targetSegmentSize) {
+            segmentSize <<= 1;
+        }
+
+        this.segments = new ConcurrentReferenceSet.Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            this.segments[i] = new Segment(segmentSize);
+        }
+    }
+
+    /**
+     * Returns the hash code used to place the element, to be consistent with {@link #isEqual(Object, Object)}.
+     */
+    protected int hashOf(Object element) {
+        return element.hashCode();
+    }
+
+    /**
+     * Returns whether the stored element is the same element as the given one.
+     */
+    protected boolean isEqual(V stored, Object element) {
+        return stored == element || stored.equals(element);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (o == null) {
+            return false;
+        }
+
+        final int hash = this.spread(o);
+        final AtomicReferenceArray<Node<V>> table = this.segmentFor(hash).table;
+        for (Node<V> node = table.get(hash & (table.length() - 1)); node != null; node = node.getNext()) {
+            if (node.getHash() == hash) {
+                final V element = node.get();
+                if (element != null && this.isEqual(element, o)) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    @Override
+    public boolean add(V v) {
+        return this.insert(v, null);
+    }
+
+    /**
+     * Adds the element and runs the action once the element is collected while it's still in the set, see
+     * {@link ConcurrentIdentityReferenceSet#add(Object, Runnable)}.
+     */
+    protected boolean add(V v, Runnable evictionAction) {
+        final Eviction eviction = new Eviction(Objects.requireNonNull(evictionAction, "Eviction action must not be null"));
+        if (!this.insert(v, eviction)) {
+            return false;
+        }
+
+        // Registered after inserting, an element removed in between has already cancelled the eviction
+        eviction.register(v);
+        return true;
+    }
+
+    private boolean insert(V v, @Nullable Eviction eviction) {
+        Objects.requireNonNull(v, "Element must not be null");
+        this.purge(PURGE_BATCH_SIZE);
+
+        final int hash = this.spread(v);
+        final Segment segment = this.segmentFor(hash);
+        segment.lock();
+        try {
+            AtomicReferenceArray<Node<V>> table = segment.table;
+            for (Node<V> node = table.get(hash & (table.length() - 1)); node != null; node = node.getNext()) {
+                if (node.getHash() == hash) {
+                    final V element = node.get();
+                    if (element != null && this.isEqual(element, v)) {
+                        return false;
+                    }
+                }
+            }
+
+            if (segment.count >= segment.threshold) {
+                table = segment.resize();
+            }
+
+            final int index = hash & (table.length() - 1);
+            table.set(index, this.createNode(v, hash, table.get(index), eviction));
+            segment.count++;
+            this.size.increment();
+            return true;
+        } finally {
+            segment.unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (o == null) {
+            return false;
+        }
+
+        this.purge(PURGE_BATCH_SIZE);
+
+        final int hash = this.spread(o);
+        final Node<V> removed = this.segmentFor(hash).removeEqual(o, hash);
+        if (removed == null) {
+            return false;
+        }
+
+        cancelEviction(removed);
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        for (final Segment segment : this.segments) {
+            segment.lock();
+            try {
+                final AtomicReferenceArray<Node<V>> table = segment.table;
+                for (int i = 0; i < table.length(); i++) {
+                    for (Node<V> node = table.get(i); node != null; node = node.getNext()) {
+                        cancelEviction(node);
+                    }
+                }
+
+                segment.table = new AtomicReferenceArray<>(table.length());
+                this.size.add(-segment.count);
+                segment.count = 0;
+            } finally {
+                segment.unlock();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of elements, including elements that were collected but not purged yet.
+     */
+    @Override
+    public int size() {
+        return (int) Math.min(Math.max(this.size.sum(), 0), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return this.size.sum() <= 0;
+    }
+
+    @Override
+    public Iterator<V> iterator() {
+        return new ReferenceIterator();
+    }
+
+    @Override
+    public Spliterator<V> spliterator() {
+        return new ReferenceSpliterator(0, this.segments.length, this.size());
+    }
+
+    @Override
+    public void forEach(Consumer<? super V> action) {
+        Objects.requireNonNull(action);
+        for (final Segment segment : this.segments) {
+            final AtomicReferenceArray<Node<V>> table = segment.table;
+            for (int i = 0; i < table.length(); i++) {
+                for (Node<V> node = table.get(i); node != null; node = node.getNext()) {
+                    final V element = node.get();
+                    if (element != null) {
+                        action.accept(element);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Tests the elements without locking and only locks the segment of a matching element to unlink it, the filter
+     * is never called under a lock. A matching element whose node was copied by a concurrent resize is removed by
+     * value from the new table instead.
+     */
+    @Override
+    public boolean removeIf(Predicate<? super V> filter) {
+        Objects.requireNonNull(filter);
+        boolean removed = false;
+        for (final Segment segment : this.segments) {
+            final AtomicReferenceArray<Node<V>> table = segment.table;
+            for (int i = 0; i < table.length(); i++) {
+                for (Node<V> node = table.get(i); node != null; node = node.getNext()) {
+                    final V element = node.get();
+                    if (element == null || !filter.test(element)) {
+                        continue;
+                    }
+
+                    if (segment.remove(node)) {
+                        cancelEviction(node);
+                        removed = true;
+                    } else if (segment.table != table) {
+                        final Node<V> copy = segment.removeEqual(element, node.getHash());
+                        if (copy != null) {
+                            cancelEviction(copy);
+                            removed = true;
+                        }
+                    }
+                }
+            }
+        }
+
+        return removed;
+    }
+
+    /**
+     * Removes all references cleared by the garbage collector so far.
+     */
+    public void purge() {
+        this.purge(Integer.MAX_VALUE);
+    }
+
+    private void purge(int maximum) {
+        for (int i = 0; i < maximum; i++) {
+            final Reference<? extends V> reference = this.queue.poll();
+            if (reference == null) {
+                return;
+            }
+
+            final Node<V> node = (Node<V>) reference;
+            this.segmentFor(node.getHash()).remove(node);
+        }
+    }
+
+    private int spread(Object element) {
+        // Supplemental hash, the segment and the bucket are taken from different bits
+        int hash = this.hashOf(element);
+        hash += (hash << 15) ^ 0xffffcd7d;
+        hash ^= (hash >>> 10);
+        hash += (hash << 3);
+        hash ^= (hash >>> 6);
+        hash += (hash << 2) + (hash << 14);
+        hash ^= (hash >>> 16);
+        return hash;
+    }
+
+    private Segment segmentFor(int hash) {
+        return this.segments[(hash >>> this.segmentShift) & this.segmentMask];
+    }
+
+    private Node<V> createNode(V element, int hash, Node<V> next, @Nullable Eviction eviction) {
+        if (this.referenceType == ConcurrentReferenceHashMap.ReferenceType.WEAK) {
+            return new WeakNode<>(element, hash, next, eviction, this.queue);
+        }
+
+        return new SoftNode<>(element, hash, next, eviction, this.queue);
+    }
+
+    private static void cancelEviction(Node<?> node) {
+        final Eviction eviction = node.getEviction();
+        if (eviction != null) {
+            eviction.cancel();
+        }
+    }
+
+    private interface Node<V> {
+        V get();
+
+        int getHash();
+
+        @Nullable
+        Eviction getEviction();
+
+        Node<V> getNext();
+
+        void setNext(Node<V> next);
+    }
+
+    private static final class SoftNode<V> extends SoftReference<V> implements Node<V> {
+        private final int hash;
+        private final Eviction eviction;
+        private volatile Node<V> next;
+
+        private SoftNode(V referent, int hash, Node<V> next, @Nullable Eviction eviction, ReferenceQueue<? super V> queue) {
+            super(referent, queue);
+            this.hash = hash;
+            this.next = next;
+            this.eviction = eviction;
+        }
+
+        @Override
+        public int getHash() {
+            return this.hash;
+        }
+
+        @Override
+        public Eviction getEviction() {
+            return this.eviction;
+        }
+
+        @Override
+        public Node<V> getNext() {
+            return this.next;
+        }
+
+        @Override
+        public void setNext(Node<V> next) {
+            this.next = next;
+        }
+    }
+
+    private static final class WeakNode<V> extends WeakReference<V> implements Node<V> {
+        private final int hash;
+        private final Eviction eviction;
+        private volatile Node<V> next;
+
+        private WeakNode(V referent, int hash, Node<V> next, @Nullable Eviction eviction, ReferenceQueue<? super V> queue) {
+            super(referent, queue);
+            this.hash = hash;
+            this.next = next;
+            this.eviction = eviction;
+        }
+
+        @Override
+        public int getHash() {
+            return this.hash;
+        }
+
+        @Override
+        public Eviction getEviction() {
+            return this.eviction;
+        }
+
+        @Override
+        public Node<V> getNext() {
+            return this.next;
+        }
+
+        @Override
+        public void setNext(Node<V> next) {
+            this.next = next;
+        }
+    }
+
+    /**
+     * Eviction action of an element, shared by all copies of its node. Explicit removal clears the action and
+     * deregisters it from the shared cleaner, which otherwise runs it once the element became phantom reachable.
+     * The entry itself is purged separately, with the next writes or {@link #purge()}.
+     */
+    private static final class Eviction extends AtomicReference<Runnable> implements Runnable {
+        private volatile Cleaner.Cleanable cleanable;
+
+        private Eviction(Runnable action) {
+            super(action);
+        }
+
+        private void register(Object element) {
+            final Cleaner.Cleanable cleanable = CleanerHolder.CLEANER.register(element, this);
+            this.cleanable = cleanable;
+
+            // Cancelled before the registration was published, cancel only cleared the action
+            if (this.get() == null) {
+                cleanable.clean();
+            }
+        }
+
+        /**
+         * Clears the action and drops the registration, so removed elements don't pile up in the cleaner.
+         */
+        private void cancel() {
+            this.set(null);
+            final Cleaner.Cleanable cleanable = this.cleanable;
+            if (cleanable != null) {
+                cleanable.clean();
+            }
+        }
+
+        @Override
+        public void run() {
+            final Runnable action = this.getAndSet(null);
+            if (action != null) {
+                action.run();
+            }
+        }
+    }
+
+    // Started on first use only, its thread belongs to the JDK and doesn't keep this class loader reachable
+    private static final class CleanerHolder {
+        private static final Cleaner CLEANER = Cleaner.create();
+    }
+
+    /**
+     * Buckets of one segment. Writers hold the lock and publish through the volatile table and bucket slots, readers
+     * don't lock. Unlinking only redirects the next pointer of the predecessor, so a reader standing on a removed node
+     * still reaches the rest of the chain. Resizing copies the live nodes into a new table and publishes it at once.
+     */
+    private final class Segment extends ReentrantLock {
+        private volatile AtomicReferenceArray<Node<V>> table;
+
+        // Guarded by the lock, only drives resizing
+        private int count;
+        private int threshold;
+
+        private Segment(int initialSize) {
+            this.table = new AtomicReferenceArray<>(initialSize);
+            this.threshold = this.thresholdOf(initialSize);
+        }
+
+        private int thresholdOf(int size) {
+            return size >= MAXIMUM_SEGMENT_SIZE ? Integer.MAX_VALUE : (int) (size * ConcurrentReferenceSet.this.loadFactor);
+        }
+
+        private AtomicReferenceArray<Node<V>> resize() {
+            final AtomicReferenceArray<Node<V>> oldTable = this.table;
+            final AtomicReferenceArray<Node<V>> newTable = new AtomicReferenceArray<>(oldTable.length() << 1);
+            int count = 0;
+            for (int i = 0; i < oldTable.length(); i++) {
+                for (Node<V> node = oldTable.get(i); node != null; node = node.getNext()) {
+                    // Cleared nodes are left behind, they aren't found anymore once they're polled from the queue
+                    final V element = node.get();
+                    if (element != null) {
+                        final int index = node.getHash() & (newTable.length() - 1);
+                        newTable.set(index, ConcurrentReferenceSet.this.createNode(element, node.getHash(), newTable.get(index), node.getEviction()));
+                        count++;
+                    }
+                }
+            }
+
+            this.table = newTable;
+            ConcurrentReferenceSet.this.size.add(count - this.count);
+            this.count = count;
+            this.threshold = this.thresholdOf(newTable.length());
+            return newTable;
+        }
+
+        private void unlink(AtomicReferenceArray<Node<V>> table, int index, Node<V> previous, Node<V> node) {
+            if (previous == null) {
+                table.set(index, node.getNext());
+            } else {
+                previous.setNext(node.getNext());
+            }
+
+            this.count--;
+            ConcurrentReferenceSet.this.size.decrement();
+        }
+
+        /**
+         * Removes the node holding an element equal to the given one.
+         *
+         * @return the removed node, or null if there is none
+         */
+        @Nullable
+        private Node<V> removeEqual(Object element, int hash) {
+            this.lock();
+            try {
+                final AtomicReferenceArray<Node<V>> table = this.table;
+                final int index = hash & (table.length() - 1);
+                Node<V> previous = null;
+                for (Node<V> node = table.get(index); node != null; previous = node, node = node.getNext()) {
+                    if (node.getHash() == hash) {
+                        final V stored = node.get();
+                        if (stored != null && ConcurrentReferenceSet.this.isEqual(stored, element)) {
+                            this.unlink(table, index, previous, node);
+                            return node;
+                        }
+                    }
+                }
+
+                return null;
+            } finally {
+                this.unlock();
+            }
+        }
+
+        /**
+         * Removes the node, unless it was already removed or dropped by a resize or clear.
+         */
+        private boolean remove(Node<V> target) {
+            this.lock();
+            try {
+                final AtomicReferenceArray<Node<V>> table = this.table;
+                final int index = target.getHash() & (table.length() - 1);
+                Node<V> previous = null;
+                for (Node<V> node = table.get(index); node != null; previous = node, node = node.getNext()) {
+                    if (node == target) {
+                        this.unlink(table, index, previous, node);
+                        return true;
+                    }
+                }
+
+                return false;
+            } finally {
+                this.unlock();
+            }
+        }
+    }
+
+    private final class ReferenceIterator implements Iterator<V> {
+        private int segmentIndex;
+        private AtomicReferenceArray<Node<V>> table;
+        private int bucketIndex;
+        private Node<V> node;
+
+        // Strong references to the upcoming and the last returned element, so they can't be cleared in between
+        private V next;
+        private V last;
+
+        private ReferenceIterator() {
+            this.advance();
+        }
+
+        private void advance() {
+            this.next = null;
+            while (true) {
+                if (this.node != null) {
+                    this.node = this.node.getNext();
+                }
+
+                while (this.node == null) {
+                    if (this.table != null && this.bucketIndex < this.table.length()) {
+                        this.node = this.table.get(this.bucketIndex++);
+                    } else if (this.segmentIndex < ConcurrentReferenceSet.this.segments.length) {
+                        this.table = ConcurrentReferenceSet.this.segments[this.segmentIndex++].table;
+                        this.bucketIndex = 0;
+                    } else {
+                        return;
+                    }
+                }
+
+                final V element = this.node.get();
+                if (element != null) {
+                    this.next = element;
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.next != null;
+        }
+
+        @Override
+        public V next() {
+            if (this.next == null) {
+                throw new NoSuchElementException();
+            }
+
+            this.last = this.next;
+            this.advance();
+            return this.last;
+        }
+
+        @Override
+        public void remove() {
+            if (this.last == null) {
+                throw new IllegalStateException();
+            }
+
+            ConcurrentReferenceSet.this.remove(this.last);
+            this.last = null;
+        }
+    }
+
+    /**
+     * Covers a range of segments, or a range of buckets of one segment table once it was split down to that.
+     * Estimates are halved on every split, they include cleared references.
+     */
+    private final class ReferenceSpliterator implements Spliterator<V> {
+        private int segmentIndex;
+        private int segmentFence;
+
+        // Table being traversed and its remaining bucket range
+        private AtomicReferenceArray<Node<V>> table;
+        private int bucketIndex;
+        private int bucketFence;
+        private Node<V> node;
+
+        private long estimate;
+
+        private ReferenceSpliterator(int segmentIndex, int segmentFence, long estimate) {
+            this.segmentIndex = segmentIndex;
+            this.segmentFence = segmentFence;
+            this.estimate = estimate;
+        }
+
+        private ReferenceSpliterator(AtomicReferenceArray<Node<V>> table, int bucketIndex, int bucketFence, long estimate) {
+            this(0, 0, estimate);
+            this.table = table;
+            this.bucketIndex = bucketIndex;
+            this.bucketFence = bucketFence;
+        }
+
+        @Override
+        public Spliterator<V> trySplit() {
+            if (this.segmentFence - this.segmentIndex > 1) {
+                // Split off the upper half of the segments not started yet
+                final int middle = (this.segmentIndex + this.segmentFence) >>> 1;
+                final ReferenceSpliterator split = new ReferenceSpliterator(middle, this.segmentFence, this.estimate >>> 1);
+                this.segmentFence = middle;
+                this.estimate -= split.estimate;
+                return split;
+            }
+
+            if (this.table == null && this.segmentIndex < this.segmentFence) {
+                this.bind();
+            }
+
+            if (this.table != null && this.node == null && this.bucketFence - this.bucketIndex > 1) {
+                final int middle = (this.bucketIndex + this.bucketFence) >>> 1;
+                final ReferenceSpliterator split = new ReferenceSpliterator(this.table, this.bucketIndex, middle, this.estimate >>> 1);
+                this.bucketIndex = middle;
+                this.estimate -= split.estimate;
+                return split;
+            }
+
+            return null;
+        }
+
+        private void bind() {
+            this.table = ConcurrentReferenceSet.this.segments[this.segmentIndex++].table;
+            this.bucketIndex = 0;
+            this.bucketFence = this.table.length();
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super V> action) {
+            Objects.requireNonNull(action);
+            while (true) {
+                if (this.node != null) {
+                    this.node = this.node.getNext();
+                }
+
+                while (this.node == null) {
+                    if (this.table != null && this.bucketIndex < this.bucketFence) {
+                        this.node = this.table.get(this.bucketIndex++);
+                    } else if (this.segmentIndex < this.segmentFence) {
+                        this.bind();
+                    } else {
+                        return false;
+                    }
+                }
+
+                final V element = this.node.get();
+                if (element != null) {
+                    action.accept(element);
+                    return true;
+                }
+            }
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super V> action) {
+            while (this.tryAdvance(action)) {
+                // Advanced
+            }
+        }
+
+        @Override
+        public long estimateSize() {
+            return this.estimate;
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.DISTINCT | Spliterator.NONNULL | Spliterator.CONCURRENT;
+        }
     }
 }
@@ -0,0 +1,287 @@
+package org.spring4mc.utility.collection;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
+/**
+ * Set of primitive {@code int} values, so values are never boxed.
+ * <p>
+ * Values are stored in one array with linear probing, removal shifts the following values of the probe chain back
+ * instead of leaving tombstones. Zero marks a free slot, the value zero itself is tracked separately. Iterate with
+ * {@link #forEach(IntConsumer)} or a {@link Cursor}, neither allocates per value. The set is not thread-safe, see
+ * {@link ConcurrentIntSet}.
+ */
+public class IntSet {
+    private static final int DEFAULT_INITIAL_CAPACITY = 16;
+    private static final float DEFAULT_LOAD_FACTOR = 0.75f;
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    private final float loadFactor;
+    private int[] keys;
+    private boolean containsZero;
+    private int size;
+    private int threshold;
+
+    public IntSet() {
+        this(DEFAULT_INITIAL_CAPACITY);
+    }
+
+    public IntSet(int initialCapacity) {
+        this(initialCapacity, DEFAULT_LOAD_FACTOR);
+    }
+
+    public IntSet(int initialCapacity, float loadFactor) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("Initial capacity must not be negative");
+        }
+
+        if (!(loadFactor > 0f && loadFactor < 1f)) {
+            throw new IllegalArgumentException("Load factor must be between 0 and 1");
+        }
+
+        this.loadFactor = loadFactor;
+        this.allocate(IntObjectMap.tableSize(initialCapacity, loadFactor));
+    }
+
+    public int size() {
+        return this.containsZero ? this.size + 1 : this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size() == 0;
+    }
+
+    public boolean contains(int key) {
+        if (key == 0) {
+            return this.containsZero;
+        }
+
+        final int mask = this.keys.length - 1;
+        int index = IntObjectMap.hash(key) & mask;
+        int current;
+        while ((current = this.keys[index]) != 0) {
+            if (current == key) {
+                return true;
+            }
+
+            index = (index + 1) & mask;
+        }
+
+        return false;
+    }
+
+    /**
+     * @return whether the value was added
+     */
+    public boolean add(int key) {
+        if (key == 0) {
+            final boolean added = !this.containsZero;
+            this.containsZero = true;
+            return added;
+        }
+
+        final int mask = this.keys.length - 1;
+        int index = IntObjectMap.hash(key) & mask;
+        int current;
+        while ((current = this.keys[index]) != 0) {
+            if (current == key) {
+                return false;
+            }
+
+            index = (index + 1) & mask;
+        }
+
+        this.keys[index] = key;
+        if (++this.size > this.threshold) {
+            this.rehash(this.keys.length << 1);
+        }
+
+        return true;
+    }
+
+    /**
+     * @return whether the value was removed
+     */
+    public boolean remove(int key) {
+        if (key == 0) {
+            final boolean removed = this.containsZero;
+            this.containsZero = false;
+            return removed;
+        }
+
+        final int mask = this.keys.length - 1;
+        int index = IntObjectMap.hash(key) & mask;
+        int current;
+        while ((current = this.keys[index]) != 0) {
+            if (current == key) {
+                this.removeAt(index);
+                return true;
+            }
+
+            index = (index + 1) & mask;
+        }
+
+        return false;
+    }
+
+    public void clear() {
+        Arrays.fill(this.keys, 0);
+        this.containsZero = false;
+        this.size = 0;
+    }
+
+    public void forEach(IntConsumer action) {
+        if (this.containsZero) {
+            action.accept(0);
+        }
+
+        for (final int key : this.keys) {
+            if (key != 0) {
+                action.accept(key);
+            }
+        }
+    }
+
+    /**
+     * Removes all values matching the filter, every value is tested exactly once.
+     */
+    public boolean removeIf(IntPredicate filter) {
+        boolean removed = false;
+        if (this.containsZero && filter.test(0)) {
+            this.containsZero = false;
+            removed = true;
+        }
+
+        final int mask = this.keys.length - 1;
+
+        // Start behind a free slot, so values shifted back by a removal only ever land on the current slot
+        int start = 0;
+        while (this.keys[start] != 0) {
+            start++;
+        }
+
+        for (int i = 1; i <= mask; i++) {
+            final int index = (start + i) & mask;
+            while (this.keys[index] != 0 && filter.test(this.keys[index])) {
+                this.removeAt(index);
+                removed = true;
+            }
+        }
+
+        return removed;
+    }
+
+    public int[] toArray() {
+        final int[] result = new int[this.size()];
+        int i = 0;
+        if (this.containsZero) {
+            i++;
+        }
+
+        for (final int key : this.keys) {
+            if (key != 0) {
+                result[i++] = key;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns a cursor over the values, the set must not be modified during iteration.
+     */
+    public Cursor cursor() {
+        return new Cursor(this);
+    }
+
+    private void removeAt(int index) {
+        final int mask = this.keys.length - 1;
+        int free = index;
+        int current = (index + 1) & mask;
+        while (this.keys[current] != 0) {
+            final int ideal = IntObjectMap.hash(this.keys[current]) & mask;
+            if (free <= current ? free >= ideal || ideal > current : free >= ideal && ideal > current) {
+                this.keys[free] = this.keys[current];
+                free = current;
+            }
+
+            current = (current + 1) & mask;
+        }
+
+        this.keys[free] = 0;
+        this.size--;
+    }
+
+    private void rehash(int tableSize) {
+        if (tableSize > MAXIMUM_CAPACITY) {
+            throw new IllegalStateException("Set exceeds the maximum capacity");
+        }
+
+        final int[] oldKeys = this.keys;
+        this.allocate(tableSize);
+
+        final int mask = tableSize - 1;
+        for (final int key : oldKeys) {
+            if (key != 0) {
+                int index = IntObjectMap.hash(key) & mask;
+                while (this.keys[index] != 0) {
+                    index = (index + 1) & mask;
+                }
+
+                this.keys[index] = key;
+            }
+        }
+    }
+
+    private void allocate(int tableSize) {
+        this.keys = new int[tableSize];
+        this.threshold = Math.min((int) (tableSize * this.loadFactor), tableSize - 1);
+    }
+
+    /**
+     * Moves over the values in table order, zero first if present.
+     */
+    public static final class Cursor {
+        private final IntSet set;
+        private int index = -2;
+
+        private Cursor(IntSet set) {
+            this.set = set;
+        }
+
+        /**
+         * Moves to the next value.
+         *
+         * @return false if there are no more values
+         */
+        public boolean advance() {
+            if (this.index == -2) {
+                this.index = -1;
+                if (this.set.containsZero) {
+                    return true;
+                }
+            }
+
+            final int[] keys = this.set.keys;
+            while (++this.index < keys.length) {
+                if (keys[this.index] != 0) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        public int key() {
+            return this.index < 0 ? 0 : this.set.keys[this.index];
+        }
+
+        /**
+         * Moves back before the first value, so the cursor can be reused.
+         */
+        public void reset() {
+            this.index = -2;
+        }
+    }
+}
@@ -0,0 +1,330 @@
+package org.spring4mc.utility.collection;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.LongFunction;
+
+/**
+ * Map from primitive {@code long} keys to values, so keys are never boxed.
+ * <p>
+ * Entries are stored in two parallel arrays with linear probing, removal shifts the following entries of the probe
+ * chain back instead of leaving tombstones. A slot is free when its value is null, so null values are not
+ * supported. Iterate with {@link #forEach(EntryConsumer)} or a {@link Cursor}, neither allocates per entry.
+ * The map is not thread-safe, see {@link ConcurrentLongObjectMap}.
+ *
+ * @param <V> the type of values
+ */
+public class LongObjectMap<V> {
+    private static final int DEFAULT_INITIAL_CAPACITY = 16;
+    private static final float DEFAULT_LOAD_FACTOR = 0.75f;
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    private final float loadFactor;
+    private long[] keys;
+    private Object[] values;
+    private int size;
+    private int threshold;
+
+    public LongObjectMap() {
+        this(DEFAULT_INITIAL_CAPACITY);
+    }
+
+    public LongObjectMap(int initialCapacity) {
+        this(initialCapacity, DEFAULT_LOAD_FACTOR);
+    }
+
+    public LongObjectMap(int initialCapacity, float loadFactor) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("Initial capacity must not be negative");
+        }
+
+        if (!(loadFactor > 0f && loadFactor < 1f)) {
+            throw new IllegalArgumentException("Load factor must be between 0 and 1");
+        }
+
+        this.loadFactor = loadFactor;
+        this.allocate(IntObjectMap.tableSize(initialCapacity, loadFactor));
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    public boolean containsKey(long key) {
+        return this.indexOf(key) >= 0;
+    }
+
+    @Nullable
+    public V get(long key) {
+        final int index = this.indexOf(key);
+        return index < 0 ? null : (V) this.values[index];
+    }
+
+    public V getOrDefault(long key, V defaultValue) {
+        final int index = this.indexOf(key);
+        return index < 0 ? defaultValue : (V) this.values[index];
+    }
+
+    /**
+     * @return the replaced value, or null
+     */
+    @Nullable
+    public V put(long key, V value) {
+        Objects.requireNonNull(value, "Value must not be null");
+        final int mask = this.keys.length - 1;
+        int index = hash(key) & mask;
+        while (this.values[index] != null) {
+            if (this.keys[index] == key) {
+                final V previous = (V) this.values[index];
+                this.values[index] = value;
+                return previous;
+            }
+
+            index = (index + 1) & mask;
+        }
+
+        this.insert(index, key, value);
+        return null;
+    }
+
+    /**
+     * @return the present value, or null if the value was stored
+     */
+    @Nullable
+    public V putIfAbsent(long key, V value) {
+        Objects.requireNonNull(value, "Value must not be null");
+        final int mask = this.keys.length - 1;
+        int index = hash(key) & mask;
+        while (this.values[index] != null) {
+            if (this.keys[index] == key) {
+                return (V) this.values[index];
+            }
+
+            index = (index + 1) & mask;
+        }
+
+        this.insert(index, key, value);
+        return null;
+    }
+
+    /**
+     * Returns the present value, or computes and stores it. The function must not modify this map.
+     */
+    public V computeIfAbsent(long key, LongFunction<? extends V> mappingFunction) {
+        final int mask = this.keys.length - 1;
+        int index = hash(key) & mask;
+        while (this.values[index] != null) {
+            if (this.keys[index] == key) {
+                return (V) this.values[index];
+            }
+
+            index = (index + 1) & mask;
+        }
+
+        final V value = Objects.requireNonNull(mappingFunction.apply(key), "Computed value must not be null");
+        this.insert(index, key, value);
+        return value;
+    }
+
+    @Nullable
+    public V remove(long key) {
+        final int index = this.indexOf(key);
+        if (index < 0) {
+            return null;
+        }
+
+        final V previous = (V) this.values[index];
+        this.removeAt(index);
+        return previous;
+    }
+
+    public void clear() {
+        Arrays.fill(this.keys, 0);
+        Arrays.fill(this.values, null);
+        this.size = 0;
+    }
+
+    public void forEach(EntryConsumer<? super V> action) {
+        final long[] keys = this.keys;
+        final Object[] values = this.values;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                action.accept(keys[i], (V) values[i]);
+            }
+        }
+    }
+
+    /**
+     * Removes all entries matching the filter, every entry is tested exactly once.
+     */
+    public boolean removeIf(EntryPredicate<? super V> filter) {
+        final int mask = this.keys.length - 1;
+
+        // Start behind a free slot, so entries shifted back by a removal only ever land on the current slot
+        int start = 0;
+        while (this.values[start] != null) {
+            start++;
+        }
+
+        boolean removed = false;
+        for (int i = 1; i <= mask; i++) {
+            final int index = (start + i) & mask;
+            while (this.values[index] != null && filter.test(this.keys[index], (V) this.values[index])) {
+                this.removeAt(index);
+                removed = true;
+            }
+        }
+
+        return removed;
+    }
+
+    /**
+     * Returns a cursor over the entries, the map must not be modified during iteration except through
+     * {@link Cursor#setValue(Object)}.
+     */
+    public Cursor<V> cursor() {
+        return new Cursor<>(this);
+    }
+
+    private int indexOf(long key) {
+        final int mask = this.keys.length - 1;
+        int index = hash(key) & mask;
+        while (this.values[index] != null) {
+            if (this.keys[index] == key) {
+                return index;
+            }
+
+            index = (index + 1) & mask;
+        }
+
+        return -1;
+    }
+
+    private void insert(int index, long key, V value) {
+        this.keys[index] = key;
+        this.values[index] = value;
+        if (++this.size > this.threshold) {
+            this.rehash(this.keys.length << 1);
+        }
+    }
+
+    /**
+     * Clears the slot and shifts back the following entries of the probe chain that may move into it.
+     */
+    private void removeAt(int index) {
+        final int mask = this.keys.length - 1;
+        int free = index;
+        int current = (index + 1) & mask;
+        while (this.values[current] != null) {
+            final int ideal = hash(this.keys[current]) & mask;
+            if (free <= current ? free >= ideal || ideal > current : free >= ideal && ideal > current) {
+                this.keys[free] = this.keys[current];
+                this.values[free] = this.values[current];
+                free = current;
+            }
+
+            current = (current + 1) & mask;
+        }
+
+        this.keys[free] = 0;
+        this.values[free] = null;
+        this.size--;
+    }
+
+    private void rehash(int tableSize) {
+        if (tableSize > MAXIMUM_CAPACITY) {
+            throw new IllegalStateException("Map exceeds the maximum capacity");
+        }
+
+        final long[] oldKeys = this.keys;
+        final Object[] oldValues = this.values;
+        this.allocate(tableSize);
+
+        final int mask = tableSize - 1;
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != null) {
+                int index = hash(oldKeys[i]) & mask;
+                while (this.values[index] != null) {
+                    index = (index + 1) & mask;
+                }
+
+                this.keys[index] = oldKeys[i];
+                this.values[index] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int tableSize) {
+        this.keys = new long[tableSize];
+        this.values = new Object[tableSize];
+        this.threshold = Math.min((int) (tableSize * this.loadFactor), tableSize - 1);
+    }
+
+    static int hash(long key) {
+        final long hash = key * 0x9e3779b97f4a7c15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    @FunctionalInterface
+    public interface EntryConsumer<V> {
+        void accept(long key, V value);
+    }
+
+    @FunctionalInterface
+    public interface EntryPredicate<V> {
+        boolean test(long key, V value);
+    }
+
+    /**
+     * Moves over the entries in table order, reading keys and values without boxing.
+     */
+    public static final class Cursor<V> {
+        private final LongObjectMap<V> map;
+        private int index = -1;
+
+        private Cursor(LongObjectMap<V> map) {
+            this.map = map;
+        }
+
+        /**
+         * Moves to the next entry.
+         *
+         * @return false if there are no more entries
+         */
+        public boolean advance() {
+            final Object[] values = this.map.values;
+            while (++this.index < values.length) {
+                if (values[this.index] != null) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        public long key() {
+            return this.map.keys[this.index];
+        }
+
+        public V value() {
+            return (V) this.map.values[this.index];
+        }
+
+        public void setValue(V value) {
+            this.map.values[this.index] = Objects.requireNonNull(value, "Value must not be null");
+        }
+
+        /**
+         * Moves back before the first entry, so the cursor can be reused.
+         */
+        public void reset() {
+            this.index = -1;
+        }
+    }
+}
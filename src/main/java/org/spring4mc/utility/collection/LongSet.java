@@ -0,0 +1,287 @@
+package org.spring4mc.utility.collection;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+import java.util.function.LongPredicate;
+
+/**
+ * Set of primitive {@code long} values, so values are never boxed.
+ * <p>
+ * Values are stored in one array with linear probing, removal shifts the following values of the probe chain back
+ * instead of leaving tombstones. Zero marks a free slot, the value zero itself is tracked separately. Iterate with
+ * {@link #forEach(LongConsumer)} or a {@link Cursor}, neither allocates per value. The set is not thread-safe, see
+ * {@link ConcurrentLongSet}.
+ */
+public class LongSet {
+    private static final int DEFAULT_INITIAL_CAPACITY = 16;
+    private static final float DEFAULT_LOAD_FACTOR = 0.75f;
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    private final float loadFactor;
+    private long[] keys;
+    private boolean containsZero;
+    private int size;
+    private int threshold;
+
+    public LongSet() {
+        this(DEFAULT_INITIAL_CAPACITY);
+    }
+
+    public LongSet(int initialCapacity) {
+        this(initialCapacity, DEFAULT_LOAD_FACTOR);
+    }
+
+    public LongSet(int initialCapacity, float loadFactor) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("Initial capacity must not be negative");
+        }
+
+        if (!(loadFactor > 0f && loadFactor < 1f)) {
+            throw new IllegalArgumentException("Load factor must be between 0 and 1");
+        }
+
+        this.loadFactor = loadFactor;
+        this.allocate(IntObjectMap.tableSize(initialCapacity, loadFactor));
+    }
+
+    public int size() {
+        return this.containsZero ? this.size + 1 : this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size() == 0;
+    }
+
+    public boolean contains(long key) {
+        if (key == 0) {
+            return this.containsZero;
+        }
+
+        final int mask = this.keys.length - 1;
+        int index = LongObjectMap.hash(key) & mask;
+        long current;
+        while ((current = this.keys[index]) != 0) {
+            if (current == key) {
+                return true;
+            }
+
+            index = (index + 1) & mask;
+        }
+
+        return false;
+    }
+
+    /**
+     * @return whether the value was added
+     */
+    public boolean add(long key) {
+        if (key == 0) {
+            final boolean added = !this.containsZero;
+            this.containsZero = true;
+            return added;
+        }
+
+        final int mask = this.keys.length - 1;
+        int index = LongObjectMap.hash(key) & mask;
+        long current;
+        while ((current = this.keys[index]) != 0) {
+            if (current == key) {
+                return false;
+            }
+
+            index = (index + 1) & mask;
+        }
+
+        this.keys[index] = key;
+        if (++this.size > this.threshold) {
+            this.rehash(this.keys.length << 1);
+        }
+
+        return true;
+    }
+
+    /**
+     * @return whether the value was removed
+     */
+    public boolean remove(long key) {
+        if (key == 0) {
+            final boolean removed = this.containsZero;
+            this.containsZero = false;
+            return removed;
+        }
+
+        final int mask = this.keys.length - 1;
+        int index = LongObjectMap.hash(key) & mask;
+        long current;
+        while ((current = this.keys[index]) != 0) {
+            if (current == key) {
+                this.removeAt(index);
+                return true;
+            }
+
+            index = (index + 1) & mask;
+        }
+
+        return false;
+    }
+
+    public void clear() {
+        Arrays.fill(this.keys, 0);
+        this.containsZero = false;
+        this.size = 0;
+    }
+
+    public void forEach(LongConsumer action) {
+        if (this.containsZero) {
+            action.accept(0);
+        }
+
+        for (final long key : this.keys) {
+            if (key != 0) {
+                action.accept(key);
+            }
+        }
+    }
+
+    /**
+     * Removes all values matching the filter, every value is tested exactly once.
+     */
+    public boolean removeIf(LongPredicate filter) {
+        boolean removed = false;
+        if (this.containsZero && filter.test(0)) {
+            this.containsZero = false;
+            removed = true;
+        }
+
+        final int mask = this.keys.length - 1;
+
+        // Start behind a free slot, so values shifted back by a removal only ever land on the current slot
+        int start = 0;
+        while (this.keys[start] != 0) {
+            start++;
+        }
+
+        for (int i = 1; i <= mask; i++) {
+            final int index = (start + i) & mask;
+            while (this.keys[index] != 0 && filter.test(this.keys[index])) {
+                this.removeAt(index);
+                removed = true;
+            }
+        }
+
+        return removed;
+    }
+
+    public long[] toArray() {
+        final long[] result = new long[this.size()];
+        int i = 0;
+        if (this.containsZero) {
+            i++;
+        }
+
+        for (final long key : this.keys) {
+            if (key != 0) {
+                result[i++] = key;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns a cursor over the values, the set must not be modified during iteration.
+     */
+    public Cursor cursor() {
+        return new Cursor(this);
+    }
+
+    private void removeAt(int index) {
+        final int mask = this.keys.length - 1;
+        int free = index;
+        int current = (index + 1) & mask;
+        while (this.keys[current] != 0) {
+            final int ideal = LongObjectMap.hash(this.keys[current]) & mask;
+            if (free <= current ? free >= ideal || ideal > current : free >= ideal && ideal > current) {
+                this.keys[free] = this.keys[current];
+                free = current;
+            }
+
+            current = (current + 1) & mask;
+        }
+
+        this.keys[free] = 0;
+        this.size--;
+    }
+
+    private void rehash(int tableSize) {
+        if (tableSize > MAXIMUM_CAPACITY) {
+            throw new IllegalStateException("Set exceeds the maximum capacity");
+        }
+
+        final long[] oldKeys = this.keys;
+        this.allocate(tableSize);
+
+        final int mask = tableSize - 1;
+        for (final long key : oldKeys) {
+            if (key != 0) {
+                int index = LongObjectMap.hash(key) & mask;
+                while (this.keys[index] != 0) {
+                    index = (index + 1) & mask;
+                }
+
+                this.keys[index] = key;
+            }
+        }
+    }
+
+    private void allocate(int tableSize) {
+        this.keys = new long[tableSize];
+        this.threshold = Math.min((int) (tableSize * this.loadFactor), tableSize - 1);
+    }
+
+    /**
+     * Moves over the values in table order, zero first if present.
+     */
+    public static final class Cursor {
+        private final LongSet set;
+        private int index = -2;
+
+        private Cursor(LongSet set) {
+            this.set = set;
+        }
+
+        /**
+         * Moves to the next value.
+         *
+         * @return false if there are no more values
+         */
+        public boolean advance() {
+            if (this.index == -2) {
+                this.index = -1;
+                if (this.set.containsZero) {
+                    return true;
+                }
+            }
+
+            final long[] keys = this.set.keys;
+            while (++this.index < keys.length) {
+                if (keys[this.index] != 0) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        public long key() {
+            return this.index < 0 ? 0 : this.set.keys[this.index];
+        }
+
+        /**
+         * Moves back before the first value, so the cursor can be reused.
+         */
+        public void reset() {
+            this.index = -2;
+        }
+    }
+}
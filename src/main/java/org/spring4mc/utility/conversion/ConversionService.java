@@ -0,0 +1,482 @@
+package org.spring4mc.utility.conversion;
+
+import org.jetbrains.annotations.Nullable;
+import org.spring4mc.utility.collection.ConcurrentBoundedCache;
+import org.spring4mc.utility.primitive.PrimitiveUtility;
+import org.spring4mc.utility.typetoken.TypeToken;
+import org.spring4mc.utility.typetoken.TypeTokenAssignability;
+import org.spring4mc.utility.typetoken.TypeTokenHierarchy;
+import org.spring4mc.utility.typetoken.TypeTokenResolver;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Converts values between types described by type tokens.
+ * <p>
+ * A {@link ValueConverter} is composed once per pair of source and target type, ignoring type annotations, and
+ * cached. Composition looks up methods reflectively, converting afterwards only invokes the composed method handle.
+ * Conversions are tried in order:
+ * <ol>
+ *     <li>registered converters, the last registered first</li>
+ *     <li>to {@link Optional}, converting to its element type, and from {@link Optional} by unwrapping it</li>
+ *     <li>assignment, including boxing into any supertype of the wrapper, e.g. {@code int} to {@code Number}, and
+ *     widening of primitives, the type arguments of the source resolved up to a parameterized target must be contained
+ *     by the target's, a raw source is assigned unchecked as in Java</li>
+ *     <li>wrapping, unwrapping and widening primitive conversions, e.g. {@code Integer} to {@code long}</li>
+ *     <li>to {@link String}, through {@link String#valueOf} for primitives and {@link Enum#name()} for enums</li>
+ *     <li>from {@link String}, parsing primitives, enum constant names, or through a public static
+ *     {@code valueOf(String)}, {@code of(String)}, {@code parse(CharSequence)}, {@code fromString(String)} or a public
+ *     constructor taking a {@code String} of the target class</li>
+ * </ol>
+ * Narrowing primitive conversions aren't supported.
+ */
+public class ConversionService {
+    private static final int DEFAULT_MAXIMUM_CACHED_CONVERTERS = 1024;
+    private static final String[] FACTORY_METHODS = {"valueOf", "of", "parse", "fromString"};
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final MethodHandle FUNCTION_APPLY = findVirtual(Function.class, "apply", MethodType.methodType(Object.class, Object.class));
+    private static final MethodHandle IS_NULL = findStatic(Objects.class, "isNull", MethodType.methodType(boolean.class, Object.class));
+    private static final MethodHandle REQUIRE_NON_NULL = findStatic(Objects.class, "requireNonNull", MethodType.methodType(Object.class, Object.class));
+    private static final MethodHandle OPTIONAL_OF_NULLABLE = findStatic(Optional.class, "ofNullable", MethodType.methodType(Optional.class, Object.class));
+    private static final MethodHandle OPTIONAL_OR_ELSE_NULL = MethodHandles.insertArguments(findVirtual(Optional.class, "orElse", MethodType.methodType(Object.class, Object.class)), 1, (Object) null);
+    private static final MethodHandle ENUM_NAME = findVirtual(Enum.class, "name", MethodType.methodType(String.class));
+    private static final MethodHandle ENUM_VALUE_OF = findStatic(Enum.class, "valueOf", MethodType.methodType(Enum.class, Class.class, String.class));
+    private static final MethodHandle TO_STRING = findVirtual(Object.class, "toString", MethodType.methodType(String.class));
+
+    private final ConcurrentBoundedCache<Key, Composition> converters;
+    private final List<Registration> registrations = new CopyOnWriteArrayList<>();
+
+    // Bumped by every registration, compositions of an older generation are never reused
+    private final AtomicInteger generation = new AtomicInteger();
+
+    public ConversionService() {
+        this(DEFAULT_MAXIMUM_CACHED_CONVERTERS);
+    }
+
+    /**
+     * @param maximumCachedConverters the maximum number of cached converters, including unsupported pairs of types
+     */
+    public ConversionService(int maximumCachedConverters) {
+        this.converters = new ConcurrentBoundedCache<>(maximumCachedConverters);
+    }
+
+    /**
+     * Registers a converter from the source class and its subclasses to the target class, taking precedence over
+     * all built-in conversions and previously registered converters.
+     */
+    public <S, T> void register(Class<S> sourceType, Class<T> targetType, Function<? super S, ? extends T> function) {
+        this.register(sourceType, targetType, FUNCTION_APPLY.bindTo(function));
+    }
+
+    /**
+     * Registers a converter handle, see {@link #register(Class, Class, Function)}.
+     *
+     * @param handle a handle taking one argument, adaptable to the source and target class by
+     *               {@link MethodHandle#asType(MethodType)}
+     */
+    public void register(Class<?> sourceType, Class<?> targetType, MethodHandle handle) {
+        final MethodHandle adapted = handle.asType(MethodType.methodType(targetType, sourceType));
+        this.registrations.add(0, new Registration(sourceType, targetType, adapted));
+        this.generation.incrementAndGet();
+        this.converters.invalidateAll();
+    }
+
+    public boolean canConvert(TypeToken<?> sourceType, TypeToken<?> targetType) {
+        return this.getComposition(sourceType, targetType).converter != null;
+    }
+
+    /**
+     * Returns the cached converter of the types, which should be kept by callers converting on hot paths.
+     *
+     * @throws IllegalArgumentException if there is no conversion between the types
+     */
+    public <S, T> ValueConverter<S, T> getConverter(TypeToken<S> sourceType, TypeToken<T> targetType) {
+        final ValueConverter<?, ?> converter = this.getComposition(sourceType, targetType).converter;
+        if (converter == null) {
+            throw new IllegalArgumentException(String.format("No conversion from %s to %s", sourceType, targetType));
+        }
+
+        return (ValueConverter<S, T>) converter;
+    }
+
+    /**
+     * Converts the value from its runtime class, null converts to null unless the target is primitive. Looks up the
+     * cached converter on every call, {@link #getConverter(TypeToken, TypeToken)} avoids that on hot paths.
+     */
+    @Nullable
+    public <T> T convert(@Nullable Object value, TypeToken<T> targetType) {
+        if (value == null) {
+            if (targetType.getDeclaredType().isPrimitive()) {
+                throw new NullPointerException(String.format("Cannot convert null to %s", targetType));
+            }
+
+            return null;
+        }
+
+        if (value instanceof Optional<?> optional) {
+            // The element type isn't known at runtime, the element is converted from its own class instead
+            if (targetType.getDeclaredType() == Optional.class) {
+                return (T) optional.map(element -> this.convert(element, elementType(targetType)));
+            }
+
+            return this.convert(optional.orElse(null), targetType);
+        }
+
+        return this.getConverter((TypeToken<Object>) TypeToken.ofClass(value.getClass()), targetType).convert(value);
+    }
+
+    private Composition getComposition(TypeToken<?> sourceType, TypeToken<?> targetType) {
+        final int generation = this.generation.get();
+        final Key key = new Key(sourceType.stripAnnotations(), targetType.stripAnnotations());
+        final Composition cached = this.converters.get(key);
+        if (cached != null && cached.generation == generation) {
+            return cached;
+        }
+
+        // Composed from the registrations of the read generation at the latest, so a concurrent registration
+        // leaves it stale instead of lost
+        final MethodHandle handle = this.compose(key.sourceType, key.targetType);
+        final Composition composition = new Composition(generation, handle == null ? null : new ValueConverter<>((TypeToken<Object>) key.sourceType, (TypeToken<Object>) key.targetType, handle));
+        this.converters.put(key, composition);
+
+        return composition;
+    }
+
+    /**
+     * Returns a handle from the erased source type to the erased target type, or null if there is no conversion.
+     */
+    @Nullable
+    private MethodHandle compose(TypeToken<?> sourceType, TypeToken<?> targetType) {
+        final Class<?> source = sourceType.getDeclaredType();
+        final Class<?> target = targetType.getDeclaredType();
+        final MethodType type = MethodType.methodType(target, source);
+
+        for (final Registration registration : this.registrations) {
+            if (TypeTokenAssignability.isAssignable(registration.sourceType, PrimitiveUtility.wrap(source)) && TypeTokenAssignability.isAssignable(PrimitiveUtility.wrap(target), registration.targetType)) {
+                return nullSafe(registration.handle.asType(type));
+            }
+        }
+
+        if (target == Optional.class) {
+            final TypeToken<?> element = elementType(targetType);
+            final MethodHandle unwrapped = source == Optional.class ? this.compose(elementType(sourceType), element) : this.compose(sourceType, element);
+            if (unwrapped == null) {
+                return null;
+            }
+
+            final MethodHandle wrapped = MethodHandles.filterReturnValue(unwrapped, OPTIONAL_OF_NULLABLE.asType(MethodType.methodType(Optional.class, unwrapped.type().returnType())));
+            return source == Optional.class ? unwrapOptional(wrapped) : wrapped.asType(type);
+        }
+
+        if (source == Optional.class) {
+            final MethodHandle unwrapped = this.compose(elementType(sourceType), targetType);
+            return unwrapped == null ? null : unwrapOptional(unwrapped).asType(type);
+        }
+
+        if (TypeTokenAssignability.isAssignable(target, source) && hasCompatibleArguments(sourceType, targetType)) {
+            return MethodHandles.identity(source).asType(type);
+        }
+
+        if (source.isPrimitive() && TypeTokenAssignability.isAssignable(target, PrimitiveUtility.wrap(source)) && hasCompatibleArguments(TypeToken.ofClass(PrimitiveUtility.wrap(source)), targetType)) {
+            // Boxing into a supertype of the wrapper, e.g. int to Number
+            return MethodHandles.identity(source).asType(type);
+        }
+
+        final Class<?> primitiveSource = PrimitiveUtility.unwrap(source);
+        final Class<?> primitiveTarget = PrimitiveUtility.unwrap(target);
+        if (PrimitiveUtility.isWidening(primitiveSource, primitiveTarget)) {
+            // Unbox, widen and box one step at a time, asType can't widen and box at once, e.g. int to Long
+            final MethodHandle widening = MethodHandles.identity(primitiveTarget).asType(MethodType.methodType(target, primitiveSource));
+            return nullSafe(widening.asType(type));
+        }
+
+        if (target == String.class) {
+            return toStringHandle(source);
+        }
+
+        if (source == String.class) {
+            return fromStringHandle(target);
+        }
+
+        return null;
+    }
+
+    private static MethodHandle toStringHandle(Class<?> source) {
+        if (source.isPrimitive()) {
+            // String.valueOf has no byte and short overloads, they widen to int
+            final Class<?> parameter = source == byte.class || source == short.class ? int.class : source;
+            return findStatic(String.class, "valueOf", MethodType.methodType(String.class, parameter)).asType(MethodType.methodType(String.class, source));
+        }
+
+        final MethodHandle handle = Enum.class.isAssignableFrom(source) ? ENUM_NAME : TO_STRING;
+        return nullSafe(handle.asType(MethodType.methodType(String.class, source)));
+    }
+
+    @Nullable
+    private static MethodHandle fromStringHandle(Class<?> target) {
+        final MethodType type = MethodType.methodType(target, String.class);
+        final Class<?> primitive = PrimitiveUtility.unwrap(target);
+        if (primitive.isPrimitive()) {
+            final MethodHandle parse = switch (primitive.getName()) {
+                case "boolean", "char" -> findStatic(ConversionService.class, primitive == boolean.class ? "parseBoolean" : "parseChar", MethodType.methodType(primitive, String.class));
+                case "int" -> findStatic(Integer.class, "parseInt", MethodType.methodType(int.class, String.class));
+                default -> {
+                    final String name = primitive.getName();
+                    yield findStatic(PrimitiveUtility.wrap(primitive), "parse" + Character.toUpperCase(name.charAt(0)) + name.substring(1), MethodType.methodType(primitive, String.class));
+                }
+            };
+
+            return nullSafe(parse.asType(type));
+        }
+
+        if (target.isEnum()) {
+            return nullSafe(MethodHandles.insertArguments(ENUM_VALUE_OF, 0, target).asType(type));
+        }
+
+        final MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        for (final String name : FACTORY_METHODS) {
+            for (final Class<?> parameter : new Class<?>[]{String.class, CharSequence.class}) {
+                try {
+                    return nullSafe(lookup.findStatic(target, name, MethodType.methodType(target, parameter)).asType(type));
+                } catch (NoSuchMethodException | IllegalAccessException ignored) {
+                    // Try the next factory method
+                }
+            }
+        }
+
+        try {
+            return nullSafe(lookup.findConstructor(target, MethodType.methodType(void.class, String.class)).asType(type));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the element type of an {@link Optional} token, the bound for wildcards and {@link Object} if it's raw.
+     */
+    private static TypeToken<?> elementType(TypeToken<?> optionalType) {
+        if (!(optionalType instanceof TypeToken.Parameterized<?> parameterized) || parameterized.getTypeArguments().length != 1) {
+            return TypeToken.ofClass(Object.class);
+        }
+
+        final TypeToken<?> argument = parameterized.getTypeArguments()[0];
+        if (argument instanceof TypeToken.Wildcard<?> wildcard) {
+            final TypeToken<?>[] bounds = wildcard.getKind() == TypeToken.Wildcard.Kind.SUPER ? wildcard.getLowerBounds() : wildcard.getUpperBounds();
+            return bounds.length == 0 ? TypeToken.ofClass(Object.class) : bounds[0];
+        }
+
+        return argument;
+    }
+
+    /**
+     * Returns whether a value of the source type can be assigned to the target without converting its type arguments.
+     * The source is resolved up to the class of a parameterized target, whose type arguments must contain the resolved
+     * ones, e.g. {@code ArrayList<String>} to {@code List<? extends CharSequence>}. Arguments of a raw source are
+     * unknown, e.g. of runtime classes, and assigned unchecked.
+     */
+    private static boolean hasCompatibleArguments(TypeToken<?> sourceType, TypeToken<?> targetType) {
+        if (!(targetType instanceof TypeToken.Parameterized<?> parameterized) || sourceType.equals(targetType)) {
+            return true;
+        }
+
+        final TypeToken<?> resolved = resolveTo(sourceType, parameterized.getDeclaredType());
+        if (!(resolved instanceof TypeToken.Parameterized<?> resolvedParameterized)) {
+            // Raw source
+            return true;
+        }
+
+        final boolean raw = !(sourceType instanceof TypeToken.Parameterized<?>);
+        final TypeToken<?>[] sourceArguments = resolvedParameterized.getTypeArguments();
+        final TypeToken<?>[] targetArguments = parameterized.getTypeArguments();
+        if (sourceArguments.length != targetArguments.length) {
+            return false;
+        }
+
+        for (int i = 0; i < targetArguments.length; i++) {
+            if (raw && sourceArguments[i] instanceof TypeToken.TypeVar<?>) {
+                continue;
+            }
+
+            if (!isContained(sourceArguments[i], targetArguments[i])) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the parameterized supertype of the source declared by the target class, the source itself if it's
+     * declared by it, or null if it isn't parameterized.
+     */
+    @Nullable
+    private static TypeToken<?> resolveTo(TypeToken<?> sourceType, Class<?> target) {
+        if (sourceType.getDeclaredType() == target) {
+            return sourceType;
+        }
+
+        final TypeToken<?> supertype = TypeTokenHierarchy.of(sourceType.getDeclaredType()).findGenericSupertype(candidate -> candidate.getDeclaredType() == target ? candidate : null);
+        return supertype == null ? null : TypeTokenResolver.resolveDeclaredTypes(supertype, sourceType);
+    }
+
+    /**
+     * Returns whether the source type argument is contained by the target type argument, i.e. is the same or within
+     * the bounds of a target wildcard.
+     */
+    private static boolean isContained(TypeToken<?> sourceArgument, TypeToken<?> targetArgument) {
+        if (sourceArgument.equals(targetArgument)) {
+            return true;
+        }
+
+        if (!(targetArgument instanceof TypeToken.Wildcard<?> wildcard)) {
+            return false;
+        }
+
+        return switch (wildcard.getKind()) {
+            case RAW -> true;
+            case EXTENDS -> {
+                final TypeToken<?> upperBound = bound(wildcard.getUpperBounds());
+                final TypeToken<?> sourceUpperBound = sourceArgument instanceof TypeToken.Wildcard<?> sourceWildcard
+                        ? sourceWildcard.getKind() == TypeToken.Wildcard.Kind.EXTENDS ? bound(sourceWildcard.getUpperBounds()) : null
+                        : sourceArgument;
+                yield upperBound == null || sourceUpperBound != null && isSubtype(sourceUpperBound, upperBound);
+            }
+            case SUPER -> {
+                final TypeToken<?> lowerBound = bound(wildcard.getLowerBounds());
+                final TypeToken<?> sourceLowerBound = sourceArgument instanceof TypeToken.Wildcard<?> sourceWildcard
+                        ? sourceWildcard.getKind() == TypeToken.Wildcard.Kind.SUPER ? bound(sourceWildcard.getLowerBounds()) : null
+                        : sourceArgument;
+                yield lowerBound != null && sourceLowerBound != null && isSubtype(lowerBound, sourceLowerBound);
+            }
+        };
+    }
+
+    @Nullable
+    private static TypeToken<?> bound(TypeToken<?>[] bounds) {
+        return bounds.length == 0 ? null : bounds[0];
+    }
+
+    private static boolean isSubtype(TypeToken<?> sourceType, TypeToken<?> targetType) {
+        if (targetType.getDeclaredType() == Object.class && !(targetType instanceof TypeToken.Parameterized<?>)) {
+            return true;
+        }
+
+        return TypeTokenAssignability.isAssignable(targetType.getDeclaredType(), sourceType.getDeclaredType()) && hasCompatibleArguments(sourceType, targetType);
+    }
+
+    private static MethodHandle unwrapOptional(MethodHandle handle) {
+        return MethodHandles.filterArguments(handle, 0, OPTIONAL_OR_ELSE_NULL.asType(MethodType.methodType(handle.type().parameterType(0), Optional.class)));
+    }
+
+    /**
+     * Guards handles between reference types, so null converts to null without calling them. Handles from a reference
+     * to a primitive type throw {@link NullPointerException} for null, as unboxing does, instead of however the
+     * handle fails, e.g. parsing null.
+     */
+    private static MethodHandle nullSafe(MethodHandle handle) {
+        final MethodType type = handle.type();
+        if (type.parameterType(0).isPrimitive()) {
+            return handle;
+        }
+
+        if (type.returnType().isPrimitive()) {
+            return MethodHandles.filterArguments(handle, 0, REQUIRE_NON_NULL.asType(MethodType.methodType(type.parameterType(0), type.parameterType(0))));
+        }
+
+        return MethodHandles.guardWithTest(IS_NULL.asType(MethodType.methodType(boolean.class, type.parameterType(0))), MethodHandles.empty(type), handle);
+    }
+
+    private static boolean parseBoolean(String value) {
+        if (value.equalsIgnoreCase("true")) {
+            return true;
+        }
+
+        if (value.equalsIgnoreCase("false")) {
+            return false;
+        }
+
+        throw new IllegalArgumentException(String.format("\"%s\" is not a boolean", value));
+    }
+
+    private static char parseChar(String value) {
+        if (value.length() != 1) {
+            throw new IllegalArgumentException(String.format("\"%s\" is not a single character", value));
+        }
+
+        return value.charAt(0);
+    }
+
+    private static MethodHandle findStatic(Class<?> owner, String name, MethodType type) {
+        try {
+            return LOOKUP.findStatic(owner, name, type);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static MethodHandle findVirtual(Class<?> owner, String name, MethodType type) {
+        try {
+            return LOOKUP.findVirtual(owner, name, type);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class Key {
+        private final TypeToken<?> sourceType;
+        private final TypeToken<?> targetType;
+        private final int hash;
+
+        private Key(TypeToken<?> sourceType, TypeToken<?> targetType) {
+            this.sourceType = sourceType;
+            this.targetType = targetType;
+            this.hash = 31 * sourceType.hashCode() + targetType.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Key other && this.sourceType.equals(other.sourceType) && this.targetType.equals(other.targetType);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+    }
+
+    /**
+     * Cached outcome of composing a pair of types, the converter is null if they aren't convertible.
+     */
+    private static final class Composition {
+        private final int generation;
+
+        @Nullable
+        private final ValueConverter<?, ?> converter;
+
+        private Composition(int generation, @Nullable ValueConverter<?, ?> converter) {
+            this.generation = generation;
+            this.converter = converter;
+        }
+    }
+
+    private static final class Registration {
+        private final Class<?> sourceType;
+        private final Class<?> targetType;
+        private final MethodHandle handle;
+
+        private Registration(Class<?> sourceType, Class<?> targetType, MethodHandle handle) {
+            this.sourceType = sourceType;
+            this.targetType = targetType;
+            this.handle = handle;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package org.spring4mc.utility.conversion;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import org.jetbrains.annotations.Nullable;
+import org.spring4mc.utility.primitive.PrimitiveUtility;
+import org.spring4mc.utility.typetoken.TypeToken;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+
+/**
+ * Converter between two types, composed once by {@link ConversionService} from method handles.
+ * <p>
+ * {@link #getHandle()} is typed by the erasures of the source and target types, so primitives stay unboxed when it's
+ * invoked exactly or composed further, e.g. with a field setter. {@link #convert(Object)} boxes primitives, the
+ * {@code applyAs} methods only box a primitive source. Converting null to a primitive throws
+ * {@link NullPointerException}, null otherwise converts to null.
+ *
+ * @param <S> the source type
+ * @param <T> the target type
+ */
+@Getter
+public final class ValueConverter<S, T> {
+    private final TypeToken<S> sourceType;
+    private final TypeToken<T> targetType;
+
+    /**
+     * Handle from the erased source type to the erased target type.
+     */
+    private final MethodHandle handle;
+
+    @Getter(AccessLevel.NONE)
+    private final MethodHandle objectHandle;
+
+    @Nullable
+    @Getter(AccessLevel.NONE)
+    private final MethodHandle primitiveHandle;
+
+    ValueConverter(TypeToken<S> sourceType, TypeToken<T> targetType, MethodHandle handle) {
+        this.sourceType = sourceType;
+        this.targetType = targetType;
+        this.handle = handle;
+        this.objectHandle = handle.asType(MethodType.methodType(Object.class, Object.class));
+
+        final Class<?> primitive = PrimitiveUtility.unwrap(handle.type().returnType());
+        this.primitiveHandle = primitive.isPrimitive() ? handle.asType(MethodType.methodType(primitive, Object.class)) : null;
+    }
+
+    @Nullable
+    public T convert(@Nullable S value) {
+        try {
+            return (T) this.objectHandle.invokeExact((Object) value);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw this.failure(value, e);
+        }
+    }
+
+    public int applyAsInt(@Nullable S value) {
+        try {
+            return (int) this.primitiveHandle(int.class).invokeExact((Object) value);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw this.failure(value, e);
+        }
+    }
+
+    public long applyAsLong(@Nullable S value) {
+        try {
+            return (long) this.primitiveHandle(long.class).invokeExact((Object) value);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw this.failure(value, e);
+        }
+    }
+
+    public double applyAsDouble(@Nullable S value) {
+        try {
+            return (double) this.primitiveHandle(double.class).invokeExact((Object) value);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw this.failure(value, e);
+        }
+    }
+
+    public boolean applyAsBoolean(@Nullable S value) {
+        try {
+            return (boolean) this.primitiveHandle(boolean.class).invokeExact((Object) value);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw this.failure(value, e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ValueConverter[%s -> %s]", this.sourceType, this.targetType);
+    }
+
+    private MethodHandle primitiveHandle(Class<?> primitive) {
+        if (this.primitiveHandle == null || this.primitiveHandle.type().returnType() != primitive) {
+            throw new IllegalStateException(String.format("%s doesn't convert to %s", this, primitive.getName()));
+        }
+
+        return this.primitiveHandle;
+    }
+
+    private IllegalArgumentException failure(@Nullable Object value, Throwable cause) {
+        return new IllegalArgumentException(String.format("Cannot convert %s to %s", value, this.targetType), cause);
+    }
+}
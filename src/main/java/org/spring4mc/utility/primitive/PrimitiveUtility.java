@@ -1,27 +1,139 @@
 package org.spring4mc.utility.primitive;
 
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Lookups between primitive types and their wrappers.
+ * <p>
+ * Every class is resolved once to its {@link Primitive} through a {@link ClassValue}, so wrapping, unwrapping and the
+ * metadata lookups are a single probe instead of comparing against every primitive, including for the common case of
+ * classes that are neither primitives nor wrappers.
+ */
 public class PrimitiveUtility {
+    private static final ClassValue<Primitive> PRIMITIVES = new ClassValue<>() {
+        @Override
+        @Nullable
+        protected Primitive computeValue(Class<?> type) {
+            for (final Primitive primitive : Primitive.values()) {
+                if (primitive.primitiveType == type || primitive.wrapperType == type) {
+                    return primitive;
+                }
+            }
+
+            return null;
+        }
+    };
+
+    /**
+     * Returns the wrapper of a primitive type, other classes and {@code void} are returned as is.
+     */
     public static Class<?> wrap(Class<?> primitiveClass) {
-        return primitiveClass == int.class
-                ? Integer.class : primitiveClass == double.class
-                ? Double.class : primitiveClass == float.class
-                ? Float.class : primitiveClass == boolean.class
-                ? Boolean.class : primitiveClass == long.class
-                ? Long.class : primitiveClass == short.class
-                ? Short.class : primitiveClass == byte.class
-                ? Byte.class : primitiveClass == char.class
-                ? Character.class : primitiveClass;
+        if (!primitiveClass.isPrimitive()) {
+            return primitiveClass;
+        }
+
+        final Primitive primitive = PRIMITIVES.get(primitiveClass);
+        return primitive == null ? primitiveClass : primitive.wrapperType;
     }
 
+    /**
+     * Returns the primitive type of a wrapper, other classes and {@link Void} are returned as is.
+     */
     public static Class<?> unwrap(Class<?> wrapperClass) {
-        return wrapperClass == Integer.class
-                ? int.class : wrapperClass == Double.class
-                ? double.class : wrapperClass == Float.class
-                ? float.class : wrapperClass == Boolean.class
-                ? boolean.class : wrapperClass == Long.class
-                ? long.class : wrapperClass == Short.class
-                ? short.class : wrapperClass == Byte.class
-                ? byte.class : wrapperClass == Character.class
-                ? char.class : wrapperClass;
+        if (wrapperClass.isPrimitive()) {
+            return wrapperClass;
+        }
+
+        final Primitive primitive = PRIMITIVES.get(wrapperClass);
+        return primitive == null ? wrapperClass : primitive.primitiveType;
+    }
+
+    public static boolean isWrapper(Class<?> type) {
+        return !type.isPrimitive() && PRIMITIVES.get(type) != null;
+    }
+
+    /**
+     * Returns whether the type is one of the eight primitive types or their wrappers, {@code void} isn't included.
+     */
+    public static boolean isPrimitiveOrWrapper(Class<?> type) {
+        return PRIMITIVES.get(type) != null;
+    }
+
+    /**
+     * Returns whether the types are the same after unwrapping, e.g. {@code int} and {@link Integer}.
+     */
+    public static boolean isSameUnwrapped(Class<?> first, Class<?> second) {
+        return first == second || unwrap(first) == unwrap(second);
+    }
+
+    /**
+     * Returns the value of an uninitialized field of the type, e.g. {@code 0} for {@code int}. Null for reference
+     * types including wrappers, and for {@code void}.
+     */
+    @Nullable
+    public static Object getDefaultValue(Class<?> type) {
+        final Primitive primitive = type.isPrimitive() ? PRIMITIVES.get(type) : null;
+        return primitive == null ? null : primitive.defaultValue;
+    }
+
+    /**
+     * Returns the size in bytes of a primitive type or the primitive type of a wrapper, as given by its
+     * {@code BYTES} constant. Booleans count as one byte.
+     *
+     * @throws IllegalArgumentException if the type is neither a primitive nor a wrapper, or is {@code void}
+     */
+    public static int getSize(Class<?> type) {
+        return getPrimitive(type).size;
+    }
+
+    /**
+     * Returns whether a value of the primitive type {@code from} converts to the primitive type {@code to} by identity
+     * or a widening primitive conversion, e.g. {@code int} to {@code long} or {@code char} to {@code int}. Wrappers
+     * are unwrapped first, any other type is never convertible.
+     */
+    public static boolean isWidening(Class<?> from, Class<?> to) {
+        final Primitive source = PRIMITIVES.get(from);
+        final Primitive target = PRIMITIVES.get(to);
+        return source != null && target != null && (source == target || (source.wideningTargets & (1 << target.ordinal())) != 0);
+    }
+
+    private static Primitive getPrimitive(Class<?> type) {
+        final Primitive primitive = PRIMITIVES.get(type);
+        if (primitive == null) {
+            throw new IllegalArgumentException(String.format("%s is neither a primitive nor a wrapper", type.getName()));
+        }
+
+        return primitive;
+    }
+
+    private enum Primitive {
+        DOUBLE(double.class, Double.class, 0d, Double.BYTES),
+        FLOAT(float.class, Float.class, 0f, Float.BYTES, DOUBLE),
+        LONG(long.class, Long.class, 0L, Long.BYTES, FLOAT, DOUBLE),
+        INT(int.class, Integer.class, 0, Integer.BYTES, LONG, FLOAT, DOUBLE),
+        CHAR(char.class, Character.class, '\0', Character.BYTES, INT, LONG, FLOAT, DOUBLE),
+        SHORT(short.class, Short.class, (short) 0, Short.BYTES, INT, LONG, FLOAT, DOUBLE),
+        BYTE(byte.class, Byte.class, (byte) 0, Byte.BYTES, SHORT, INT, LONG, FLOAT, DOUBLE),
+        BOOLEAN(boolean.class, Boolean.class, false, 1);
+
+        private final Class<?> primitiveType;
+        private final Class<?> wrapperType;
+        private final Object defaultValue;
+        private final int size;
+        private final int wideningTargets;
+
+        Primitive(Class<?> primitiveType, Class<?> wrapperType, Object defaultValue, int size, Primitive... wideningTargets) {
+            this.primitiveType = primitiveType;
+            this.wrapperType = wrapperType;
+            this.defaultValue = defaultValue;
+            this.size = size;
+
+            int targets = 0;
+            for (final Primitive target : wideningTargets) {
+                targets |= 1 << target.ordinal();
+            }
+
+            this.wideningTargets = targets;
+        }
     }
 }
@@ -0,0 +1,14 @@
+package org.spring4mc.utility.typetoken;
+
+import java.lang.annotation.*;
+
+/**
+ * Marks a class for which the {@code utility-processor} annotation processor generates a {@code <Class>$$TypeTokens}
+ * {@link TypeTokenMetadata} with the type tokens of its declared fields and methods, so they don't have to be built
+ * by reflection at runtime.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface GenerateTypeTokens {
+}
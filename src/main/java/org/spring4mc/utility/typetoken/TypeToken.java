@@ -2,6 +2,8 @@ package org.spring4mc.utility.typetoken;
 
 import lombok.Getter;
 import org.jetbrains.annotations.CheckReturnValue;
+import org.spring4mc.utility.primitive.PrimitiveUtility;
+import org.springframework.core.annotation.MergedAnnotations;
 import org.springframework.lang.NonNull;
 import org.springframework.lang.Nullable;
 
@@ -17,7 +19,19 @@ public interface TypeToken<T> extends Type, AnnotatedElement {
      * @return an `ITypeToken` representing the method's return type
      */
     static <T> TypeToken<T> ofMethodReturnType(Method method) {
-        return create(method.getGenericReturnType(), method.getAnnotatedReturnType());
+        return TypeTokenMemberTable.getMethodReturnType(method);
+    }
+
+    /**
+     * Creates an `ITypeToken` instance representing the type of a parameter of a specified method.
+     *
+     * @param method the method declaring the parameter
+     * @param index  the index of the parameter
+     * @param <T>    the type parameter representing the type of the parameter
+     * @return an `ITypeToken` representing the parameter's type
+     */
+    static <T> TypeToken<T> ofMethodParameterType(Method method, int index) {
+        return TypeTokenMemberTable.getMethodParameterType(method, index);
     }
 
     /**
@@ -28,7 +42,7 @@ public interface TypeToken<T> extends Type, AnnotatedElement {
      * @return an `ITypeToken` representing the field's type
      */
     static <T> TypeToken<T> ofFieldType(Field field) {
-        return create(field.getGenericType(), field.getAnnotatedType());
+        return TypeTokenMemberTable.getFieldType(field);
     }
 
     /**
@@ -43,7 +57,7 @@ public interface TypeToken<T> extends Type, AnnotatedElement {
     }
 
     static <T> TypeToken<T> ofClass(Class<T> type) {
-        return create(type, (AnnotatedElement) null);
+        return TypeTokenCache.ofClass(type);
     }
 
     /**
@@ -55,41 +69,15 @@ public interface TypeToken<T> extends Type, AnnotatedElement {
      * @return an `ITypeToken` representing the specified type and annotations
      */
     static <T> TypeToken<T> create(@NonNull Type type, @Nullable AnnotatedElement annotatedElement) {
-        return new TypeTokenImpl.TypeTokenConverter().convert(type, annotatedElement);
+        return TypeTokenCache.create(type, annotatedElement);
     }
 
     static <T> TypeToken<T> convertGeneric(Class<T> clazz) {
-        if (clazz.getTypeParameters().length == 0) {
-            return ofClass(clazz);
-        }
-
-        final TypeVariable<Class<T>>[] typeParameters = clazz.getTypeParameters();
-
-        final ParameterizedType type = new ParameterizedType() {
-            @Override
-            public @NonNull Type[] getActualTypeArguments() {
-                return typeParameters;
-            }
-
-            @Override
-            public @NonNull Type getRawType() {
-                return clazz;
-            }
-
-            @Override
-            public Type getOwnerType() {
-                return null;
-            }
-        };
-
-        return create(type, (AnnotatedElement) null);
+        return TypeTokenCache.ofGenericClass(clazz);
     }
 
     static <T> TypeToken<T> create(@NonNull Type type, Annotation... annotations) {
-        final TypeTokenImpl<T> typeToken = (TypeTokenImpl<T>) new TypeTokenImpl.TypeTokenConverter().convert(type, null);
-        typeToken.setAnnotations(annotations);
-
-        return typeToken;
+        return ((TypeTokenImpl<T>) create(type, (AnnotatedElement) null)).withAnnotations(annotations.clone());
     }
 
     /**
@@ -101,7 +89,7 @@ public interface TypeToken<T> extends Type, AnnotatedElement {
      * @return an `ITypeToken` representing the captured type
      */
     static <T> TypeToken<T> capture(@NonNull Capturing<T> capturing) {
-        return create(capturing.getCapturedType(), capturing.getCapturedAnnotatedElement());
+        return TypeTokenCache.create(capturing.getCapturedType(), capturing.getCapturedAnnotatedElement(), capturing.getClass());
     }
 
     /**
@@ -117,6 +105,22 @@ public interface TypeToken<T> extends Type, AnnotatedElement {
      */
     boolean isWithinBounds(Class<?> clazz);
 
+    /**
+     * Checks like {@link #isWithinBounds(Class)}, but treats primitive types as compatible with their wrappers in both
+     * directions, e.g. `int` is within `Integer`, `Number` and `Object`, and `Integer` is within `int`.
+     */
+    default boolean isWithinBoundsBoxed(Class<?> clazz) {
+        if (this.isWithinBounds(clazz)) {
+            return true;
+        }
+
+        if (clazz.isPrimitive()) {
+            return this.isWithinBounds(PrimitiveUtility.wrap(clazz));
+        }
+
+        return this.getDeclaredType().isPrimitive() && PrimitiveUtility.unwrap(clazz) == this.getDeclaredType();
+    }
+
     /**
      * Returns the resolved type represented by this `ITypeToken`.
      * - For {@link Wildcard}, returns the first bound or `Object.class` if there are no bounds.
@@ -139,6 +143,20 @@ public interface TypeToken<T> extends Type, AnnotatedElement {
 
     String toString(boolean includeAnnotations);
 
+    /**
+     * Returns a rendering with fully qualified names, annotation attributes and type variable declarations,
+     * stable for the lifetime of the classes and distinct for tokens that aren't equal including their annotations.
+     */
+    default String toCanonicalString() {
+        return TypeTokenToString.toCanonicalString(this);
+    }
+
+    /**
+     * Returns the merged view of the annotations of this type, including meta-annotations.
+     * The view is computed once per token.
+     */
+    MergedAnnotations getMergedAnnotations();
+
     /**
      * Returns type token without annotations.
      */
@@ -152,7 +170,7 @@ public interface TypeToken<T> extends Type, AnnotatedElement {
         /**
          * Returns the generics (type parameters or bounds) associated with this type.
          *
-         * @return an array of `ITypeToken` representing the type constraints
+         * @return an array of `ITypeToken` representing the type constraints, shared by the immutable token and must not be modified
          */
         TypeToken<?>[] getGenerics();
     }
@@ -208,14 +226,14 @@ public interface TypeToken<T> extends Type, AnnotatedElement {
         /**
          * Returns the upper bounds of this wildcard type.
          *
-         * @return an array of `ITypeToken` representing the upper bounds
+         * @return an array of `ITypeToken` representing the upper bounds, shared by the immutable token and must not be modified
          */
         TypeToken<?>[] getUpperBounds();
 
         /**
          * Returns the lower bounds of this wildcard type.
          *
-         * @return an array of `ITypeToken` representing the lower bounds
+         * @return an array of `ITypeToken` representing the lower bounds, shared by the immutable token and must not be modified
          */
         TypeToken<?>[] getLowerBounds();
 
@@ -238,7 +256,7 @@ public interface TypeToken<T> extends Type, AnnotatedElement {
         /**
          * Returns the type arguments associated with this parameterized type.
          *
-         * @return an array of `ITypeToken` representing the type arguments
+         * @return an array of `ITypeToken` representing the type arguments, shared by the immutable token and must not be modified
          */
         TypeToken<?>[] getTypeArguments();
 
@@ -0,0 +1,87 @@
+package org.spring4mc.utility.typetoken;
+
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.core.annotation.MergedAnnotations;
+
+import java.lang.annotation.Annotation;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Precomputed annotation index of a single type token.
+ * <p>
+ * Small sets are scanned by identity over the precomputed annotation types, larger ones are looked up in an identity map,
+ * so neither allocates. The merged view including meta-annotations is computed on first use.
+ */
+@ApiStatus.Internal
+public final class TypeTokenAnnotations {
+    public static final TypeTokenAnnotations EMPTY = new TypeTokenAnnotations(new Annotation[0]);
+
+    private static final int SCAN_THRESHOLD = 8;
+
+    private final Annotation[] annotations;
+    private final Class<? extends Annotation>[] types;
+
+    @Nullable
+    private final Map<Class<? extends Annotation>, Annotation> byType;
+
+    private volatile MergedAnnotations merged;
+
+    private TypeTokenAnnotations(Annotation[] annotations) {
+        this.annotations = annotations;
+        this.types = new Class[annotations.length];
+        for (int i = 0; i < annotations.length; i++) {
+            this.types[i] = annotations[i].annotationType();
+        }
+
+        if (annotations.length > SCAN_THRESHOLD) {
+            this.byType = new IdentityHashMap<>(annotations.length);
+            for (int i = annotations.length - 1; i >= 0; i--) {
+                this.byType.put(this.types[i], annotations[i]);
+            }
+        } else {
+            this.byType = null;
+        }
+    }
+
+    public static TypeTokenAnnotations of(Annotation[] annotations) {
+        return annotations.length == 0 ? EMPTY : new TypeTokenAnnotations(annotations);
+    }
+
+    @Nullable
+    public <A extends Annotation> A get(Class<A> annotationType) {
+        if (this.byType != null) {
+            return (A) this.byType.get(annotationType);
+        }
+
+        for (int i = 0; i < this.types.length; i++) {
+            if (this.types[i] == annotationType) {
+                return (A) this.annotations[i];
+            }
+        }
+
+        return null;
+    }
+
+    public boolean isPresent(Class<? extends Annotation> annotationType) {
+        return this.get(annotationType) != null;
+    }
+
+    public boolean isEmpty() {
+        return this.annotations.length == 0;
+    }
+
+    /**
+     * Returns the merged view of the annotations, including their meta-annotations and attribute overrides.
+     */
+    public MergedAnnotations getMergedAnnotations() {
+        MergedAnnotations merged = this.merged;
+        if (merged == null) {
+            merged = MergedAnnotations.from(this.annotations);
+            this.merged = merged;
+        }
+
+        return merged;
+    }
+}
@@ -0,0 +1,86 @@
+package org.spring4mc.utility.typetoken;
+
+import org.jetbrains.annotations.ApiStatus;
+
+import java.util.*;
+
+/**
+ * Per-class cache of all supertypes, so assignability checks are a single set probe instead of a hierarchy walk.
+ * <p>
+ * Array types aren't cached, their covariance isn't visible through the superclass chain and
+ * {@link Class#isAssignableFrom(Class)} is used instead.
+ */
+@ApiStatus.Internal
+public final class TypeTokenAssignability {
+    private static final ClassValue<Set<Class<?>>> SUPERTYPES = new ClassValue<>() {
+        @Override
+        protected Set<Class<?>> computeValue(Class<?> type) {
+            return collectSupertypes(type);
+        }
+    };
+
+    private TypeTokenAssignability() {
+    }
+
+    /**
+     * Returns whether a value of type {@code from} is assignable to {@code to}, same as {@code to.isAssignableFrom(from)}.
+     */
+    public static boolean isAssignable(Class<?> to, Class<?> from) {
+        if (to == from) {
+            return true;
+        }
+
+        if (from.isArray()) {
+            return to.isAssignableFrom(from);
+        }
+
+        return SUPERTYPES.get(from).contains(to);
+    }
+
+    /**
+     * Returns whether {@code from} is assignable to any of the given classes.
+     */
+    public static boolean isAssignableToAny(Class<?>[] to, Class<?> from) {
+        for (final Class<?> clazz : to) {
+            if (isAssignable(clazz, from)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns all classes and interfaces the given non-array type is assignable to, including itself and
+     * {@link Object} for reference types.
+     */
+    public static Set<Class<?>> getSupertypes(Class<?> type) {
+        return SUPERTYPES.get(type);
+    }
+
+    private static Set<Class<?>> collectSupertypes(Class<?> type) {
+        final Set<Class<?>> supertypes = new HashSet<>();
+        final Deque<Class<?>> queue = new ArrayDeque<>();
+        queue.add(type);
+
+        while (!queue.isEmpty()) {
+            final Class<?> current = queue.poll();
+            if (!supertypes.add(current)) {
+                continue;
+            }
+
+            if (current.getSuperclass() != null) {
+                queue.add(current.getSuperclass());
+            }
+
+            Collections.addAll(queue, current.getInterfaces());
+        }
+
+        if (!type.isPrimitive()) {
+            // Interfaces have no superclass, but are still assignable to Object
+            supertypes.add(Object.class);
+        }
+
+        return Collections.unmodifiableSet(supertypes);
+    }
+}
@@ -0,0 +1,308 @@
+package org.spring4mc.utility.typetoken;
+
+import lombok.EqualsAndHashCode;
+import lombok.RequiredArgsConstructor;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Canonicalizing conversion cache used by the {@link TypeToken} factories.
+ * <p>
+ * Plain classes are cached through a {@link ClassValue}, so the token lives exactly as long as the class itself.
+ * Other types are cached per (type, annotated element) pair through a {@link ClassValue} of their owner class, the
+ * class every other class of the type is visible from, so the cached tokens never keep a class loader reachable longer
+ * than the owner itself. The owner is the declaring class of the annotated element if it's known, otherwise the class
+ * of the type with the deepest class loader. Types whose owner can't be determined, e.g. of classes from sibling class
+ * loaders or annotated types of an unknown declaration, are converted without caching.
+ */
+@ApiStatus.Internal
+public class TypeTokenCache {
+    public static final Annotation[] NO_ANNOTATIONS = new Annotation[0];
+    public static final TypeToken<?>[] NO_TOKENS = new TypeToken<?>[0];
+
+    private static final int MAXIMUM_CONVERTED_PER_OWNER = 256;
+
+    private static final ClassValue<TypeToken<?>> DECLARED = new ClassValue<>() {
+        @Override
+        protected TypeToken<?> computeValue(Class<?> type) {
+            return new TypeTokenImpl.DeclaredImpl<>(NO_ANNOTATIONS, type);
+        }
+    };
+
+    private static final ClassValue<TypeToken<?>> GENERIC = new ClassValue<>() {
+        @Override
+        protected TypeToken<?> computeValue(Class<?> type) {
+            if (type.getTypeParameters().length == 0) {
+                return DECLARED.get(type);
+            }
+
+            return new TypeTokenImpl.TypeTokenConverter().convert(new GenericDeclarationType(type), null);
+        }
+    };
+
+    private static final ClassValue<Converted> CONVERTED = new ClassValue<>() {
+        @Override
+        protected Converted computeValue(Class<?> type) {
+            return new Converted();
+        }
+    };
+
+    // Bumped by clear(), the converted tokens of an older generation are dropped on the next access of their owner
+    private static final AtomicInteger GENERATION = new AtomicInteger();
+    private static final AtomicLong SIZE = new AtomicLong();
+
+    static {
+        // Preallocate the tokens nearly every lookup starts with
+        final Class<?>[] common = {
+                Object.class, String.class, Void.class, void.class,
+                boolean.class, byte.class, short.class, char.class, int.class, long.class, float.class, double.class,
+                Boolean.class, Byte.class, Short.class, Character.class, Integer.class, Long.class, Float.class, Double.class
+        };
+
+        for (final Class<?> type : common) {
+            DECLARED.get(type);
+        }
+    }
+
+    /**
+     * Returns the shared annotation-free token of the given class.
+     */
+    public static <T> TypeToken<T> ofClass(Class<T> type) {
+        return (TypeToken<T>) DECLARED.get(type);
+    }
+
+    /**
+     * Returns the shared token of the given class with its type parameters as arguments, see {@link TypeToken#convertGeneric(Class)}.
+     */
+    public static <T> TypeToken<T> ofGenericClass(Class<T> type) {
+        return (TypeToken<T>) GENERIC.get(type);
+    }
+
+    /**
+     * Returns the shared token of the given type and annotated element, converting it on first use.
+     */
+    public static <T> TypeToken<T> create(Type type, @Nullable AnnotatedElement annotatedElement) {
+        return create(type, annotatedElement, null);
+    }
+
+    /**
+     * Returns the shared token of the given type and annotated element, converting it on first use.
+     *
+     * @param declaringClass the class declaring the annotated element, e.g. of an annotated field type, which the
+     *                       token is cached with, or null to derive it from the type
+     */
+    public static <T> TypeToken<T> create(Type type, @Nullable AnnotatedElement annotatedElement, @Nullable Class<?> declaringClass) {
+        if (type instanceof Class<?> && (annotatedElement == null || annotatedElement.getDeclaredAnnotations().length == 0)) {
+            return (TypeToken<T>) DECLARED.get((Class<?>) type);
+        }
+
+        final Class<?> owner = declaringClass != null ? declaringClass : ownerOf(type, annotatedElement);
+        if (owner == null) {
+            if (TypeTokenMetrics.isEnabled()) {
+                TypeTokenMetrics.get().cacheMiss(TypeTokenMetrics.Cache.CONVERTED);
+            }
+
+            return new TypeTokenImpl.TypeTokenConverter().convert(type, annotatedElement);
+        }
+
+        final Map<Key, TypeToken<?>> converted = CONVERTED.get(owner).tokens();
+        final Key key = new Key(type, annotatedElement);
+        final TypeToken<?> cached = converted.get(key);
+        if (cached != null) {
+            if (TypeTokenMetrics.isEnabled()) {
+                TypeTokenMetrics.get().cacheHit(TypeTokenMetrics.Cache.CONVERTED);
+            }
+
+            return (TypeToken<T>) cached;
+        }
+
+        if (TypeTokenMetrics.isEnabled()) {
+            TypeTokenMetrics.get().cacheMiss(TypeTokenMetrics.Cache.CONVERTED);
+        }
+
+        final TypeToken<?> token = new TypeTokenImpl.TypeTokenConverter().convert(type, annotatedElement);
+        if (converted.size() >= MAXIMUM_CONVERTED_PER_OWNER) {
+            // Bounds the tokens kept per owner, e.g. of types built at runtime, further ones are converted every time
+            return (TypeToken<T>) token;
+        }
+
+        final TypeToken<?> previous = converted.putIfAbsent(key, token);
+        if (previous == null) {
+            SIZE.incrementAndGet();
+        }
+
+        return (TypeToken<T>) (previous == null ? token : previous);
+    }
+
+    /**
+     * Drops all converted tokens. Tokens of plain classes are kept, they live as long as their class anyway, as do
+     * the converted tokens of any class that isn't cleared.
+     */
+    public static void clear() {
+        GENERATION.incrementAndGet();
+        SIZE.set(0);
+    }
+
+    /**
+     * Returns the number of tokens converted and cached since the last {@link #clear()}, including the ones of
+     * unloaded owners.
+     */
+    static long size() {
+        return SIZE.get();
+    }
+
+    /**
+     * Returns the class of the type or the annotated element whose class loader is the same as or a descendant of
+     * the loaders of all other classes, or null if there is none or the declaration of the annotated element is
+     * unknown. Bounds of type variables are visible from their declaration and aren't looked at.
+     */
+    @Nullable
+    static Class<?> ownerOf(Type type, @Nullable AnnotatedElement annotatedElement) {
+        final List<Class<?>> classes = new ArrayList<>();
+        if (annotatedElement instanceof Class<?> annotatedClass) {
+            classes.add(annotatedClass);
+        } else if (annotatedElement instanceof Member member) {
+            classes.add(member.getDeclaringClass());
+        } else if (annotatedElement != null) {
+            return null;
+        }
+
+        if (!collectClasses(type, classes)) {
+            return null;
+        }
+
+        Class<?> owner = null;
+        for (final Class<?> clazz : classes) {
+            if (owner == null || isAncestor(owner.getClassLoader(), clazz.getClassLoader())) {
+                owner = clazz;
+            } else if (!isAncestor(clazz.getClassLoader(), owner.getClassLoader())) {
+                return null;
+            }
+        }
+
+        return owner;
+    }
+
+    private static boolean collectClasses(Type type, List<Class<?>> classes) {
+        if (type instanceof Class<?> clazz) {
+            classes.add(clazz);
+            return true;
+        }
+
+        if (type instanceof ParameterizedType parameterizedType) {
+            return collectClasses(parameterizedType.getRawType(), classes)
+                    && (parameterizedType.getOwnerType() == null || collectClasses(parameterizedType.getOwnerType(), classes))
+                    && collectClasses(parameterizedType.getActualTypeArguments(), classes);
+        }
+
+        if (type instanceof GenericArrayType arrayType) {
+            return collectClasses(arrayType.getGenericComponentType(), classes);
+        }
+
+        if (type instanceof WildcardType wildcardType) {
+            return collectClasses(wildcardType.getUpperBounds(), classes) && collectClasses(wildcardType.getLowerBounds(), classes);
+        }
+
+        if (type instanceof TypeVariable<?> typeVariable) {
+            final GenericDeclaration declaration = typeVariable.getGenericDeclaration();
+            if (declaration instanceof Class<?> declaringClass) {
+                classes.add(declaringClass);
+                return true;
+            }
+
+            if (declaration instanceof Member member) {
+                classes.add(member.getDeclaringClass());
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean collectClasses(Type[] types, List<Class<?>> classes) {
+        for (final Type type : types) {
+            if (!collectClasses(type, classes)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns whether the ancestor is the class loader itself or one of its parents, the bootstrap loader is null.
+     */
+    private static boolean isAncestor(@Nullable ClassLoader ancestor, @Nullable ClassLoader classLoader) {
+        if (ancestor == null) {
+            return true;
+        }
+
+        for (ClassLoader current = classLoader; current != null; current = current.getParent()) {
+            if (current == ancestor) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Converted tokens of one owner class, replaced once the cache was cleared.
+     */
+    private static final class Converted {
+        private volatile Map<Key, TypeToken<?>> tokens = new ConcurrentHashMap<>();
+        private volatile int generation = GENERATION.get();
+
+        private Map<Key, TypeToken<?>> tokens() {
+            final int generation = GENERATION.get();
+            if (this.generation != generation) {
+                synchronized (this) {
+                    if (this.generation != generation) {
+                        this.tokens = new ConcurrentHashMap<>();
+                        this.generation = generation;
+                    }
+                }
+            }
+
+            return this.tokens;
+        }
+    }
+
+    @RequiredArgsConstructor
+    private static final class GenericDeclarationType implements ParameterizedType {
+        private final Class<?> type;
+
+        @Override
+        public Type[] getActualTypeArguments() {
+            return this.type.getTypeParameters();
+        }
+
+        @Override
+        public Type getRawType() {
+            return this.type;
+        }
+
+        @Override
+        public Type getOwnerType() {
+            return null;
+        }
+    }
+
+    @EqualsAndHashCode
+    @RequiredArgsConstructor
+    private static final class Key {
+        private final Type type;
+
+        @Nullable
+        private final AnnotatedElement annotatedElement;
+    }
+}
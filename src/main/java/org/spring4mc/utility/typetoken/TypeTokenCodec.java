@@ -0,0 +1,443 @@
+package org.spring4mc.utility.typetoken;
+
+import org.jetbrains.annotations.ApiStatus;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.core.annotation.MergedAnnotation;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.GenericDeclaration;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * Compact binary encoding of type token trees.
+ * <p>
+ * Class names and other strings are written once into tables owned by the caller and referenced by index, subtrees
+ * shared by identity are written once and referenced by offset. Annotations are stored by their attributes and
+ * synthesized again when decoded, so they are equal to the original ones.
+ */
+@ApiStatus.Internal
+public final class TypeTokenCodec {
+    private static final byte DECLARED = 1;
+    private static final byte PARAMETERIZED = 2;
+    private static final byte WILDCARD = 3;
+    private static final byte RESOLVED_TYPE_VAR = 4;
+    private static final byte UNRESOLVED_TYPE_VAR = 5;
+    private static final byte REFERENCE = 6;
+
+    private static final byte CLASS_DECLARATION = 0;
+    private static final byte METHOD_DECLARATION = 1;
+    private static final byte CONSTRUCTOR_DECLARATION = 2;
+
+    private static final TypeToken.Wildcard.Kind[] WILDCARD_KINDS = TypeToken.Wildcard.Kind.values();
+
+    private TypeTokenCodec() {
+    }
+
+    /**
+     * String and class tables the encoded tokens refer to by index.
+     */
+    public interface Tables {
+        String getString(int index);
+
+        Class<?> getClass(int index);
+    }
+
+    /**
+     * Encodes tokens into a single body, collecting the referenced strings and classes.
+     */
+    public static final class Encoder {
+        private final Output out = new Output();
+        private final Map<String, Integer> stringIndexes = new HashMap<>();
+        private final List<String> strings = new ArrayList<>();
+        private final Map<Class<?>, Integer> classIndexes = new HashMap<>();
+        private final List<Class<?>> classes = new ArrayList<>();
+        private final Map<TypeToken<?>, Integer> offsets = new IdentityHashMap<>();
+
+        /**
+         * Appends the token to the body.
+         *
+         * @return the offset of the token in the body
+         */
+        public int encode(TypeToken<?> token) {
+            final Integer written = this.offsets.get(token);
+            if (written != null) {
+                final int offset = this.out.size();
+                this.out.write(REFERENCE);
+                this.out.writeVarInt(written);
+                return offset;
+            }
+
+            final int offset = this.out.size();
+            if (token instanceof TypeToken.Declared<?>) {
+                this.out.write(DECLARED);
+                this.out.writeVarInt(this.indexOf(token.getDeclaredType()));
+            } else if (token instanceof TypeToken.Parameterized<?> parameterized) {
+                this.out.write(PARAMETERIZED);
+                this.out.writeVarInt(this.indexOf(parameterized.getDeclaredType()));
+
+                final TypeToken<?> owner = parameterized instanceof TypeTokenImpl.ParameterizedImpl<?> impl ? impl.getOwner() : null;
+                this.out.write(owner == null ? 0 : 1);
+                if (owner != null) {
+                    this.encode(owner);
+                }
+
+                this.encodeAll(parameterized.getTypeArguments());
+            } else if (token instanceof TypeToken.Wildcard<?> wildcard) {
+                this.out.write(WILDCARD);
+                this.out.write(wildcard.getKind().ordinal());
+                this.encodeAll(wildcard.getUpperBounds());
+                this.encodeAll(wildcard.getLowerBounds());
+            } else if (token instanceof TypeToken.ResolvedTypeVar<?> typeVar) {
+                this.out.write(RESOLVED_TYPE_VAR);
+                this.encodeTypeVar(typeVar);
+                this.encodeAll(typeVar.getGenerics());
+            } else if (token instanceof TypeToken.UnresolvedTypeVar<?> typeVar) {
+                this.out.write(UNRESOLVED_TYPE_VAR);
+                this.encodeTypeVar(typeVar);
+            } else {
+                throw new UnsupportedOperationException(String.format("%s is not supported", token));
+            }
+
+            this.encodeAnnotations(token.getDeclaredAnnotations());
+            this.offsets.put(token, offset);
+            return offset;
+        }
+
+        public int indexOf(String string) {
+            return this.stringIndexes.computeIfAbsent(string, key -> {
+                this.strings.add(key);
+                return this.strings.size() - 1;
+            });
+        }
+
+        public int indexOf(Class<?> clazz) {
+            return this.classIndexes.computeIfAbsent(clazz, key -> {
+                this.classes.add(key);
+                return this.classes.size() - 1;
+            });
+        }
+
+        public List<String> getStrings() {
+            return Collections.unmodifiableList(this.strings);
+        }
+
+        public List<Class<?>> getClasses() {
+            return Collections.unmodifiableList(this.classes);
+        }
+
+        public byte[] toByteArray() {
+            return this.out.toByteArray();
+        }
+
+        private void encodeAll(TypeToken<?>[] tokens) {
+            this.out.writeVarInt(tokens.length);
+            for (final TypeToken<?> token : tokens) {
+                this.encode(token);
+            }
+        }
+
+        private void encodeTypeVar(TypeToken.TypeVar<?> typeVar) {
+            this.out.writeVarInt(this.indexOf(typeVar.getName()));
+            this.out.writeVarInt(typeVar.getIndex());
+
+            final GenericDeclaration declaration = typeVar.getGenericDeclaration();
+            if (declaration instanceof Class<?> clazz) {
+                this.out.write(CLASS_DECLARATION);
+                this.out.writeVarInt(this.indexOf(clazz));
+            } else if (declaration instanceof Method method) {
+                this.out.write(METHOD_DECLARATION);
+                this.out.writeVarInt(this.indexOf(method.getDeclaringClass()));
+                this.out.writeVarInt(this.indexOf(method.getName()));
+                this.encodeClasses(method.getParameterTypes());
+            } else if (declaration instanceof Constructor<?> constructor) {
+                this.out.write(CONSTRUCTOR_DECLARATION);
+                this.out.writeVarInt(this.indexOf(constructor.getDeclaringClass()));
+                this.encodeClasses(constructor.getParameterTypes());
+            } else {
+                throw new UnsupportedOperationException(String.format("%s is not supported", declaration));
+            }
+        }
+
+        private void encodeClasses(Class<?>[] classes) {
+            this.out.writeVarInt(classes.length);
+            for (final Class<?> clazz : classes) {
+                this.out.writeVarInt(this.indexOf(clazz));
+            }
+        }
+
+        private void encodeAnnotations(Annotation[] annotations) {
+            this.out.writeVarInt(annotations.length);
+            for (final Annotation annotation : annotations) {
+                this.encodeAnnotation(annotation);
+            }
+        }
+
+        private void encodeAnnotation(Annotation annotation) {
+            final Map<String, Object> attributes = AnnotationUtils.getAnnotationAttributes(annotation, false, false);
+            this.out.writeVarInt(this.indexOf(annotation.annotationType()));
+            this.out.writeVarInt(attributes.size());
+            attributes.forEach((name, value) -> {
+                this.out.writeVarInt(this.indexOf(name));
+                this.encodeValue(value);
+            });
+        }
+
+        // Values are written without type tags, decoding is driven by the attribute's declared type
+        private void encodeValue(Object value) {
+            if (value instanceof Boolean booleanValue) {
+                this.out.write(booleanValue ? 1 : 0);
+            } else if (value instanceof Byte byteValue) {
+                this.out.write(byteValue);
+            } else if (value instanceof Character charValue) {
+                this.out.writeVarInt(charValue);
+            } else if (value instanceof Short || value instanceof Integer) {
+                this.out.writeVarInt(((Number) value).intValue());
+            } else if (value instanceof Long longValue) {
+                this.out.writeLong(longValue);
+            } else if (value instanceof Float floatValue) {
+                this.out.writeVarInt(Float.floatToRawIntBits(floatValue));
+            } else if (value instanceof Double doubleValue) {
+                this.out.writeLong(Double.doubleToRawLongBits(doubleValue));
+            } else if (value instanceof String string) {
+                this.out.writeVarInt(this.indexOf(string));
+            } else if (value instanceof Class<?> clazz) {
+                this.out.writeVarInt(this.indexOf(clazz));
+            } else if (value instanceof Enum<?> enumValue) {
+                this.out.writeVarInt(this.indexOf(enumValue.name()));
+            } else if (value instanceof Annotation nested) {
+                this.encodeAnnotation(nested);
+            } else if (value.getClass().isArray()) {
+                final int length = Array.getLength(value);
+                this.out.writeVarInt(length);
+                for (int i = 0; i < length; i++) {
+                    this.encodeValue(Array.get(value, i));
+                }
+            } else {
+                throw new UnsupportedOperationException(String.format("Annotation value %s is not supported", value));
+            }
+        }
+    }
+
+    /**
+     * Decodes tokens from a body, reading directly from the buffer. Tokens are decoded once per offset, so shared
+     * subtrees stay shared. Not thread-safe.
+     */
+    public static final class Decoder {
+        private final ByteBuffer body;
+        private final Tables tables;
+        private final Map<Integer, TypeToken<?>> decoded = new HashMap<>();
+
+        public Decoder(ByteBuffer body, Tables tables) {
+            this.body = body.duplicate();
+            this.tables = tables;
+        }
+
+        public TypeToken<?> decode(int offset) {
+            final TypeToken<?> cached = this.decoded.get(offset);
+            if (cached != null) {
+                return cached;
+            }
+
+            final int position = this.body.position();
+            this.body.position(offset);
+            final TypeToken<?> token = this.read();
+            this.body.position(position);
+            return token;
+        }
+
+        private TypeToken<?> read() {
+            final int offset = this.body.position();
+            final byte tag = this.body.get();
+            if (tag == REFERENCE) {
+                return this.decode(this.readVarInt());
+            }
+
+            final TypeToken<?> token = switch (tag) {
+                case DECLARED -> {
+                    final Class<?> type = this.readClass();
+                    final Annotation[] annotations = this.readAnnotations();
+                    yield annotations.length == 0 ? TypeTokenCache.ofClass(type) : new TypeTokenImpl.DeclaredImpl<>(annotations, type);
+                }
+                case PARAMETERIZED -> {
+                    final Class<Object> raw = (Class<Object>) this.readClass();
+                    final TypeToken<?> owner = this.body.get() == 0 ? null : this.read();
+                    final TypeToken<?>[] typeArguments = this.readAll();
+                    yield new TypeTokenImpl.ParameterizedImpl<>(this.readAnnotations(), raw, owner, typeArguments);
+                }
+                case WILDCARD -> {
+                    final TypeToken.Wildcard.Kind kind = WILDCARD_KINDS[this.body.get()];
+                    final TypeToken<?>[] upperBounds = this.readAll();
+                    final TypeToken<?>[] lowerBounds = this.readAll();
+                    yield new TypeTokenImpl.WildcardImpl<>(upperBounds, lowerBounds, kind, this.readAnnotations());
+                }
+                case RESOLVED_TYPE_VAR -> {
+                    final String name = this.readString();
+                    final int index = this.readVarInt();
+                    final GenericDeclaration declaration = this.readDeclaration();
+                    final TypeToken<?>[] bounds = this.readAll();
+                    yield new TypeTokenImpl.ResolvedTypeVarImpl<>(this.readAnnotations(), name, bounds, declaration, index);
+                }
+                case UNRESOLVED_TYPE_VAR -> {
+                    final String name = this.readString();
+                    final int index = this.readVarInt();
+                    final GenericDeclaration declaration = this.readDeclaration();
+                    yield new TypeTokenImpl.UnresolvedTypeVarImpl<>(this.readAnnotations(), name, declaration, index);
+                }
+                default -> throw new IllegalStateException(String.format("Unknown token tag %d at %d", tag, offset));
+            };
+
+            final TypeToken<?> interned = TypeTokenInterner.intern(token);
+            this.decoded.put(offset, interned);
+            return interned;
+        }
+
+        private TypeToken<?>[] readAll() {
+            final int length = this.readVarInt();
+            if (length == 0) {
+                return TypeTokenCache.NO_TOKENS;
+            }
+
+            final TypeToken<?>[] tokens = new TypeToken<?>[length];
+            for (int i = 0; i < length; i++) {
+                tokens[i] = this.read();
+            }
+
+            return tokens;
+        }
+
+        private GenericDeclaration readDeclaration() {
+            final byte kind = this.body.get();
+            final Class<?> declaringClass = this.readClass();
+            try {
+                return switch (kind) {
+                    case CLASS_DECLARATION -> declaringClass;
+                    case METHOD_DECLARATION -> {
+                        final String name = this.readString();
+                        yield declaringClass.getDeclaredMethod(name, this.readClasses());
+                    }
+                    case CONSTRUCTOR_DECLARATION -> declaringClass.getDeclaredConstructor(this.readClasses());
+                    default -> throw new IllegalStateException(String.format("Unknown declaration kind %d", kind));
+                };
+            } catch (NoSuchMethodException e) {
+                throw new IllegalStateException(String.format("Generic declaration of %s no longer exists", declaringClass), e);
+            }
+        }
+
+        private Class<?>[] readClasses() {
+            final Class<?>[] classes = new Class<?>[this.readVarInt()];
+            for (int i = 0; i < classes.length; i++) {
+                classes[i] = this.readClass();
+            }
+
+            return classes;
+        }
+
+        private Annotation[] readAnnotations() {
+            final int length = this.readVarInt();
+            if (length == 0) {
+                return TypeTokenCache.NO_ANNOTATIONS;
+            }
+
+            final Annotation[] annotations = new Annotation[length];
+            for (int i = 0; i < length; i++) {
+                annotations[i] = this.readAnnotation();
+            }
+
+            return annotations;
+        }
+
+        private Annotation readAnnotation() {
+            final Class<? extends Annotation> annotationType = (Class<? extends Annotation>) this.readClass();
+            final int attributeCount = this.readVarInt();
+            final Map<String, Object> attributes = new LinkedHashMap<>(attributeCount * 2);
+            for (int i = 0; i < attributeCount; i++) {
+                final String name = this.readString();
+                try {
+                    attributes.put(name, this.readValue(annotationType.getDeclaredMethod(name).getReturnType()));
+                } catch (NoSuchMethodException e) {
+                    throw new IllegalStateException(String.format("Attribute %s of %s no longer exists", name, annotationType), e);
+                }
+            }
+
+            return MergedAnnotation.of(annotationType, attributes).synthesize();
+        }
+
+        private Object readValue(Class<?> type) {
+            if (type == boolean.class) {
+                return this.body.get() != 0;
+            } else if (type == byte.class) {
+                return this.body.get();
+            } else if (type == char.class) {
+                return (char) this.readVarInt();
+            } else if (type == short.class) {
+                return (short) this.readVarInt();
+            } else if (type == int.class) {
+                return this.readVarInt();
+            } else if (type == long.class) {
+                return this.body.getLong();
+            } else if (type == float.class) {
+                return Float.intBitsToFloat(this.readVarInt());
+            } else if (type == double.class) {
+                return Double.longBitsToDouble(this.body.getLong());
+            } else if (type == String.class) {
+                return this.readString();
+            } else if (type == Class.class) {
+                return this.readClass();
+            } else if (type.isEnum()) {
+                return Enum.valueOf((Class) type, this.readString());
+            } else if (type.isAnnotation()) {
+                return this.readAnnotation();
+            } else if (type.isArray()) {
+                final Object array = Array.newInstance(type.getComponentType(), this.readVarInt());
+                for (int i = 0; i < Array.getLength(array); i++) {
+                    Array.set(array, i, this.readValue(type.getComponentType()));
+                }
+
+                return array;
+            }
+
+            throw new IllegalStateException(String.format("Annotation value of type %s is not supported", type));
+        }
+
+        private String readString() {
+            return this.tables.getString(this.readVarInt());
+        }
+
+        private Class<?> readClass() {
+            return this.tables.getClass(this.readVarInt());
+        }
+
+        private int readVarInt() {
+            int value = 0;
+            for (int shift = 0; ; shift += 7) {
+                final byte part = this.body.get();
+                value |= (part & 0x7F) << shift;
+                if (part >= 0) {
+                    return value;
+                }
+            }
+        }
+    }
+
+    private static final class Output extends ByteArrayOutputStream {
+        private void writeVarInt(int value) {
+            while ((value & ~0x7F) != 0) {
+                this.write((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+
+            this.write(value);
+        }
+
+        private void writeLong(long value) {
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                this.write((int) (value >>> shift));
+            }
+        }
+    }
+}
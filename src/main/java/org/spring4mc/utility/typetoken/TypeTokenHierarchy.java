@@ -0,0 +1,172 @@
+package org.spring4mc.utility.typetoken;
+
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Per class cache of its linearized hierarchy, attached to the class through a {@link ClassValue}.
+ * <p>
+ * The raw hierarchy is computed on first access, the converted generic supertypes only once they're asked for.
+ * Both are walked in breadth-first order, superclass before interfaces, and exclude {@link Object}.
+ */
+@ApiStatus.Internal
+public class TypeTokenHierarchy {
+    private static final ClassValue<TypeTokenHierarchy> HIERARCHIES = new ClassValue<>() {
+        @Override
+        protected TypeTokenHierarchy computeValue(Class<?> type) {
+            return new TypeTokenHierarchy(type);
+        }
+    };
+
+    private final Class<?> type;
+    private final List<Class<?>> classes;
+
+    private volatile TypeToken.Parameterized<?>[] parameterizedInterfaces;
+    private volatile List<TypeToken<?>> genericSupertypes;
+
+    private TypeTokenHierarchy(Class<?> type) {
+        this.type = type;
+        this.classes = Collections.unmodifiableList(collectClasses(type));
+    }
+
+    public static TypeTokenHierarchy of(Class<?> type) {
+        return HIERARCHIES.get(type);
+    }
+
+    /**
+     * Returns the class itself followed by all its superclasses and interfaces.
+     */
+    public List<Class<?>> getClasses() {
+        return this.classes;
+    }
+
+    /**
+     * Returns the first non-null result of the function applied to the hierarchy, stopping as soon as one is found.
+     *
+     * @param skipSelf whether to skip the class itself
+     */
+    @Nullable
+    public <R> R findClass(boolean skipSelf, Function<Class<?>, R> function) {
+        for (int i = skipSelf ? 1 : 0; i < this.classes.size(); i++) {
+            final R result = function.apply(this.classes.get(i));
+            if (result != null) {
+                return result;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns the parameterized interfaces directly implemented by the class, in declaration order.
+     * The returned array is shared and must not be modified.
+     */
+    public TypeToken.Parameterized<?>[] getParameterizedInterfaces() {
+        TypeToken.Parameterized<?>[] parameterizedInterfaces = this.parameterizedInterfaces;
+        if (parameterizedInterfaces == null) {
+            final List<TypeToken.Parameterized<?>> collected = new ArrayList<>();
+            for (final Type genericInterface : this.type.getGenericInterfaces()) {
+                if (genericInterface instanceof ParameterizedType) {
+                    collected.add((TypeToken.Parameterized<?>) TypeToken.ofType(genericInterface));
+                }
+            }
+
+            parameterizedInterfaces = collected.toArray(new TypeToken.Parameterized<?>[0]);
+            this.parameterizedInterfaces = parameterizedInterfaces;
+        }
+
+        return parameterizedInterfaces;
+    }
+
+    /**
+     * Returns every parameterized supertype in the hierarchy, duplicates reached through several paths are listed once.
+     */
+    public List<TypeToken<?>> getGenericSupertypes() {
+        List<TypeToken<?>> genericSupertypes = this.genericSupertypes;
+        if (genericSupertypes == null) {
+            genericSupertypes = Collections.unmodifiableList(collectGenericSupertypes(this.type));
+            this.genericSupertypes = genericSupertypes;
+        }
+
+        return genericSupertypes;
+    }
+
+    /**
+     * Returns the first non-null result of the function applied to the parameterized supertypes, stopping as soon as
+     * one is found.
+     */
+    @Nullable
+    public <R> R findGenericSupertype(Function<TypeToken<?>, R> function) {
+        for (final TypeToken<?> genericSupertype : this.getGenericSupertypes()) {
+            final R result = function.apply(genericSupertype);
+            if (result != null) {
+                return result;
+            }
+        }
+
+        return null;
+    }
+
+    private static List<Class<?>> collectClasses(Class<?> clazz) {
+        final List<Class<?>> classes = new ArrayList<>();
+        final Set<Class<?>> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        final Deque<Class<?>> queue = new ArrayDeque<>();
+        queue.add(clazz);
+
+        while (!queue.isEmpty()) {
+            final Class<?> current = queue.poll();
+            if (!visited.add(current)) {
+                continue;
+            }
+
+            classes.add(current);
+
+            final Class<?> superclass = current.getSuperclass();
+            if (superclass != null && superclass != Object.class) {
+                queue.add(superclass);
+            }
+
+            Collections.addAll(queue, current.getInterfaces());
+        }
+
+        return classes;
+    }
+
+    private static List<TypeToken<?>> collectGenericSupertypes(Class<?> clazz) {
+        final Set<TypeToken<?>> result = new LinkedHashSet<>();
+        final Set<Type> visited = new HashSet<>();
+        final Deque<Type> queue = new ArrayDeque<>();
+        queue.add(clazz);
+
+        while (!queue.isEmpty()) {
+            final Type current = queue.poll();
+            if (!visited.add(current)) {
+                continue;
+            }
+
+            final Class<?> lookup;
+            if (current instanceof ParameterizedType parameterizedType) {
+                lookup = (Class<?>) parameterizedType.getRawType();
+
+                result.add(TypeToken.ofType(parameterizedType));
+            } else {
+                lookup = (Class<?>) current;
+            }
+
+            // Interfaces and Object have no superclass
+            final Type superclass = lookup.getGenericSuperclass();
+            if (superclass != null && superclass != Object.class) {
+                queue.add(superclass);
+            }
+
+            Collections.addAll(queue, lookup.getGenericInterfaces());
+        }
+
+        return new ArrayList<>(result);
+    }
+}
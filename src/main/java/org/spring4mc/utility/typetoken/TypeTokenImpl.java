@@ -1,62 +1,126 @@
 package org.spring4mc.utility.typetoken;
 
-import lombok.EqualsAndHashCode;
 import lombok.Getter;
-import lombok.Setter;
 import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.CheckReturnValue;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.spring4mc.utility.primitive.PrimitiveUtility;
+import org.springframework.core.annotation.MergedAnnotations;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.*;
 import java.util.Arrays;
 import java.util.IdentityHashMap;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.function.Consumer;
 
-@EqualsAndHashCode
+/**
+ * Base of all type tokens. Tokens are deeply immutable, so they can be shared freely and used as map keys.
+ * The structural hash is computed once at construction.
+ */
 @ApiStatus.Internal
 public abstract class TypeTokenImpl<T> implements TypeToken<T> {
-    @Setter
-    protected Annotation[] annotations;
+    protected final Annotation[] annotations;
+    protected final TypeTokenAnnotations annotationIndex;
+
+    // Not final as it's computed after the subclass fields, recomputed lazily if the token was published racily
+    private int hash;
+
+    // Memoized annotation-free view, `this` once known to carry no annotations
+    private TypeToken<T> stripped;
+
+    // Memoized renderings, racy but idempotent as the token is immutable
+    private String string;
+    private String stringWithoutAnnotations;
+    private String canonicalString;
 
     public TypeTokenImpl(AnnotatedElement annotatedElement) {
-        this.annotations = annotatedElement == null ? new Annotation[0] : annotatedElement.getDeclaredAnnotations();
+        this.annotations = annotatedElement == null ? TypeTokenCache.NO_ANNOTATIONS : annotatedElement.getDeclaredAnnotations();
+        this.annotationIndex = TypeTokenAnnotations.of(this.annotations);
     }
 
     public TypeTokenImpl(Annotation[] annotations) {
-        this.annotations = annotations;
+        this.annotations = annotations.length == 0 ? TypeTokenCache.NO_ANNOTATIONS : annotations;
+        this.annotationIndex = TypeTokenAnnotations.of(this.annotations);
     }
 
-    private static TypeToken<?> copy(TypeToken<?> typeToken) {
-        return typeToken == null ? null : ((TypeTokenImpl) typeToken).copy();
-    }
+    /**
+     * Strips the given tokens, returning the same array if none of them carried annotations.
+     */
+    private static TypeToken<?>[] stripAnnotations(TypeToken<?>[] typeTokens) {
+        TypeToken<?>[] stripped = typeTokens;
+        for (int i = 0; i < typeTokens.length; i++) {
+            final TypeToken<?> strippedToken = typeTokens[i].stripAnnotations();
+            if (strippedToken == typeTokens[i]) {
+                continue;
+            }
+
+            if (stripped == typeTokens) {
+                stripped = typeTokens.clone();
+            }
+
+            stripped[i] = strippedToken;
+        }
 
-    private static TypeToken<?>[] copy(TypeToken<?>[] typeTokens) {
-        return Arrays.stream(typeTokens).map(TypeTokenImpl::copy).toArray(TypeToken[]::new);
+        return stripped;
     }
 
     public String toString() {
-        return TypeTokenToString.toString(this);
+        return this.toString(true);
     }
 
     @Override
-    public TypeToken<T> stripAnnotations() {
-        final TypeTokenImpl<T> copy = this.copy();
-        copy.visit(typetoken -> {
-            ((TypeTokenImpl) typetoken).annotations = new Annotation[0];
-        });
+    public String toString(boolean includeAnnotations) {
+        if (includeAnnotations) {
+            String string = this.string;
+            if (string == null) {
+                string = TypeTokenToString.toString(this, true);
+                this.string = string;
+            }
+
+            return string;
+        }
 
-        return copy;
+        String stringWithoutAnnotations = this.stringWithoutAnnotations;
+        if (stringWithoutAnnotations == null) {
+            stringWithoutAnnotations = TypeTokenToString.toString(this, false);
+            this.stringWithoutAnnotations = stringWithoutAnnotations;
+        }
+
+        return stringWithoutAnnotations;
     }
 
     @Override
-    public String toString(boolean includeAnnotations) {
-        return TypeTokenToString.toString(this, includeAnnotations);
+    public String toCanonicalString() {
+        String canonicalString = this.canonicalString;
+        if (canonicalString == null) {
+            canonicalString = TypeTokenToString.toCanonicalString(this);
+            this.canonicalString = canonicalString;
+        }
+
+        return canonicalString;
     }
 
+    @Override
+    public TypeToken<T> stripAnnotations() {
+        TypeToken<T> stripped = this.stripped;
+        if (stripped == null) {
+            stripped = this.computeStripped();
+            this.stripped = stripped;
+        }
+
+        return stripped;
+    }
+
+    /**
+     * Builds the annotation-free view, sharing every subtree that carries no annotations and returning
+     * {@code this} if nothing changed.
+     */
+    protected abstract TypeToken<T> computeStripped();
+
     @Override
     public Class<? super T> getDeclaredType() {
         throw new UnsupportedOperationException("getDeclaredType not implemented for " + this.getClass().getSimpleName());
@@ -64,32 +128,103 @@ public abstract class TypeTokenImpl<T> implements TypeToken<T> {
 
     @Override
     public <T extends Annotation> T getAnnotation(@NotNull Class<T> annotationClass) {
-        return this.annotations == null ? null : Arrays.stream(this.annotations)
-                .filter(annotationClass::isInstance)
-                .map(annotationClass::cast)
-                .findFirst()
-                .orElse(null);
+        return this.annotationIndex.get(annotationClass);
+    }
+
+    @Override
+    public <T extends Annotation> T getDeclaredAnnotation(@NotNull Class<T> annotationClass) {
+        return this.annotationIndex.get(annotationClass);
+    }
+
+    @Override
+    public boolean isAnnotationPresent(@NotNull Class<? extends Annotation> annotationClass) {
+        return this.annotationIndex.isPresent(annotationClass);
+    }
+
+    @Override
+    public MergedAnnotations getMergedAnnotations() {
+        return this.annotationIndex.getMergedAnnotations();
     }
 
     @Override
     public Annotation[] getAnnotations() {
-        return this.annotations;
+        return this.getDeclaredAnnotations();
     }
 
     @Override
     public Annotation[] getDeclaredAnnotations() {
-        return this.annotations;
+        // Callers are free to modify the returned array, see AnnotatedElement
+        return this.annotations.length == 0 ? this.annotations : this.annotations.clone();
     }
 
-    public abstract TypeTokenImpl<T> copy();
+    /**
+     * Returns a token with the same structure, but carrying the given annotations instead.
+     */
+    @CheckReturnValue
+    public abstract TypeTokenImpl<T> withAnnotations(Annotation[] annotations);
 
     public void visit(Consumer<TypeToken<?>> consumer) {
         consumer.accept(this);
     }
 
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+
+        if (obj == null || obj.getClass() != this.getClass()) {
+            return false;
+        }
+
+        final TypeTokenImpl<?> other = (TypeTokenImpl<?>) obj;
+        return this.hashCode() == other.hashCode()
+                && Arrays.equals(this.annotations, other.annotations)
+                && this.equalsStructure(other);
+    }
+
+    @Override
+    public int hashCode() {
+        final int hash = this.hash;
+        return hash == 0 ? this.cacheHash() : hash;
+    }
+
+    /**
+     * Computes and stores the structural hash, called once all subclass fields are assigned.
+     */
+    protected final int cacheHash() {
+        final int hash = 31 * Arrays.hashCode(this.annotations) + this.hashStructure();
+        this.hash = hash;
+        return hash;
+    }
+
+    /**
+     * Compares everything except annotations against a token of the same class.
+     */
+    protected abstract boolean equalsStructure(TypeTokenImpl<?> other);
+
+    /**
+     * Hashes everything except annotations.
+     */
+    protected abstract int hashStructure();
+
+    /**
+     * Returns a declared token of the given type carrying the annotations of this token.
+     */
+    protected <U> TypeToken<U> declared(Class<U> type) {
+        if (this.annotations.length == 0) {
+            return TypeTokenCache.ofClass(type);
+        }
+
+        return TypeTokenInterner.intern(new DeclaredImpl<>(this.annotations, type));
+    }
+
     public static class TypeTokenConverter {
         private final Map<Type, TypeToken<?>> recursiveAware = new IdentityHashMap<>();
 
+        // Nesting of convert calls, only the outermost one is measured
+        private int depth;
+
         public void addRecursiveAware(Type type, TypeToken<?> token) {
             this.recursiveAware.put(type, token);
         }
@@ -99,12 +234,20 @@ public abstract class TypeTokenImpl<T> implements TypeToken<T> {
         }
 
         public <T> TypeToken<T> convert(Type type, @Nullable AnnotatedElement annotatedElement) {
-            if (type instanceof WildcardType) {
-                return new WildcardImpl<>((WildcardType) type, (AnnotatedWildcardType) annotatedElement, this);
+            final long start = this.depth == 0 ? TypeTokenMetrics.start() : 0;
+            this.depth++;
+            try {
+                return TypeTokenInterner.intern(this.convertUninterned(type, annotatedElement));
+            } finally {
+                if (--this.depth == 0 && start != 0) {
+                    TypeTokenMetrics.get().conversion(System.nanoTime() - start);
+                }
             }
+        }
 
-            if (type instanceof GenericArrayType) {
-
+        private <T> TypeToken<T> convertUninterned(Type type, @Nullable AnnotatedElement annotatedElement) {
+            if (type instanceof WildcardType) {
+                return new WildcardImpl<>((WildcardType) type, (AnnotatedWildcardType) annotatedElement, this);
             }
 
             if (type instanceof TypeVariable) {
@@ -120,12 +263,22 @@ public abstract class TypeTokenImpl<T> implements TypeToken<T> {
                 return new ParameterizedImpl<>(((ParameterizedType) type), (AnnotatedParameterizedType) annotatedElement, this);
             }
 
-            return new DeclaredImpl<>((Class<?>) type, annotatedElement);
+            if (!(type instanceof Class<?>)) {
+                // Generic arrays and foreign Type implementations
+                throw new UnsupportedOperationException(String.format("%s is not supported", type));
+            }
+
+            final Annotation[] annotations = annotatedElement == null ? TypeTokenCache.NO_ANNOTATIONS : annotatedElement.getDeclaredAnnotations();
+            if (annotations.length == 0) {
+                return TypeTokenCache.ofClass((Class<T>) type);
+            }
+
+            return new DeclaredImpl<>(annotations, (Class<?>) type);
         }
 
         private TypeToken<?>[] convertBounds(Type[] bounds, Optional<AnnotatedType[]> annotatedBoundsSupplier) {
             if (bounds == null || bounds.length == 0) {
-                return new TypeToken[]{};
+                return TypeTokenCache.NO_TOKENS;
             }
 
             final TypeToken<?>[] convertedBounds = new TypeToken<?>[bounds.length];
@@ -153,7 +306,6 @@ public abstract class TypeTokenImpl<T> implements TypeToken<T> {
     }
 
     @Getter
-    @EqualsAndHashCode(callSuper = true)
     public static class WildcardImpl<T> extends GenericImpl<T> implements Wildcard<T> {
         private final TypeToken<?>[] upperBounds;
         private final TypeToken<?>[] lowerBounds;
@@ -162,8 +314,9 @@ public abstract class TypeTokenImpl<T> implements TypeToken<T> {
         public WildcardImpl(WildcardType actualType, AnnotatedWildcardType annotatedElement, TypeTokenConverter converter) {
             super(annotatedElement);
             this.upperBounds = converter.convertBounds(actualType.getUpperBounds(), Optional.ofNullable(annotatedElement).map(AnnotatedWildcardType::getAnnotatedUpperBounds));
-            this.lowerBounds = converter.convertBounds(actualType.getLowerBounds(), Optional.ofNullable(annotatedElement).map(AnnotatedWildcardType::getAnnotatedUpperBounds));
+            this.lowerBounds = converter.convertBounds(actualType.getLowerBounds(), Optional.ofNullable(annotatedElement).map(AnnotatedWildcardType::getAnnotatedLowerBounds));
             this.kind = this.findType();
+            this.cacheHash();
         }
 
         public WildcardImpl(TypeToken<?>[] upperBounds, TypeToken<?>[] lowerBounds, Kind kind, Annotation[] annotations) {
@@ -171,6 +324,7 @@ public abstract class TypeTokenImpl<T> implements TypeToken<T> {
             this.upperBounds = upperBounds;
             this.lowerBounds = lowerBounds;
             this.kind = kind;
+            this.cacheHash();
         }
 
         @Override
@@ -193,27 +347,58 @@ public abstract class TypeTokenImpl<T> implements TypeToken<T> {
 
         @Override
         public boolean isSuperClassOfDeclaredType(Class<?> clazz) {
-            return Arrays.stream(this.getGenerics()).anyMatch(bound -> bound.isSuperClassOfDeclaredType(clazz));
+            for (final TypeToken<?> bound : this.getGenerics()) {
+                if (bound.isSuperClassOfDeclaredType(clazz)) {
+                    return true;
+                }
+            }
+
+            return false;
         }
 
         @Override
         public boolean isWithinBounds(Class<?> clazz) {
-            return Arrays.stream(this.getGenerics()).anyMatch(bound -> bound.isWithinBounds(clazz));
+            for (final TypeToken<?> bound : this.getGenerics()) {
+                if (bound.isWithinBounds(clazz)) {
+                    return true;
+                }
+            }
+
+            return false;
         }
 
         @Override
         public <U> TypeToken<U> withType(Class<U> type) {
-            return new DeclaredImpl<>(type, this);
+            return this.declared(type);
+        }
+
+        @Override
+        protected TypeToken<T> computeStripped() {
+            final TypeToken<?>[] upperBounds = TypeTokenImpl.stripAnnotations(this.upperBounds);
+            final TypeToken<?>[] lowerBounds = TypeTokenImpl.stripAnnotations(this.lowerBounds);
+            if (this.annotations.length == 0 && upperBounds == this.upperBounds && lowerBounds == this.lowerBounds) {
+                return this;
+            }
+
+            return TypeTokenInterner.intern(new WildcardImpl<>(upperBounds, lowerBounds, this.kind, TypeTokenCache.NO_ANNOTATIONS));
         }
 
         @Override
-        public TypeTokenImpl<T> copy() {
-            return new WildcardImpl<>(
-                    TypeTokenImpl.copy(this.upperBounds),
-                    TypeTokenImpl.copy(this.lowerBounds),
-                    this.kind,
-                    this.annotations
-            );
+        public TypeTokenImpl<T> withAnnotations(Annotation[] annotations) {
+            return TypeTokenInterner.intern(new WildcardImpl<>(this.upperBounds, this.lowerBounds, this.kind, annotations));
+        }
+
+        @Override
+        protected boolean equalsStructure(TypeTokenImpl<?> other) {
+            final WildcardImpl<?> wildcard = (WildcardImpl<?>) other;
+            return this.kind == wildcard.kind
+                    && Arrays.equals(this.upperBounds, wildcard.upperBounds)
+                    && Arrays.equals(this.lowerBounds, wildcard.lowerBounds);
+        }
+
+        @Override
+        protected int hashStructure() {
+            return 31 * (31 * this.kind.hashCode() + Arrays.hashCode(this.upperBounds)) + Arrays.hashCode(this.lowerBounds);
         }
 
         @SuppressWarnings("EqualsBetweenInconvertibleTypes")
@@ -229,7 +414,6 @@ public abstract class TypeTokenImpl<T> implements TypeToken<T> {
     }
 
     @Getter
-    @EqualsAndHashCode(callSuper = true)
     public static class ResolvedTypeVarImpl<T> extends GenericImpl<T> implements ResolvedTypeVar<T> {
         private final String name;
         private final TypeToken<?>[] bounds;
@@ -244,6 +428,7 @@ public abstract class TypeTokenImpl<T> implements TypeToken<T> {
             converter.removeRecursiveAware(variable);
             this.genericDeclaration = variable.getGenericDeclaration();
             this.index = this.findIndex();
+            this.cacheHash();
         }
 
         public ResolvedTypeVarImpl(Annotation[] annotations, String name, TypeToken<?>[] bounds, GenericDeclaration genericDeclaration, int index) {
@@ -252,6 +437,7 @@ public abstract class TypeTokenImpl<T> implements TypeToken<T> {
             this.bounds = bounds;
             this.genericDeclaration = genericDeclaration;
             this.index = index;
+            this.cacheHash();
         }
 
         @Override
@@ -270,28 +456,58 @@ public abstract class TypeTokenImpl<T> implements TypeToken<T> {
 
         @Override
         public boolean isSuperClassOfDeclaredType(Class<?> clazz) {
-            return Arrays.stream(this.bounds).anyMatch(bound -> bound.isSuperClassOfDeclaredType(clazz));
+            for (final TypeToken<?> bound : this.bounds) {
+                if (bound.isSuperClassOfDeclaredType(clazz)) {
+                    return true;
+                }
+            }
+
+            return false;
         }
 
         @Override
         public boolean isWithinBounds(Class<?> clazz) {
-            return Arrays.stream(this.bounds).anyMatch(bound -> bound.isWithinBounds(clazz));
+            for (final TypeToken<?> bound : this.bounds) {
+                if (bound.isWithinBounds(clazz)) {
+                    return true;
+                }
+            }
+
+            return false;
         }
 
         @Override
         public <U> TypeToken<U> withType(Class<U> type) {
-            return new DeclaredImpl<>(type, this);
+            return this.declared(type);
         }
 
         @Override
-        public TypeTokenImpl<T> copy() {
-            return new ResolvedTypeVarImpl<>(
-                    this.annotations,
-                    this.name,
-                    TypeTokenImpl.copy(this.bounds),
-                    this.genericDeclaration,
-                    this.index
-            );
+        protected TypeToken<T> computeStripped() {
+            final TypeToken<?>[] bounds = TypeTokenImpl.stripAnnotations(this.bounds);
+            if (this.annotations.length == 0 && bounds == this.bounds) {
+                return this;
+            }
+
+            return TypeTokenInterner.intern(new ResolvedTypeVarImpl<>(TypeTokenCache.NO_ANNOTATIONS, this.name, bounds, this.genericDeclaration, this.index));
+        }
+
+        @Override
+        public TypeTokenImpl<T> withAnnotations(Annotation[] annotations) {
+            return TypeTokenInterner.intern(new ResolvedTypeVarImpl<>(annotations, this.name, this.bounds, this.genericDeclaration, this.index));
+        }
+
+        @Override
+        protected boolean equalsStructure(TypeTokenImpl<?> other) {
+            final ResolvedTypeVarImpl<?> typeVar = (ResolvedTypeVarImpl<?>) other;
+            return this.index == typeVar.index
+                    && this.name.equals(typeVar.name)
+                    && this.genericDeclaration.equals(typeVar.genericDeclaration)
+                    && Arrays.equals(this.bounds, typeVar.bounds);
+        }
+
+        @Override
+        protected int hashStructure() {
+            return 31 * (31 * (31 * this.name.hashCode() + this.genericDeclaration.hashCode()) + this.index) + Arrays.hashCode(this.bounds);
         }
 
         private int findIndex() {
@@ -307,7 +523,6 @@ public abstract class TypeTokenImpl<T> implements TypeToken<T> {
     }
 
     @Getter
-    @EqualsAndHashCode(callSuper = true)
     public static class UnresolvedTypeVarImpl<T> extends TypeTokenImpl<T> implements UnresolvedTypeVar<T> {
         private final String name;
         private final GenericDeclaration genericDeclaration;
@@ -318,6 +533,7 @@ public abstract class TypeTokenImpl<T> implements TypeToken<T> {
             this.name = typeVariable.getName();
             this.genericDeclaration = typeVariable.getGenericDeclaration();
             this.index = this.findIndex();
+            this.cacheHash();
         }
 
         public UnresolvedTypeVarImpl(Annotation[] annotations, String name, GenericDeclaration genericDeclaration, int index) {
@@ -325,6 +541,7 @@ public abstract class TypeTokenImpl<T> implements TypeToken<T> {
             this.name = name;
             this.genericDeclaration = genericDeclaration;
             this.index = index;
+            this.cacheHash();
         }
 
         @Override
@@ -339,17 +556,30 @@ public abstract class TypeTokenImpl<T> implements TypeToken<T> {
 
         @Override
         public <U> TypeToken<U> withType(Class<U> type) {
-            return new DeclaredImpl<>(type, this);
+            return this.declared(type);
+        }
+
+        @Override
+        protected TypeToken<T> computeStripped() {
+            return this.annotations.length == 0 ? this : this.withAnnotations(TypeTokenCache.NO_ANNOTATIONS);
         }
 
         @Override
-        public TypeTokenImpl<T> copy() {
-            return new UnresolvedTypeVarImpl<>(
-                    this.annotations,
-                    this.name,
-                    this.genericDeclaration,
-                    this.index
-            );
+        public TypeTokenImpl<T> withAnnotations(Annotation[] annotations) {
+            return TypeTokenInterner.intern(new UnresolvedTypeVarImpl<>(annotations, this.name, this.genericDeclaration, this.index));
+        }
+
+        @Override
+        protected boolean equalsStructure(TypeTokenImpl<?> other) {
+            final UnresolvedTypeVarImpl<?> typeVar = (UnresolvedTypeVarImpl<?>) other;
+            return this.index == typeVar.index
+                    && this.name.equals(typeVar.name)
+                    && this.genericDeclaration.equals(typeVar.genericDeclaration);
+        }
+
+        @Override
+        protected int hashStructure() {
+            return 31 * (31 * this.name.hashCode() + this.genericDeclaration.hashCode()) + this.index;
         }
 
         private int findIndex() {
@@ -378,6 +608,9 @@ public abstract class TypeTokenImpl<T> implements TypeToken<T> {
             this.type = type;
         }
 
+        /**
+         * Declared tokens are equal to each other and to their {@link Class} regardless of annotations.
+         */
         @Override
         public boolean equals(Object obj) {
             if (obj instanceof DeclaredImpl) {
@@ -396,19 +629,38 @@ public abstract class TypeTokenImpl<T> implements TypeToken<T> {
             return this.type.hashCode();
         }
 
+        @Override
+        protected boolean equalsStructure(TypeTokenImpl<?> other) {
+            return this.type == ((DeclaredImpl<?>) other).type;
+        }
+
+        @Override
+        protected int hashStructure() {
+            return this.type.hashCode();
+        }
+
         @Override
         public boolean isSuperClassOfDeclaredType(Class<?> clazz) {
-            return clazz.isAssignableFrom(this.type);
+            return TypeTokenAssignability.isAssignable(clazz, this.type);
         }
 
         @Override
         public boolean isWithinBounds(Class<?> clazz) {
-            return this.type.isAssignableFrom(clazz);
+            return TypeTokenAssignability.isAssignable(this.type, clazz);
         }
 
         @Override
-        public TypeTokenImpl<T> copy() {
-            return new DeclaredImpl<>(this.annotations, this.type);
+        protected TypeToken<T> computeStripped() {
+            return this.annotations.length == 0 ? this : (TypeToken<T>) TypeTokenCache.ofClass(this.type);
+        }
+
+        @Override
+        public TypeTokenImpl<T> withAnnotations(Annotation[] annotations) {
+            if (annotations.length == 0) {
+                return (TypeTokenImpl<T>) TypeTokenCache.ofClass(this.type);
+            }
+
+            return TypeTokenInterner.intern(new DeclaredImpl<>(annotations, this.type));
         }
 
         @Override
@@ -433,7 +685,6 @@ public abstract class TypeTokenImpl<T> implements TypeToken<T> {
     }
 
     @Getter
-    @EqualsAndHashCode(callSuper = true)
     public static class ParameterizedImpl<T> extends GenericImpl<T> implements Parameterized<T> {
         private final Class<T> raw;
 
@@ -444,8 +695,9 @@ public abstract class TypeTokenImpl<T> implements TypeToken<T> {
         public ParameterizedImpl(ParameterizedType type, @Nullable AnnotatedParameterizedType annotatedElement, TypeTokenConverter converter) {
             super(annotatedElement);
             this.raw = (Class<T>) type.getRawType();
-            this.owner = type.getOwnerType() == null ? null : TypeToken.create(type.getOwnerType(), annotatedElement);
+            this.owner = type.getOwnerType() == null ? null : TypeToken.create(type.getOwnerType(), annotatedElement == null ? null : annotatedElement.getAnnotatedOwnerType());
             this.typeArguments = converter.convertBounds(type.getActualTypeArguments(), Optional.ofNullable(annotatedElement).map(AnnotatedParameterizedType::getAnnotatedActualTypeArguments));
+            this.cacheHash();
         }
 
         protected ParameterizedImpl(Annotation[] annotations, Class<T> raw, @Nullable TypeToken<?> owner, TypeToken<?>[] typeArguments) {
@@ -453,6 +705,7 @@ public abstract class TypeTokenImpl<T> implements TypeToken<T> {
             this.raw = raw;
             this.owner = owner;
             this.typeArguments = typeArguments;
+            this.cacheHash();
         }
 
         @Override
@@ -480,17 +733,17 @@ public abstract class TypeTokenImpl<T> implements TypeToken<T> {
 
         @Override
         public Parameterized<T> withParams(TypeToken<?>[] resolvedTypeArguments) {
-            return new ParameterizedImpl<>(this.annotations, this.raw, this.owner, resolvedTypeArguments);
+            return TypeTokenInterner.intern(new ParameterizedImpl<>(this.annotations, this.raw, this.owner, resolvedTypeArguments));
         }
 
         @Override
         public boolean isSuperClassOfDeclaredType(Class<?> clazz) {
-            return clazz.isAssignableFrom(this.raw);
+            return TypeTokenAssignability.isAssignable(clazz, this.raw);
         }
 
         @Override
         public boolean isWithinBounds(Class<?> clazz) {
-            return this.raw.isAssignableFrom(clazz);
+            return TypeTokenAssignability.isAssignable(this.raw, clazz);
         }
 
         @Override
@@ -499,13 +752,37 @@ public abstract class TypeTokenImpl<T> implements TypeToken<T> {
         }
 
         @Override
-        public TypeTokenImpl<T> copy() {
-            return new ParameterizedImpl<>(this.annotations, this.raw, TypeTokenImpl.copy(this.owner), TypeTokenImpl.copy(this.typeArguments));
+        protected TypeToken<T> computeStripped() {
+            final TypeToken<?> owner = this.owner == null ? null : this.owner.stripAnnotations();
+            final TypeToken<?>[] typeArguments = TypeTokenImpl.stripAnnotations(this.typeArguments);
+            if (this.annotations.length == 0 && owner == this.owner && typeArguments == this.typeArguments) {
+                return this;
+            }
+
+            return TypeTokenInterner.intern(new ParameterizedImpl<>(TypeTokenCache.NO_ANNOTATIONS, this.raw, owner, typeArguments));
+        }
+
+        @Override
+        public TypeTokenImpl<T> withAnnotations(Annotation[] annotations) {
+            return TypeTokenInterner.intern(new ParameterizedImpl<>(annotations, this.raw, this.owner, this.typeArguments));
+        }
+
+        @Override
+        protected boolean equalsStructure(TypeTokenImpl<?> other) {
+            final ParameterizedImpl<?> parameterized = (ParameterizedImpl<?>) other;
+            return this.raw == parameterized.raw
+                    && Objects.equals(this.owner, parameterized.owner)
+                    && Arrays.equals(this.typeArguments, parameterized.typeArguments);
+        }
+
+        @Override
+        protected int hashStructure() {
+            return 31 * (31 * this.raw.hashCode() + Objects.hashCode(this.owner)) + Arrays.hashCode(this.typeArguments);
         }
 
         @Override
         public <U> TypeToken<U> withType(Class<U> type) {
-            return new ParameterizedImpl<>(this.annotations, type, this.owner, this.typeArguments);
+            return TypeTokenInterner.intern(new ParameterizedImpl<>(this.annotations, type, this.owner, this.typeArguments));
         }
     }
 }
@@ -0,0 +1,291 @@
+package org.spring4mc.utility.typetoken;
+
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * On-disk index of precomputed type tokens by key, so they don't have to be rebuilt by reflection on every start.
+ * <p>
+ * The file is memory-mapped and read in place, strings and tokens are only decoded once they're looked up.
+ * Every referenced class loaded by a class loader other than the bootstrap one is validated against the CRC32 of its
+ * class file when opened, bootstrap classes against the Java version the index was written with.
+ * <p>
+ * Layout: header, string offsets, string data, class table, entry table and the {@link TypeTokenCodec} body.
+ */
+@ApiStatus.Internal
+public class TypeTokenIndex {
+    private static final int MAGIC = 0x54544B49;
+    private static final int VERSION = 1;
+    private static final long NO_CHECKSUM = -1;
+    private static final String JAVA_VERSION = System.getProperty("java.version");
+
+    private static final Map<String, Class<?>> PRIMITIVES = new HashMap<>();
+
+    static {
+        for (final Class<?> primitive : new Class<?>[]{boolean.class, byte.class, char.class, short.class, int.class, long.class, float.class, double.class, void.class}) {
+            PRIMITIVES.put(primitive.getName(), primitive);
+        }
+    }
+
+    private final ByteBuffer buffer;
+    private final int[] stringOffsets;
+    private final String[] strings;
+    private final Class<?>[] classes;
+    private final Map<String, Integer> entries;
+    private final TypeTokenCodec.Decoder decoder;
+
+    private TypeTokenIndex(ByteBuffer buffer, int[] stringOffsets, Class<?>[] classes, Map<String, Integer> entries, ByteBuffer body) {
+        this.buffer = buffer;
+        this.stringOffsets = stringOffsets;
+        this.strings = new String[stringOffsets.length];
+        this.classes = classes;
+        this.entries = entries;
+        this.decoder = new TypeTokenCodec.Decoder(body, new TypeTokenCodec.Tables() {
+            @Override
+            public String getString(int index) {
+                return TypeTokenIndex.this.getString(index);
+            }
+
+            @Override
+            public Class<?> getClass(int index) {
+                return TypeTokenIndex.this.classes[index];
+            }
+        });
+    }
+
+    /**
+     * Writes the tokens to the file, replacing it if it exists. The index is written to a temporary file next to it
+     * first and then moved in place, so a concurrent or interrupted write never leaves a partial index behind.
+     */
+    public static void write(Path file, Map<String, ? extends TypeToken<?>> tokens) throws IOException {
+        final TypeTokenCodec.Encoder encoder = new TypeTokenCodec.Encoder();
+        final Map<Integer, Integer> entries = new LinkedHashMap<>();
+        tokens.forEach((key, token) -> entries.put(encoder.indexOf(key), encoder.encode(token)));
+
+        final List<Class<?>> classes = encoder.getClasses();
+        final int[] classNames = new int[classes.size()];
+        for (int i = 0; i < classNames.length; i++) {
+            classNames[i] = encoder.indexOf(classes.get(i).getName());
+        }
+
+        final List<String> strings = encoder.getStrings();
+        final byte[] body = encoder.toByteArray();
+
+        final Path directory = file.toAbsolutePath().getParent();
+        final Path temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            writeIndex(temporary, strings, classes, classNames, entries, body);
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private static void writeIndex(Path file, List<String> strings, List<Class<?>> classes, int[] classNames, Map<Integer, Integer> entries, byte[] body) throws IOException {
+        try (final OutputStream stream = Files.newOutputStream(file); final DataOutputStream out = new DataOutputStream(stream)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeString(out, JAVA_VERSION);
+
+            final List<byte[]> encodedStrings = new ArrayList<>(strings.size());
+            out.writeInt(strings.size());
+            int offset = 0;
+            for (final String string : strings) {
+                final byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+                encodedStrings.add(bytes);
+                out.writeInt(offset);
+                offset += Integer.BYTES + bytes.length;
+            }
+
+            out.writeInt(offset);
+            for (final byte[] bytes : encodedStrings) {
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+
+            out.writeInt(classes.size());
+            for (int i = 0; i < classNames.length; i++) {
+                out.writeInt(classNames[i]);
+                out.writeLong(checksum(classes.get(i)));
+            }
+
+            out.writeInt(entries.size());
+            for (final Map.Entry<Integer, Integer> entry : entries.entrySet()) {
+                out.writeInt(entry.getKey());
+                out.writeInt(entry.getValue());
+            }
+
+            out.writeInt(body.length);
+            out.write(body);
+        }
+    }
+
+    /**
+     * Maps the index file and validates it against the currently loaded classes.
+     *
+     * @return the index, or null if it was written by another format version or Java version, is truncated or
+     * corrupt, or any of its classes is missing or changed since; the tokens then have to be rebuilt
+     */
+    @Nullable
+    public static TypeTokenIndex open(Path file, ClassLoader classLoader) throws IOException {
+        final ByteBuffer buffer;
+        try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        try {
+            return read(buffer, classLoader);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            // Offsets and lengths pointing outside of the file
+            return null;
+        }
+    }
+
+    @Nullable
+    private static TypeTokenIndex read(ByteBuffer buffer, ClassLoader classLoader) throws IOException {
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            return null;
+        }
+
+        final boolean sameJava = readString(buffer, buffer.position()).equals(JAVA_VERSION);
+        buffer.position(buffer.position() + Integer.BYTES + buffer.getInt(buffer.position()));
+
+        final int[] stringOffsets = new int[readCount(buffer, Integer.BYTES)];
+        for (int i = 0; i < stringOffsets.length; i++) {
+            stringOffsets[i] = buffer.getInt();
+        }
+
+        final int stringDataLength = buffer.getInt();
+        final int stringData = buffer.position();
+        for (int i = 0; i < stringOffsets.length; i++) {
+            stringOffsets[i] += stringData;
+        }
+
+        buffer.position(stringData + stringDataLength);
+
+        final Class<?>[] classes = new Class<?>[readCount(buffer, Integer.BYTES + Long.BYTES)];
+        for (int i = 0; i < classes.length; i++) {
+            final String name = readString(buffer, stringOffsets[buffer.getInt()]);
+            final long checksum = buffer.getLong();
+
+            final Class<?> clazz = PRIMITIVES.containsKey(name) ? PRIMITIVES.get(name) : loadClass(name, classLoader);
+            if (clazz == null || (clazz.getClassLoader() == null && !clazz.isPrimitive() && !sameJava) || (checksum != NO_CHECKSUM && checksum != checksum(clazz))) {
+                return null;
+            }
+
+            classes[i] = clazz;
+        }
+
+        final Map<String, Integer> entries = new LinkedHashMap<>();
+        final int entryCount = readCount(buffer, 2 * Integer.BYTES);
+        for (int i = 0; i < entryCount; i++) {
+            entries.put(readString(buffer, stringOffsets[buffer.getInt()]), buffer.getInt());
+        }
+
+        final int bodyLength = buffer.getInt();
+        final ByteBuffer body = buffer.slice(buffer.position(), bodyLength);
+        return new TypeTokenIndex(buffer, stringOffsets, classes, entries, body);
+    }
+
+    public Set<String> keys() {
+        return Collections.unmodifiableSet(this.entries.keySet());
+    }
+
+    /**
+     * Returns the token stored under the key, decoded on first access.
+     */
+    @Nullable
+    public synchronized TypeToken<?> get(String key) {
+        final Integer offset = this.entries.get(key);
+        return offset == null ? null : this.decoder.decode(offset);
+    }
+
+    private String getString(int index) {
+        String string = this.strings[index];
+        if (string == null) {
+            string = readString(this.buffer, this.stringOffsets[index]);
+            this.strings[index] = string;
+        }
+
+        return string;
+    }
+
+    /**
+     * Reads the number of elements of a table, checking that the table fits into the rest of the file before
+     * anything is allocated for it.
+     */
+    private static int readCount(ByteBuffer buffer, int elementSize) {
+        final int count = buffer.getInt();
+        if (count < 0 || (long) count * elementSize > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+
+        return count;
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        final byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer, int offset) {
+        final int length = buffer.getInt(offset);
+        if (length < 0 || length > buffer.limit() - offset - Integer.BYTES) {
+            throw new BufferUnderflowException();
+        }
+
+        final byte[] bytes = new byte[length];
+        buffer.get(offset + Integer.BYTES, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Nullable
+    private static Class<?> loadClass(String name, ClassLoader classLoader) {
+        try {
+            return Class.forName(name, false, classLoader);
+        } catch (ClassNotFoundException | LinkageError e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the CRC32 of the class file, array classes are checked by their element type. Bootstrap and primitive
+     * classes have {@link #NO_CHECKSUM}, they're covered by the Java version.
+     */
+    private static long checksum(Class<?> type) throws IOException {
+        Class<?> clazz = type;
+        while (clazz.isArray()) {
+            clazz = clazz.getComponentType();
+        }
+
+        if (clazz.isPrimitive() || clazz.getClassLoader() == null) {
+            return NO_CHECKSUM;
+        }
+
+        try (final InputStream stream = clazz.getResourceAsStream("/" + clazz.getName().replace('.', '/') + ".class")) {
+            if (stream == null) {
+                return NO_CHECKSUM;
+            }
+
+            final CRC32 crc = new CRC32();
+            crc.update(stream.readAllBytes());
+            return crc.getValue();
+        }
+    }
+}
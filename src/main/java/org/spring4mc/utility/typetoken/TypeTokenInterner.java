@@ -0,0 +1,110 @@
+package org.spring4mc.utility.typetoken;
+
+import org.jetbrains.annotations.ApiStatus;
+import org.springframework.util.ConcurrentReferenceHashMap;
+
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Optional hash-consing of type tokens. When enabled, every token built by the converter and the {@code with*} methods
+ * is replaced by its canonical instance, so structurally equal tokens are usually the same instance and {@code equals}
+ * is decided by the identity check.
+ * <p>
+ * Canonical instances are held softly, so an evicted token is simply interned again. Equality stays structural
+ * either way, interning only makes it cheaper.
+ * <p>
+ * Disabled by default, enable with {@code -Dorg.spring4mc.utility.typetoken.hashConsing=true} or {@link #setEnabled(boolean)}.
+ */
+@ApiStatus.Internal
+public class TypeTokenInterner {
+    public static final String ENABLED_PROPERTY = "org.spring4mc.utility.typetoken.hashConsing";
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    private static final Map<Key, TypeToken<?>> CANONICAL = new ConcurrentReferenceHashMap<>(INITIAL_CAPACITY, ConcurrentReferenceHashMap.ReferenceType.SOFT);
+
+    private static volatile boolean enabled = Boolean.getBoolean(ENABLED_PROPERTY);
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        TypeTokenInterner.enabled = enabled;
+        if (!enabled) {
+            CANONICAL.clear();
+        }
+    }
+
+    /**
+     * Returns the canonical instance of the given token, or the token itself if hash-consing is disabled.
+     */
+    public static <TOKEN extends TypeToken<?>> TOKEN intern(TOKEN token) {
+        if (!enabled) {
+            return token;
+        }
+
+        final TypeToken<?> canonical = CANONICAL.putIfAbsent(new Key(token), token);
+        if (TypeTokenMetrics.isEnabled()) {
+            if (canonical == null) {
+                TypeTokenMetrics.get().cacheMiss(TypeTokenMetrics.Cache.INTERNED);
+            } else {
+                TypeTokenMetrics.get().cacheHit(TypeTokenMetrics.Cache.INTERNED);
+            }
+        }
+
+        return canonical == null ? token : (TOKEN) canonical;
+    }
+
+    static long size() {
+        return CANONICAL.size();
+    }
+
+    private static Annotation[][] collectAnnotations(TypeToken<?> token) {
+        final List<Annotation[]> annotations = new ArrayList<>();
+        ((TypeTokenImpl<?>) token).visit(visited -> annotations.add(((TypeTokenImpl<?>) visited).annotations));
+        return annotations.toArray(new Annotation[0][]);
+    }
+
+    /**
+     * Declared tokens are equal regardless of their annotations, so the canonical key additionally compares
+     * the annotations of every node to never hand out a token with different annotations. They are collected and
+     * hashed once per key, so probing the map doesn't walk the tokens again.
+     */
+    private static final class Key {
+        private final TypeToken<?> token;
+        private final Annotation[][] annotations;
+        private final int hash;
+
+        Key(TypeToken<?> token) {
+            this.token = token;
+            this.annotations = collectAnnotations(token);
+            this.hash = 31 * token.hashCode() + Arrays.deepHashCode(this.annotations);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+
+            final Key other = (Key) obj;
+            if (this.token == other.token) {
+                return true;
+            }
+
+            return this.hash == other.hash
+                    && this.token.equals(other.token)
+                    && Arrays.deepEquals(this.annotations, other.annotations);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+    }
+}
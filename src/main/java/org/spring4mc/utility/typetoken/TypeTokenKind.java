@@ -0,0 +1,54 @@
+package org.spring4mc.utility.typetoken;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The structural kind of a {@link TypeToken}, used to index matchers and registries.
+ */
+public enum TypeTokenKind {
+    DECLARED,
+    PARAMETERIZED,
+    WILDCARD,
+    /**
+     * Both {@link TypeToken.ResolvedTypeVar} and {@link TypeToken.UnresolvedTypeVar}.
+     */
+    TYPE_VAR;
+
+    public static final Set<TypeTokenKind> ALL = Collections.unmodifiableSet(EnumSet.allOf(TypeTokenKind.class));
+    public static final Set<TypeTokenKind> GENERIC = Collections.unmodifiableSet(EnumSet.of(PARAMETERIZED, WILDCARD, TYPE_VAR));
+
+    /**
+     * Returns the kind of the given token, or null if it's not one of the built-in kinds.
+     */
+    @Nullable
+    public static TypeTokenKind of(TypeToken<?> typeToken) {
+        if (typeToken instanceof TypeToken.Declared) {
+            return DECLARED;
+        }
+
+        if (typeToken instanceof TypeToken.Parameterized) {
+            return PARAMETERIZED;
+        }
+
+        if (typeToken instanceof TypeToken.Wildcard) {
+            return WILDCARD;
+        }
+
+        if (typeToken instanceof TypeToken.TypeVar) {
+            return TYPE_VAR;
+        }
+
+        return null;
+    }
+
+    /**
+     * Whether tokens of this kind have a single declared class, so matchers requiring a superclass can be looked up by it.
+     */
+    public boolean hasDeclaredClass() {
+        return this == DECLARED || this == PARAMETERIZED;
+    }
+}
@@ -1,50 +1,361 @@
 package org.spring4mc.utility.typetoken;
 
 import lombok.RequiredArgsConstructor;
+import org.jetbrains.annotations.Nullable;
+import org.spring4mc.utility.collection.ConcurrentBoundedCache;
 
-import java.util.List;
-import java.util.Optional;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.lang.ref.WeakReference;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Predicate;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public class TypeTokenMatchedRegistry<T> {
-    private final List<Entry<?>> registered = new CopyOnWriteArrayList<>();
+    private static final TypeTokenKind[] KINDS = TypeTokenKind.values();
 
-    public <VALUE extends T> void registerFirst(TypeTokenMatcher<?> matcher, VALUE value) {
-        this.registered.add(0, new Entry<>(matcher, value));
+    private final List<Entry<?>> registered = new ArrayList<>();
+
+    // Rebuilt on the first lookup after a registration, so registering many entries doesn't rebuild it every time
+    @Nullable
+    private volatile Index index;
+
+    @Nullable
+    private final LookupCache lookupCache;
+
+    public TypeTokenMatchedRegistry() {
+        this.lookupCache = null;
+    }
+
+    /**
+     * Creates a registry caching the matched values per looked up token.
+     * <p>
+     * The cache holds at most {@code maximumCachedLookups} tokens and evicts the least frequently looked up ones. Tokens
+     * are cached by their canonical string, so differently annotated tokens are cached separately, and only weakly
+     * referenced so they never keep their classes reachable. Lists returned by {@link #find(TypeToken)} are shared and
+     * unmodifiable.
+     *
+     * @param maximumCachedLookups the maximum number of cached tokens
+     */
+    public TypeTokenMatchedRegistry(int maximumCachedLookups) {
+        this.lookupCache = new LookupCache(maximumCachedLookups);
+    }
+
+    public synchronized <VALUE extends T> void registerFirst(TypeTokenMatcher<?> matcher, VALUE value) {
+        this.registered.add(0, new Entry<>(matcher.compile(), value));
+        this.index = null;
+        this.invalidateLookups();
     }
 
-    public <VALUE extends T> void registerLast(TypeTokenMatcher<?> matcher, VALUE value) {
-        this.registered.add(new Entry<>(matcher, value));
+    public synchronized <VALUE extends T> void registerLast(TypeTokenMatcher<?> matcher, VALUE value) {
+        this.registered.add(new Entry<>(matcher.compile(), value));
+        this.index = null;
+        this.invalidateLookups();
     }
 
     public <VALUE extends T> Optional<VALUE> findFirst(TypeToken<?> token) {
+        if (this.lookupCache != null) {
+            return (Optional<VALUE>) this.lookupCache.get(token).first;
+        }
+
         return this.findFirst(token, t -> true);
     }
 
     public <VALUE extends T> Optional<VALUE> findFirst(TypeToken<?> token, Predicate<VALUE> predicate) {
-        return this.stream(token, predicate).findFirst();
+        if (this.lookupCache != null) {
+            for (final Object value : this.lookupCache.get(token).values) {
+                if (predicate.test((VALUE) value)) {
+                    return Optional.of((VALUE) value);
+                }
+            }
+
+            return Optional.empty();
+        }
+
+        final Index index = this.index();
+        int evaluated = 0;
+        try {
+            for (final int candidate : index.candidates(token)) {
+                final Entry<?> entry = index.entries.get(candidate);
+                evaluated++;
+                if (entry.matcher.test(token) && predicate.test((VALUE) entry.value)) {
+                    return Optional.of((VALUE) entry.value);
+                }
+            }
+
+            return Optional.empty();
+        } finally {
+            if (TypeTokenMetrics.isEnabled()) {
+                TypeTokenMetrics.get().registryLookup(evaluated);
+            }
+        }
     }
 
+    /**
+     * Returns the values of all matchers accepting the token, in registration order. With a lookup cache the list is
+     * shared by all lookups of the token and unmodifiable, otherwise it's a new {@link ArrayList} per call.
+     */
     public <VALUE extends T> List<? extends VALUE> find(TypeToken<?> token) {
+        if (this.lookupCache != null) {
+            return (List<? extends VALUE>) this.lookupCache.get(token).values;
+        }
+
         return this.find(token, t -> true);
     }
 
+    /**
+     * Returns the values of all matchers accepting the token that also pass the predicate, in registration order, as
+     * a new {@link ArrayList} per call.
+     */
     public <VALUE extends T> List<? extends VALUE> find(TypeToken<?> token, Predicate<VALUE> predicate) {
-        return this.stream(token, predicate).collect(Collectors.toList());
+        if (this.lookupCache != null) {
+            final List<VALUE> found = new ArrayList<>();
+            for (final Object value : this.lookupCache.get(token).values) {
+                if (predicate.test((VALUE) value)) {
+                    found.add((VALUE) value);
+                }
+            }
+
+            return found;
+        }
+
+        final Index index = this.index();
+        final int[] candidates = index.candidates(token);
+        final List<VALUE> found = new ArrayList<>();
+        for (final int candidate : candidates) {
+            final Entry<?> entry = index.entries.get(candidate);
+            if (entry.matcher.test(token) && predicate.test((VALUE) entry.value)) {
+                found.add((VALUE) entry.value);
+            }
+        }
+
+        if (TypeTokenMetrics.isEnabled()) {
+            TypeTokenMetrics.get().registryLookup(candidates.length);
+        }
+
+        return found;
     }
 
     protected <VALUE extends T> Stream<VALUE> stream(TypeToken<?> token, Predicate<VALUE> predicate) {
-        return this.registered.stream().filter(entry -> entry.matcher.test(token))
+        final Index index = this.index();
+        return Arrays.stream(index.candidates(token))
+                .mapToObj(candidate -> index.entries.get(candidate))
+                .filter(entry -> entry.matcher.test(token))
                 .map(entry -> (VALUE) entry.value)
                 .filter(predicate);
     }
 
+    private Index index() {
+        final Index index = this.index;
+        if (index != null) {
+            return index;
+        }
+
+        synchronized (this) {
+            if (this.index == null) {
+                this.index = new Index(new ArrayList<>(this.registered));
+            }
+
+            return this.index;
+        }
+    }
+
+    private void invalidateLookups() {
+        if (this.lookupCache != null) {
+            this.lookupCache.generation.incrementAndGet();
+        }
+    }
+
     @RequiredArgsConstructor
     public class Entry<VALUE extends T> {
         private final TypeTokenMatcher matcher;
         private final VALUE value;
     }
+
+    /**
+     * Immutable snapshot of the registered entries, indexed by the kind hints and required superclasses of their matchers.
+     * Candidates are positions into {@link #entries} in ascending order, so registration order is preserved.
+     */
+    private final class Index {
+        private final List<Entry<?>> entries;
+        private final int[] all;
+
+        // Candidates per kind ordinal, regardless of the declared class
+        private final int[][] byKind;
+
+        // Candidates per kind ordinal without a required superclass, and with one grouped by it
+        private final int[][] unconstrainedByKind;
+        private final Map<Class<?>, int[]>[] constrainedByKind;
+
+        private final ClassValue<int[][]> byDeclaredClass = new ClassValue<>() {
+            @Override
+            protected int[][] computeValue(Class<?> type) {
+                return Index.this.collectCandidates(type);
+            }
+        };
+
+        private Index(List<Entry<?>> entries) {
+            this.entries = entries;
+            this.all = new int[entries.size()];
+            this.byKind = new int[KINDS.length][];
+            this.unconstrainedByKind = new int[KINDS.length][];
+            this.constrainedByKind = new Map[KINDS.length];
+
+            for (int i = 0; i < this.all.length; i++) {
+                this.all[i] = i;
+            }
+
+            for (final TypeTokenKind kind : KINDS) {
+                final List<Integer> applicable = new ArrayList<>();
+                final List<Integer> unconstrained = new ArrayList<>();
+                final Map<Class<?>, List<Integer>> constrained = new HashMap<>();
+
+                for (int i = 0; i < entries.size(); i++) {
+                    final TypeTokenMatcher<?> matcher = entries.get(i).matcher;
+                    if (!matcher.getApplicableKinds().contains(kind)) {
+                        continue;
+                    }
+
+                    applicable.add(i);
+                    final Class<?> requiredSuperClass = matcher.getRequiredSuperClass();
+                    if (requiredSuperClass == null || !kind.hasDeclaredClass()) {
+                        unconstrained.add(i);
+                    } else {
+                        constrained.computeIfAbsent(requiredSuperClass, key -> new ArrayList<>()).add(i);
+                    }
+                }
+
+                final Map<Class<?>, int[]> constrainedArrays = new HashMap<>();
+                constrained.forEach((type, positions) -> constrainedArrays.put(type, toArray(positions)));
+
+                this.byKind[kind.ordinal()] = toArray(applicable);
+                this.unconstrainedByKind[kind.ordinal()] = toArray(unconstrained);
+                this.constrainedByKind[kind.ordinal()] = constrainedArrays;
+            }
+        }
+
+        private int[] toArray(Collection<Integer> positions) {
+            return positions.stream().mapToInt(Integer::intValue).sorted().toArray();
+        }
+
+        private int[] candidates(TypeToken<?> token) {
+            final TypeTokenKind kind = TypeTokenKind.of(token);
+            if (kind == null) {
+                return this.all;
+            }
+
+            if (!kind.hasDeclaredClass()) {
+                return this.byKind[kind.ordinal()];
+            }
+
+            final Class<?> declaredType = token.getDeclaredType();
+            if (declaredType.isArray()) {
+                // Array covariance isn't visible through the superclass chain, check every matcher of the kind
+                return this.byKind[kind.ordinal()];
+            }
+
+            return this.byDeclaredClass.get(declaredType)[kind.ordinal()];
+        }
+
+        /**
+         * Collects for each kind the unconstrained candidates and the ones requiring any supertype of the given class.
+         */
+        private int[][] collectCandidates(Class<?> type) {
+            final Set<Class<?>> supertypes = TypeTokenAssignability.getSupertypes(type);
+            final int[][] candidates = new int[KINDS.length][];
+
+            for (final TypeTokenKind kind : KINDS) {
+                if (!kind.hasDeclaredClass()) {
+                    continue;
+                }
+
+                final Map<Class<?>, int[]> constrained = this.constrainedByKind[kind.ordinal()];
+                final Set<Integer> positions = new HashSet<>();
+                for (final int position : this.unconstrainedByKind[kind.ordinal()]) {
+                    positions.add(position);
+                }
+
+                for (final Class<?> supertype : supertypes) {
+                    final int[] constrainedPositions = constrained.get(supertype);
+                    if (constrainedPositions != null) {
+                        for (final int position : constrainedPositions) {
+                            positions.add(position);
+                        }
+                    }
+                }
+
+                candidates[kind.ordinal()] = toArray(positions);
+            }
+
+            return candidates;
+        }
+    }
+
+    /**
+     * Matched values per token. Every registration bumps the generation, which invalidates all existing lookups.
+     * <p>
+     * Keyed by the canonical string, as {@link TypeToken#equals(Object)} ignores the annotations of declared tokens.
+     * Equally named classes of different class loaders share a key, so a lookup is only reused for a token equal to
+     * the one it was computed for.
+     */
+    private final class LookupCache {
+        private final ConcurrentBoundedCache<String, Lookup> lookups;
+        private final AtomicInteger generation = new AtomicInteger();
+
+        private LookupCache(int maximumSize) {
+            this.lookups = new ConcurrentBoundedCache<>(maximumSize);
+        }
+
+        private Lookup get(TypeToken<?> token) {
+            final int generation = this.generation.get();
+            final String key = token.toCanonicalString();
+            final Lookup cached = this.lookups.get(key);
+            if (cached != null && cached.generation == generation && cached.isFor(token)) {
+                if (TypeTokenMetrics.isEnabled()) {
+                    TypeTokenMetrics.get().cacheHit(TypeTokenMetrics.Cache.REGISTRY_LOOKUPS);
+                    TypeTokenMetrics.get().registryLookup(0);
+                }
+
+                return cached;
+            }
+
+            final Index index = TypeTokenMatchedRegistry.this.index();
+            final int[] candidates = index.candidates(token);
+            final List<Object> values = new ArrayList<>();
+            for (final int candidate : candidates) {
+                final Entry<?> entry = index.entries.get(candidate);
+                if (entry.matcher.test(token)) {
+                    values.add(entry.value);
+                }
+            }
+
+            if (TypeTokenMetrics.isEnabled()) {
+                TypeTokenMetrics.get().cacheMiss(TypeTokenMetrics.Cache.REGISTRY_LOOKUPS);
+                TypeTokenMetrics.get().registryLookup(candidates.length);
+            }
+
+            final Lookup lookup = new Lookup(generation, token, Collections.unmodifiableList(values));
+            this.lookups.put(key, lookup);
+
+            return lookup;
+        }
+    }
+
+    private static final class Lookup {
+        private final int generation;
+        private final WeakReference<TypeToken<?>> token;
+        private final List<Object> values;
+        private final Optional<Object> first;
+
+        private Lookup(int generation, TypeToken<?> token, List<Object> values) {
+            this.generation = generation;
+            this.token = new WeakReference<>(token);
+            this.values = values;
+            this.first = values.isEmpty() ? Optional.empty() : Optional.of(values.get(0));
+        }
+
+        private boolean isFor(TypeToken<?> token) {
+            final TypeToken<?> computedFor = this.token.get();
+            return computedFor == token || token.equals(computedFor);
+        }
+    }
 }
@@ -1,5 +1,9 @@
 package org.spring4mc.utility.typetoken;
 
+import org.jetbrains.annotations.Nullable;
+
+import java.util.EnumSet;
+import java.util.Set;
 import java.util.function.Predicate;
 
 /**
@@ -15,7 +19,7 @@ public interface TypeTokenMatcher<T extends TypeToken<?>> extends Predicate<T> {
      * @return A matcher that matches Declared TypeTokens
      */
     static TypeTokenMatcher<TypeToken.Declared<?>> isDeclared() {
-        return TypeToken.Declared.class::isInstance;
+        return node(new TypeTokenMatcherNode.Kind(TypeToken.Declared.class, EnumSet.of(TypeTokenKind.DECLARED)));
     }
 
     /**
@@ -24,7 +28,7 @@ public interface TypeTokenMatcher<T extends TypeToken<?>> extends Predicate<T> {
      * @return A matcher that matches Wildcard TypeTokens
      */
     static TypeTokenMatcher<TypeToken.Wildcard<?>> isWildcard() {
-        return TypeToken.Wildcard.class::isInstance;
+        return node(new TypeTokenMatcherNode.Kind(TypeToken.Wildcard.class, EnumSet.of(TypeTokenKind.WILDCARD)));
     }
 
     /**
@@ -33,7 +37,7 @@ public interface TypeTokenMatcher<T extends TypeToken<?>> extends Predicate<T> {
      * @return A matcher that matches Parameterized TypeTokens
      */
     static TypeTokenMatcher<TypeToken.Parameterized<?>> isParameterized() {
-        return TypeToken.Parameterized.class::isInstance;
+        return node(new TypeTokenMatcherNode.Kind(TypeToken.Parameterized.class, EnumSet.of(TypeTokenKind.PARAMETERIZED)));
     }
 
     /**
@@ -42,7 +46,7 @@ public interface TypeTokenMatcher<T extends TypeToken<?>> extends Predicate<T> {
      * @return A matcher that matches TypeVar TypeTokens
      */
     static TypeTokenMatcher<TypeToken.TypeVar<?>> isTypeVar() {
-        return TypeToken.TypeVar.class::isInstance;
+        return node(new TypeTokenMatcherNode.Kind(TypeToken.TypeVar.class, EnumSet.of(TypeTokenKind.TYPE_VAR)));
     }
 
     /**
@@ -51,7 +55,7 @@ public interface TypeTokenMatcher<T extends TypeToken<?>> extends Predicate<T> {
      * @return A matcher that matches Generic TypeTokens
      */
     static TypeTokenMatcher<TypeToken.Generic<?>> isGeneric() {
-        return TypeToken.Generic.class::isInstance;
+        return node(new TypeTokenMatcherNode.Kind(TypeToken.Generic.class, TypeTokenKind.GENERIC));
     }
 
     /**
@@ -60,7 +64,7 @@ public interface TypeTokenMatcher<T extends TypeToken<?>> extends Predicate<T> {
      * @return A matcher that always returns true
      */
     static TypeTokenMatcher<TypeToken<?>> any() {
-        return typeToken -> true;
+        return TypeTokenMatcherNode.ANY;
     }
 
     /**
@@ -71,18 +75,11 @@ public interface TypeTokenMatcher<T extends TypeToken<?>> extends Predicate<T> {
      * @return A matcher for superclass relationship
      */
     static <T> TypeTokenMatcher<TypeToken<? super T>> isSuperClass(Class<? super T> clazz) {
-        return typeToken -> typeToken.isSuperClassOfDeclaredType(clazz);
+        return node(new TypeTokenMatcherNode.SuperClass(new Class<?>[]{clazz}));
     }
 
     static <T> TypeTokenMatcher<TypeToken<? super T>> isAnySuperClass(Class<?>... classes) {
-        return typeToken -> {
-            for (final Class<?> clazz : classes) {
-                if (typeToken.isSuperClassOfDeclaredType(clazz)) {
-                    return true;
-                }
-            }
-            return false;
-        };
+        return node(new TypeTokenMatcherNode.SuperClass(classes));
     }
 
     /**
@@ -94,14 +91,7 @@ public interface TypeTokenMatcher<T extends TypeToken<?>> extends Predicate<T> {
      * @return A matcher for generic parameters
      */
     static <U extends TypeToken<?>> TypeTokenMatcher<TypeToken.Generic<?>> genericChildAt(int index, TypeTokenMatcher<U> matcher) {
-        return typeToken -> {
-            if (!(typeToken instanceof TypeToken.Generic<?>)) {
-                return false;
-            }
-
-            final TypeToken<?>[] bounds = typeToken.getGenerics();
-            return bounds.length > index && matcher.test((U) bounds[index]);
-        };
+        return node(new TypeTokenMatcherNode.GenericChild(index, TypeTokenMatcherNode.of(matcher)));
     }
 
     /**
@@ -111,7 +101,7 @@ public interface TypeTokenMatcher<T extends TypeToken<?>> extends Predicate<T> {
      * @return A matcher combining type check and custom predicate
      */
     static TypeTokenMatcher<TypeToken.Declared<?>> declaredMatching(Predicate<TypeToken.Declared<?>> predicate) {
-        return typeToken -> typeToken instanceof TypeToken.Declared<?> && predicate.test(typeToken);
+        return node(TypeTokenMatcherNode.and(TypeTokenMatcherNode.of(isDeclared()), new TypeTokenMatcherNode.Opaque(predicate)));
     }
 
     /**
@@ -121,19 +111,53 @@ public interface TypeTokenMatcher<T extends TypeToken<?>> extends Predicate<T> {
      * @return A matcher combining type check and custom predicate
      */
     static TypeTokenMatcher<TypeToken.Generic<?>> genericMatching(Predicate<TypeToken.Generic<?>> predicate) {
-        return typeToken -> typeToken instanceof TypeToken.Generic<?> && predicate.test(typeToken);
+        return node(TypeTokenMatcherNode.and(TypeTokenMatcherNode.of(isGeneric()), new TypeTokenMatcherNode.Opaque(predicate)));
+    }
+
+    private static <T extends TypeToken<?>> TypeTokenMatcher<T> node(TypeTokenMatcherNode node) {
+        return (TypeTokenMatcher<T>) (TypeTokenMatcher<?>) node;
     }
 
     @Override
     boolean test(T typeToken);
 
+    /**
+     * Returns the kinds of tokens this matcher can possibly accept, registries skip it for all other kinds.
+     *
+     * @return the applicable kinds, all kinds unless known otherwise
+     */
+    default Set<TypeTokenKind> getApplicableKinds() {
+        return TypeTokenKind.ALL;
+    }
+
+    /**
+     * Returns the class the declared type of {@link TypeTokenKind#hasDeclaredClass() declared and parameterized} tokens
+     * must be a subtype of to be accepted, registries look this matcher up by it.
+     *
+     * @return the required superclass, or null if unconstrained
+     */
+    @Nullable
+    default Class<?> getRequiredSuperClass() {
+        return null;
+    }
+
     /**
      * Creates a new matcher that inverts the result of this matcher.
      *
      * @return An inverted matcher
      */
     default TypeTokenMatcher<T> invert() {
-        return typeToken -> !this.test(typeToken);
+        return node(TypeTokenMatcherNode.not(TypeTokenMatcherNode.of(this)));
+    }
+
+    /**
+     * Returns an equivalent matcher optimized for repeated evaluation, see {@link TypeTokenMatcherNode#compile()}.
+     * Matchers which aren't built from the factories of this interface are returned as is.
+     *
+     * @return The compiled matcher
+     */
+    default TypeTokenMatcher<T> compile() {
+        return this;
     }
 
     /**
@@ -144,7 +168,7 @@ public interface TypeTokenMatcher<T extends TypeToken<?>> extends Predicate<T> {
      * @return A combined matcher
      */
     default <U extends T> TypeTokenMatcher<U> and(TypeTokenMatcher<? super U> other) {
-        return typeToken -> this.test(typeToken) && other.test(typeToken);
+        return node(TypeTokenMatcherNode.and(TypeTokenMatcherNode.of(this), TypeTokenMatcherNode.of(other)));
     }
 
     /**
@@ -155,6 +179,6 @@ public interface TypeTokenMatcher<T extends TypeToken<?>> extends Predicate<T> {
      * @return A combined matcher
      */
     default <U extends T> TypeTokenMatcher<U> or(TypeTokenMatcher<? super U> other) {
-        return typeToken -> this.test(typeToken) || other.test(typeToken);
+        return node(TypeTokenMatcherNode.or(TypeTokenMatcherNode.of(this), TypeTokenMatcherNode.of(other)));
     }
 }
\ No newline at end of file
@@ -0,0 +1,552 @@
+package org.spring4mc.utility.typetoken;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Inspectable expression tree behind the built-in {@link TypeTokenMatcher} factories and combinators.
+ * <p>
+ * {@link #compile()} flattens nested {@code and}/{@code or} chains, folds constants, drops duplicate and implied kind
+ * checks and orders the remaining checks by their {@link #getCost() cost}, so the cheap ones run first.
+ */
+public abstract class TypeTokenMatcherNode implements TypeTokenMatcher<TypeToken<?>> {
+    public static final TypeTokenMatcherNode ANY = new Constant(true);
+    public static final TypeTokenMatcherNode NONE = new Constant(false);
+
+    private static final int KIND_COST = 1;
+    private static final int SUPER_CLASS_COST = 2;
+    private static final int GENERIC_CHILD_COST = 3;
+    private static final int OPAQUE_COST = 10;
+
+    /**
+     * Returns the node representing the given matcher, wrapping it as an opaque predicate if it's not a node yet.
+     */
+    public static TypeTokenMatcherNode of(TypeTokenMatcher<?> matcher) {
+        return matcher instanceof TypeTokenMatcherNode ? (TypeTokenMatcherNode) matcher : new Opaque(matcher);
+    }
+
+    public static TypeTokenMatcherNode and(TypeTokenMatcherNode... children) {
+        return new And(children);
+    }
+
+    public static TypeTokenMatcherNode or(TypeTokenMatcherNode... children) {
+        return new Or(children);
+    }
+
+    public static TypeTokenMatcherNode not(TypeTokenMatcherNode child) {
+        return new Not(child);
+    }
+
+    /**
+     * Returns the relative cost of evaluating this node, used to order checks.
+     */
+    public abstract int getCost();
+
+    @Override
+    public TypeTokenMatcherNode compile() {
+        return this;
+    }
+
+    @Override
+    public TypeTokenMatcherNode invert() {
+        return not(this);
+    }
+
+    /**
+     * A constant result, either {@link #ANY} or {@link #NONE}.
+     */
+    @Getter
+    public static final class Constant extends TypeTokenMatcherNode {
+        private final boolean result;
+
+        private Constant(boolean result) {
+            this.result = result;
+        }
+
+        @Override
+        public boolean test(TypeToken<?> typeToken) {
+            return this.result;
+        }
+
+        @Override
+        public int getCost() {
+            return 0;
+        }
+
+        @Override
+        public Set<TypeTokenKind> getApplicableKinds() {
+            return this.result ? TypeTokenKind.ALL : Collections.emptySet();
+        }
+
+        @Override
+        public String toString() {
+            return String.valueOf(this.result);
+        }
+    }
+
+    /**
+     * Checks the token implements the given {@link TypeToken} sub-interface.
+     */
+    @Getter
+    public static final class Kind extends TypeTokenMatcherNode {
+        private final Class<?> tokenType;
+        private final Set<TypeTokenKind> applicableKinds;
+
+        public Kind(Class<?> tokenType, Set<TypeTokenKind> applicableKinds) {
+            this.tokenType = tokenType;
+            this.applicableKinds = applicableKinds;
+        }
+
+        @Override
+        public boolean test(TypeToken<?> typeToken) {
+            return this.tokenType.isInstance(typeToken);
+        }
+
+        @Override
+        public int getCost() {
+            return KIND_COST;
+        }
+
+        /**
+         * Whether every token accepted by this check is also accepted by the other one.
+         */
+        private boolean implies(Kind other) {
+            return other.tokenType.isAssignableFrom(this.tokenType);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Kind && ((Kind) obj).tokenType == this.tokenType;
+        }
+
+        @Override
+        public int hashCode() {
+            return this.tokenType.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return "is" + this.tokenType.getSimpleName();
+        }
+    }
+
+    /**
+     * Checks the token's declared type is a subtype of any of the given classes, see {@link TypeToken#isSuperClassOfDeclaredType(Class)}.
+     * <p>
+     * The result for declared and parameterized tokens is cached per declared class, so testing those is a single probe
+     * regardless of the number of classes.
+     */
+    @Getter
+    public static final class SuperClass extends TypeTokenMatcherNode {
+        private final Class<?>[] classes;
+
+        @Getter(AccessLevel.NONE)
+        private final ClassValue<Boolean> matches = new ClassValue<>() {
+            @Override
+            protected Boolean computeValue(Class<?> type) {
+                return TypeTokenAssignability.isAssignableToAny(SuperClass.this.classes, type);
+            }
+        };
+
+        public SuperClass(Class<?>[] classes) {
+            this.classes = classes.clone();
+        }
+
+        @Override
+        public boolean test(TypeToken<?> typeToken) {
+            if (typeToken instanceof TypeToken.Declared<?> || typeToken instanceof TypeToken.Parameterized<?>) {
+                return this.matches.get(typeToken.getDeclaredType());
+            }
+
+            for (final Class<?> clazz : this.classes) {
+                if (typeToken.isSuperClassOfDeclaredType(clazz)) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        @Override
+        public int getCost() {
+            return SUPER_CLASS_COST;
+        }
+
+        @Override
+        public @Nullable Class<?> getRequiredSuperClass() {
+            return this.classes.length == 1 ? this.classes[0] : null;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof SuperClass && Arrays.equals(((SuperClass) obj).classes, this.classes);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(this.classes);
+        }
+
+        @Override
+        public String toString() {
+            return "isSuperClass" + Arrays.toString(this.classes);
+        }
+    }
+
+    /**
+     * Applies a matcher to the generic (type argument or bound) at the given index of a {@link TypeToken.Generic}.
+     */
+    @Getter
+    public static final class GenericChild extends TypeTokenMatcherNode {
+        private final int index;
+        private final TypeTokenMatcherNode child;
+
+        public GenericChild(int index, TypeTokenMatcherNode child) {
+            this.index = index;
+            this.child = child;
+        }
+
+        @Override
+        public boolean test(TypeToken<?> typeToken) {
+            if (!(typeToken instanceof TypeToken.Generic<?>)) {
+                return false;
+            }
+
+            final TypeToken<?>[] generics = ((TypeToken.Generic<?>) typeToken).getGenerics();
+            return generics.length > this.index && this.child.test(generics[this.index]);
+        }
+
+        @Override
+        public int getCost() {
+            return GENERIC_CHILD_COST + this.child.getCost();
+        }
+
+        @Override
+        public Set<TypeTokenKind> getApplicableKinds() {
+            return TypeTokenKind.GENERIC;
+        }
+
+        @Override
+        public TypeTokenMatcherNode compile() {
+            final TypeTokenMatcherNode child = this.child.compile();
+            if (child == NONE) {
+                return NONE;
+            }
+
+            return child == this.child ? this : new GenericChild(this.index, child);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof GenericChild && ((GenericChild) obj).index == this.index && ((GenericChild) obj).child.equals(this.child);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * this.index + this.child.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return "genericChildAt(" + this.index + ", " + this.child + ")";
+        }
+    }
+
+    /**
+     * A user supplied matcher or predicate which can't be inspected, its kind hints are taken over if it has any.
+     */
+    @Getter
+    public static final class Opaque extends TypeTokenMatcherNode {
+        private final Predicate<?> predicate;
+        private final Set<TypeTokenKind> applicableKinds;
+
+        @Nullable
+        private final Class<?> requiredSuperClass;
+
+        public Opaque(Predicate<?> predicate) {
+            this.predicate = predicate;
+            if (predicate instanceof TypeTokenMatcher<?>) {
+                this.applicableKinds = ((TypeTokenMatcher<?>) predicate).getApplicableKinds();
+                this.requiredSuperClass = ((TypeTokenMatcher<?>) predicate).getRequiredSuperClass();
+            } else {
+                this.applicableKinds = TypeTokenKind.ALL;
+                this.requiredSuperClass = null;
+            }
+        }
+
+        @Override
+        public boolean test(TypeToken<?> typeToken) {
+            return ((Predicate<TypeToken<?>>) this.predicate).test(typeToken);
+        }
+
+        @Override
+        public int getCost() {
+            return OPAQUE_COST;
+        }
+
+        @Override
+        public String toString() {
+            return "opaque(" + this.predicate + ")";
+        }
+    }
+
+    @Getter
+    public static final class Not extends TypeTokenMatcherNode {
+        private final TypeTokenMatcherNode child;
+
+        public Not(TypeTokenMatcherNode child) {
+            this.child = child;
+        }
+
+        @Override
+        public boolean test(TypeToken<?> typeToken) {
+            return !this.child.test(typeToken);
+        }
+
+        @Override
+        public int getCost() {
+            return this.child.getCost();
+        }
+
+        @Override
+        public TypeTokenMatcherNode compile() {
+            final TypeTokenMatcherNode child = this.child.compile();
+            if (child instanceof Constant) {
+                return ((Constant) child).result ? NONE : ANY;
+            }
+
+            if (child instanceof Not) {
+                return ((Not) child).child;
+            }
+
+            return child == this.child ? this : new Not(child);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Not && ((Not) obj).child.equals(this.child);
+        }
+
+        @Override
+        public int hashCode() {
+            return ~this.child.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return "not(" + this.child + ")";
+        }
+    }
+
+    /**
+     * Common base of {@link And} and {@link Or}, children are evaluated in order with short-circuiting.
+     */
+    @Getter
+    public abstract static class Junction extends TypeTokenMatcherNode {
+        protected final TypeTokenMatcherNode[] children;
+
+        protected Junction(TypeTokenMatcherNode[] children) {
+            this.children = children.clone();
+        }
+
+        @Override
+        public int getCost() {
+            int cost = 0;
+            for (final TypeTokenMatcherNode child : this.children) {
+                cost += child.getCost();
+            }
+
+            return cost;
+        }
+
+        /**
+         * Compiles and flattens the children, dropping duplicates while keeping the first occurrence.
+         */
+        protected List<TypeTokenMatcherNode> compileChildren() {
+            final Set<TypeTokenMatcherNode> compiled = new LinkedHashSet<>();
+            for (final TypeTokenMatcherNode child : this.children) {
+                final TypeTokenMatcherNode compiledChild = child.compile();
+                if (compiledChild.getClass() == this.getClass()) {
+                    Collections.addAll(compiled, ((Junction) compiledChild).children);
+                } else {
+                    compiled.add(compiledChild);
+                }
+            }
+
+            return new ArrayList<>(compiled);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj != null && obj.getClass() == this.getClass() && Arrays.equals(((Junction) obj).children, this.children);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * this.getClass().hashCode() + Arrays.hashCode(this.children);
+        }
+    }
+
+    public static final class And extends Junction {
+        public And(TypeTokenMatcherNode[] children) {
+            super(children);
+        }
+
+        @Override
+        public boolean test(TypeToken<?> typeToken) {
+            for (final TypeTokenMatcherNode child : this.children) {
+                if (!child.test(typeToken)) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        @Override
+        public Set<TypeTokenKind> getApplicableKinds() {
+            final Set<TypeTokenKind> applicableKinds = EnumSet.allOf(TypeTokenKind.class);
+            for (final TypeTokenMatcherNode child : this.children) {
+                applicableKinds.retainAll(child.getApplicableKinds());
+            }
+
+            return applicableKinds;
+        }
+
+        @Override
+        public @Nullable Class<?> getRequiredSuperClass() {
+            for (final TypeTokenMatcherNode child : this.children) {
+                final Class<?> requiredSuperClass = child.getRequiredSuperClass();
+                if (requiredSuperClass != null) {
+                    return requiredSuperClass;
+                }
+            }
+
+            return null;
+        }
+
+        @Override
+        public TypeTokenMatcherNode compile() {
+            final List<TypeTokenMatcherNode> children = this.compileChildren();
+            if (children.contains(NONE)) {
+                return NONE;
+            }
+
+            children.remove(ANY);
+
+            // A kind check implied by a more specific one is redundant, disjoint kinds never match
+            children.removeIf(child -> child instanceof Kind && children.stream()
+                    .anyMatch(other -> other != child && other instanceof Kind && ((Kind) other).implies((Kind) child)));
+
+            final TypeTokenMatcherNode compiled = junction(children, true);
+            return compiled.getApplicableKinds().isEmpty() ? NONE : compiled;
+        }
+
+        @Override
+        public String toString() {
+            return "and" + Arrays.toString(this.children);
+        }
+    }
+
+    public static final class Or extends Junction {
+        public Or(TypeTokenMatcherNode[] children) {
+            super(children);
+        }
+
+        @Override
+        public boolean test(TypeToken<?> typeToken) {
+            for (final TypeTokenMatcherNode child : this.children) {
+                if (child.test(typeToken)) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        @Override
+        public Set<TypeTokenKind> getApplicableKinds() {
+            final Set<TypeTokenKind> applicableKinds = EnumSet.noneOf(TypeTokenKind.class);
+            for (final TypeTokenMatcherNode child : this.children) {
+                applicableKinds.addAll(child.getApplicableKinds());
+            }
+
+            return applicableKinds;
+        }
+
+        @Override
+        public @Nullable Class<?> getRequiredSuperClass() {
+            Class<?> requiredSuperClass = null;
+            for (final TypeTokenMatcherNode child : this.children) {
+                final Class<?> childSuperClass = child.getRequiredSuperClass();
+                if (childSuperClass == null || (requiredSuperClass != null && requiredSuperClass != childSuperClass)) {
+                    return null;
+                }
+
+                requiredSuperClass = childSuperClass;
+            }
+
+            return requiredSuperClass;
+        }
+
+        @Override
+        public TypeTokenMatcherNode compile() {
+            final List<TypeTokenMatcherNode> children = this.compileChildren();
+            if (children.contains(ANY)) {
+                return ANY;
+            }
+
+            children.remove(NONE);
+
+            // A kind check implying a more general one is redundant
+            children.removeIf(child -> child instanceof Kind && children.stream()
+                    .anyMatch(other -> other != child && other instanceof Kind && ((Kind) child).implies((Kind) other)));
+
+            // Alternative superclass checks are merged into a single lookup
+            int firstSuperClass = -1;
+            final Set<Class<?>> superClasses = new LinkedHashSet<>();
+            for (final Iterator<TypeTokenMatcherNode> iterator = children.listIterator(); iterator.hasNext(); ) {
+                final TypeTokenMatcherNode child = iterator.next();
+                if (child instanceof SuperClass) {
+                    if (firstSuperClass == -1) {
+                        firstSuperClass = children.indexOf(child);
+                    }
+
+                    Collections.addAll(superClasses, ((SuperClass) child).classes);
+                    iterator.remove();
+                }
+            }
+
+            if (firstSuperClass != -1) {
+                children.add(firstSuperClass, new SuperClass(superClasses.toArray(new Class<?>[0])));
+            }
+
+            return junction(children, false);
+        }
+
+        @Override
+        public String toString() {
+            return "or" + Arrays.toString(this.children);
+        }
+    }
+
+    private static TypeTokenMatcherNode junction(List<TypeTokenMatcherNode> children, boolean and) {
+        if (children.isEmpty()) {
+            return and ? ANY : NONE;
+        }
+
+        if (children.size() == 1) {
+            return children.get(0);
+        }
+
+        // Stable, so checks of equal cost keep their declared order
+        children.sort(Comparator.comparingInt(TypeTokenMatcherNode::getCost));
+
+        final TypeTokenMatcherNode[] array = children.toArray(new TypeTokenMatcherNode[0]);
+        return and ? new And(array) : new Or(array);
+    }
+}
@@ -0,0 +1,221 @@
+package org.spring4mc.utility.typetoken;
+
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.AnnotatedType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.util.*;
+
+/**
+ * Per declaring class table of the type tokens of all declared fields, method return types and method parameters.
+ * <p>
+ * The table is resolved once on first access and attached to the class through a {@link ClassValue},
+ * so it is released together with the class loader of the declaring class. Classes annotated with
+ * {@link GenerateTypeTokens} take the tokens described by the generated {@link TypeTokenMetadata} from it, all other
+ * members are converted by reflection. Only members the converter doesn't support are left out of the table.
+ */
+@ApiStatus.Internal
+public class TypeTokenMemberTable {
+    private static final TypeTokenMemberTable EMPTY = new TypeTokenMemberTable(Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap());
+
+    private static final ClassValue<TypeTokenMemberTable> TABLES = new ClassValue<>() {
+        @Override
+        protected TypeTokenMemberTable computeValue(Class<?> type) {
+            try {
+                return TypeTokenMemberTable.resolve(type);
+            } catch (LinkageError | TypeNotPresentException | SecurityException e) {
+                // Members can't be listed (e.g. missing optional dependency), lookups fall back to converting per member
+                return EMPTY;
+            }
+        }
+    };
+
+    private final Map<Field, TypeToken<?>> fieldTypes;
+    private final Map<Method, TypeToken<?>> methodReturnTypes;
+    private final Map<Method, TypeToken<?>[]> methodParameterTypes;
+
+    private TypeTokenMemberTable(Map<Field, TypeToken<?>> fieldTypes, Map<Method, TypeToken<?>> methodReturnTypes, Map<Method, TypeToken<?>[]> methodParameterTypes) {
+        this.fieldTypes = fieldTypes;
+        this.methodReturnTypes = methodReturnTypes;
+        this.methodParameterTypes = methodParameterTypes;
+    }
+
+    public static TypeTokenMemberTable of(Class<?> declaringClass) {
+        return TABLES.get(declaringClass);
+    }
+
+    /**
+     * Returns the types of all supported fields of the class. The returned map is shared and must not be modified,
+     * as are the maps of the other getters.
+     */
+    Map<Field, TypeToken<?>> getFieldTypes() {
+        return this.fieldTypes;
+    }
+
+    Map<Method, TypeToken<?>> getMethodReturnTypes() {
+        return this.methodReturnTypes;
+    }
+
+    Map<Method, TypeToken<?>[]> getMethodParameterTypes() {
+        return this.methodParameterTypes;
+    }
+
+    public static <T> TypeToken<T> getFieldType(Field field) {
+        final TypeToken<?> typeToken = of(field.getDeclaringClass()).fieldTypes.get(field);
+        if (typeToken != null) {
+            return (TypeToken<T>) typeToken;
+        }
+
+        return TypeTokenCache.create(field.getGenericType(), field.getAnnotatedType(), field.getDeclaringClass());
+    }
+
+    public static <T> TypeToken<T> getMethodReturnType(Method method) {
+        final TypeToken<?> typeToken = of(method.getDeclaringClass()).methodReturnTypes.get(method);
+        if (typeToken != null) {
+            return (TypeToken<T>) typeToken;
+        }
+
+        return TypeTokenCache.create(method.getGenericReturnType(), method.getAnnotatedReturnType(), method.getDeclaringClass());
+    }
+
+    public static <T> TypeToken<T> getMethodParameterType(Method method, int index) {
+        final TypeToken<?>[] typeTokens = of(method.getDeclaringClass()).methodParameterTypes.get(method);
+        if (typeTokens != null) {
+            return (TypeToken<T>) typeTokens[index];
+        }
+
+        return TypeTokenCache.create(method.getGenericParameterTypes()[index], method.getAnnotatedParameterTypes()[index], method.getDeclaringClass());
+    }
+
+    private static TypeTokenMemberTable resolve(Class<?> type) {
+        final Field[] fields = type.getDeclaredFields();
+        final Method[] methods = type.getDeclaredMethods();
+        if (fields.length == 0 && methods.length == 0) {
+            return EMPTY;
+        }
+
+        final Map<Field, TypeToken<?>> fieldTypes = new HashMap<>(fields.length * 2);
+        final Map<Method, TypeToken<?>> methodReturnTypes = new HashMap<>(methods.length * 2);
+        final Map<Method, TypeToken<?>[]> methodParameterTypes = new HashMap<>(methods.length * 2);
+
+        final TypeTokenMetadata metadata = loadMetadata(type);
+        if (metadata != null) {
+            describe(metadata, fields, methods, fieldTypes, methodReturnTypes, methodParameterTypes);
+        }
+
+        // One converter for the whole table, its recursion tracking is empty again after every successful conversion
+        TypeTokenImpl.TypeTokenConverter converter = new TypeTokenImpl.TypeTokenConverter();
+
+        // Members the converter doesn't support (generic arrays) are left out, their lookups convert them again and
+        // fail on their own instead of failing the whole table. Any other exception is a bug and fails the table
+        for (final Field field : fields) {
+            if (fieldTypes.containsKey(field)) {
+                continue;
+            }
+
+            try {
+                fieldTypes.put(field, converter.convert(field.getGenericType(), field.getAnnotatedType()));
+            } catch (UnsupportedOperationException e) {
+                converter = new TypeTokenImpl.TypeTokenConverter();
+            }
+        }
+
+        for (final Method method : methods) {
+            if (!methodReturnTypes.containsKey(method)) {
+                try {
+                    methodReturnTypes.put(method, converter.convert(method.getGenericReturnType(), method.getAnnotatedReturnType()));
+                } catch (UnsupportedOperationException e) {
+                    converter = new TypeTokenImpl.TypeTokenConverter();
+                }
+            }
+
+            if (!methodParameterTypes.containsKey(method)) {
+                try {
+                    methodParameterTypes.put(method, convertParameters(converter, method));
+                } catch (UnsupportedOperationException e) {
+                    converter = new TypeTokenImpl.TypeTokenConverter();
+                }
+            }
+        }
+
+        return new TypeTokenMemberTable(fieldTypes, methodReturnTypes, methodParameterTypes);
+    }
+
+    @Nullable
+    private static TypeTokenMetadata loadMetadata(Class<?> type) {
+        if (!type.isAnnotationPresent(GenerateTypeTokens.class)) {
+            return null;
+        }
+
+        try {
+            final Class<?> metadataClass = Class.forName(type.getName() + TypeTokenMetadata.SUFFIX, true, type.getClassLoader());
+            return (TypeTokenMetadata) metadataClass.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            // Not processed (e.g. the processor wasn't on the annotation processor path)
+            return null;
+        }
+    }
+
+    /**
+     * Puts the described members in the maps, the others are left to be converted by reflection.
+     */
+    private static void describe(TypeTokenMetadata metadata, Field[] fields, Method[] methods, Map<Field, TypeToken<?>> fieldTypes, Map<Method, TypeToken<?>> methodReturnTypes, Map<Method, TypeToken<?>[]> methodParameterTypes) {
+        final Map<String, Field> fieldsByName = new HashMap<>(fields.length * 2);
+        for (final Field field : fields) {
+            fieldsByName.put(field.getName(), field);
+        }
+
+        final Map<String, List<Method>> methodsByName = new HashMap<>(methods.length * 2);
+        for (final Method method : methods) {
+            // Bridges share name and parameters with the method they bridge to, but not its return type
+            if (!method.isBridge()) {
+                methodsByName.computeIfAbsent(method.getName(), name -> new ArrayList<>(1)).add(method);
+            }
+        }
+
+        metadata.describe(new TypeTokenMetadata.Collector() {
+            @Override
+            public void field(String name, TypeToken<?> type) {
+                final Field field = fieldsByName.get(name);
+                if (field != null) {
+                    fieldTypes.put(field, type);
+                }
+            }
+
+            @Override
+            public void method(String name, Class<?>[] parameterClasses, @Nullable TypeToken<?> returnType, @Nullable TypeToken<?>[] parameterTypes) {
+                for (final Method method : methodsByName.getOrDefault(name, Collections.emptyList())) {
+                    if (Arrays.equals(method.getParameterTypes(), parameterClasses)) {
+                        if (returnType != null) {
+                            methodReturnTypes.put(method, returnType);
+                        }
+
+                        if (parameterTypes != null) {
+                            methodParameterTypes.put(method, parameterTypes);
+                        }
+
+                        return;
+                    }
+                }
+            }
+        });
+    }
+
+    private static TypeToken<?>[] convertParameters(TypeTokenImpl.TypeTokenConverter converter, Method method) {
+        if (method.getParameterCount() == 0) {
+            return TypeTokenCache.NO_TOKENS;
+        }
+
+        final Type[] parameterTypes = method.getGenericParameterTypes();
+        final AnnotatedType[] annotatedParameterTypes = method.getAnnotatedParameterTypes();
+        final TypeToken<?>[] typeTokens = new TypeToken<?>[parameterTypes.length];
+        for (int i = 0; i < parameterTypes.length; i++) {
+            typeTokens[i] = converter.convert(parameterTypes[i], i < annotatedParameterTypes.length ? annotatedParameterTypes[i] : null);
+        }
+
+        return typeTokens;
+    }
+}
@@ -0,0 +1,80 @@
+package org.spring4mc.utility.typetoken;
+
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.GenericDeclaration;
+
+/**
+ * Type tokens of the declared members of a class, precomputed at compile time for classes annotated with
+ * {@link GenerateTypeTokens}. Implementations are generated as {@code <Class>$$TypeTokens} next to the class and
+ * build their tokens through the factory methods of this interface.
+ * <p>
+ * Members the generator couldn't describe (e.g. generic arrays or runtime retained type annotations) are left out
+ * and converted by reflection when the {@link TypeTokenMemberTable} of the class is built.
+ */
+@ApiStatus.Internal
+public interface TypeTokenMetadata {
+    String SUFFIX = "$$TypeTokens";
+
+    /**
+     * Passes the tokens of all described members to the collector.
+     */
+    void describe(Collector collector);
+
+    static <T> TypeToken<T> declared(Class<T> type) {
+        return TypeTokenCache.ofClass(type);
+    }
+
+    static TypeToken<?> parameterized(Class<?> raw, @Nullable TypeToken<?> owner, TypeToken<?>... typeArguments) {
+        return TypeTokenInterner.intern(new TypeTokenImpl.ParameterizedImpl<>(TypeTokenCache.NO_ANNOTATIONS, raw, owner, typeArguments));
+    }
+
+    static TypeToken<?> wildcard() {
+        return wildcard(new TypeToken<?>[]{declared(Object.class)}, TypeTokenCache.NO_TOKENS);
+    }
+
+    static TypeToken<?> wildcardExtends(TypeToken<?> bound) {
+        return wildcard(new TypeToken<?>[]{bound}, TypeTokenCache.NO_TOKENS);
+    }
+
+    static TypeToken<?> wildcardSuper(TypeToken<?> bound) {
+        return wildcard(new TypeToken<?>[]{declared(Object.class)}, new TypeToken<?>[]{bound});
+    }
+
+    /**
+     * Creates a type variable of a class, {@link #recursiveTypeVar} stands in for it within its own bounds.
+     */
+    static TypeToken<?> typeVar(GenericDeclaration declaration, String name, int index, TypeToken<?>... bounds) {
+        return TypeTokenInterner.intern(new TypeTokenImpl.ResolvedTypeVarImpl<>(TypeTokenCache.NO_ANNOTATIONS, name, bounds, declaration, index));
+    }
+
+    static TypeToken<?> recursiveTypeVar(GenericDeclaration declaration, String name, int index) {
+        return TypeTokenInterner.intern(new TypeTokenImpl.UnresolvedTypeVarImpl<>(TypeTokenCache.NO_ANNOTATIONS, name, declaration, index));
+    }
+
+    private static TypeToken<?> wildcard(TypeToken<?>[] upperBounds, TypeToken<?>[] lowerBounds) {
+        // Same kinds as a converted WildcardType, "? extends Object" is unbounded
+        final TypeToken.Wildcard.Kind kind;
+        if (!upperBounds[0].equals(Object.class)) {
+            kind = TypeToken.Wildcard.Kind.EXTENDS;
+        } else if (lowerBounds.length > 0) {
+            kind = TypeToken.Wildcard.Kind.SUPER;
+        } else {
+            kind = TypeToken.Wildcard.Kind.RAW;
+        }
+
+        return TypeTokenInterner.intern(new TypeTokenImpl.WildcardImpl<>(upperBounds, lowerBounds, kind, TypeTokenCache.NO_ANNOTATIONS));
+    }
+
+    interface Collector {
+        void field(String name, TypeToken<?> type);
+
+        /**
+         * @param parameterClasses the erased parameter types identifying the method among its overloads
+         * @param returnType       the return type, or null if it couldn't be described
+         * @param parameterTypes   the parameter types, or null if any of them couldn't be described
+         */
+        void method(String name, Class<?>[] parameterClasses, @Nullable TypeToken<?> returnType, @Nullable TypeToken<?>[] parameterTypes);
+    }
+}
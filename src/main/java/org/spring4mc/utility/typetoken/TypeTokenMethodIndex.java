@@ -0,0 +1,86 @@
+package org.spring4mc.utility.typetoken;
+
+import org.jetbrains.annotations.ApiStatus;
+
+import java.lang.reflect.GenericDeclaration;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.util.*;
+
+/**
+ * Per declaring class index of its declared methods, attached to the class through a {@link ClassValue}.
+ * <p>
+ * Methods are looked up by name and parameter count, or by the generic declaration of the type variable they return,
+ * both in the order of {@link Class#getDeclaredMethods()}.
+ */
+@ApiStatus.Internal
+public class TypeTokenMethodIndex {
+    private static final Method[] NO_METHODS = new Method[0];
+
+    private static final ClassValue<TypeTokenMethodIndex> INDEXES = new ClassValue<>() {
+        @Override
+        protected TypeTokenMethodIndex computeValue(Class<?> type) {
+            return new TypeTokenMethodIndex(type.getDeclaredMethods());
+        }
+    };
+
+    // Methods per name, indexed by parameter count
+    private final Map<String, Method[][]> byNameAndArity = new HashMap<>();
+    private final Map<GenericDeclaration, Method[]> byReturnedTypeVariable = new HashMap<>();
+
+    private TypeTokenMethodIndex(Method[] methods) {
+        final Map<String, List<Method>> byName = new HashMap<>();
+        final Map<GenericDeclaration, List<Method>> byReturnedTypeVariable = new HashMap<>();
+
+        for (final Method method : methods) {
+            byName.computeIfAbsent(method.getName(), key -> new ArrayList<>()).add(method);
+
+            final Type genericReturnType = method.getGenericReturnType();
+            if (genericReturnType instanceof TypeVariable<?> typeVariable) {
+                byReturnedTypeVariable.computeIfAbsent(typeVariable.getGenericDeclaration(), key -> new ArrayList<>()).add(method);
+            }
+        }
+
+        byName.forEach((name, named) -> {
+            int maximumArity = 0;
+            for (final Method method : named) {
+                maximumArity = Math.max(maximumArity, method.getParameterCount());
+            }
+
+            final List<List<Method>> byArity = new ArrayList<>();
+            for (int i = 0; i <= maximumArity; i++) {
+                byArity.add(new ArrayList<>());
+            }
+
+            for (final Method method : named) {
+                byArity.get(method.getParameterCount()).add(method);
+            }
+
+            this.byNameAndArity.put(name, byArity.stream().map(arity -> arity.toArray(NO_METHODS)).toArray(Method[][]::new));
+        });
+
+        byReturnedTypeVariable.forEach((declaration, returning) -> this.byReturnedTypeVariable.put(declaration, returning.toArray(NO_METHODS)));
+    }
+
+    public static TypeTokenMethodIndex of(Class<?> declaringClass) {
+        return INDEXES.get(declaringClass);
+    }
+
+    /**
+     * Returns the declared methods with the given name and parameter count.
+     * The returned array is shared and must not be modified.
+     */
+    public Method[] getMethods(String name, int parameterCount) {
+        final Method[][] byArity = this.byNameAndArity.get(name);
+        return byArity == null || parameterCount >= byArity.length ? NO_METHODS : byArity[parameterCount];
+    }
+
+    /**
+     * Returns the declared methods whose generic return type is a type variable declared by the given declaration.
+     * The returned array is shared and must not be modified.
+     */
+    public Method[] getMethodsReturningTypeVariableOf(GenericDeclaration declaration) {
+        return this.byReturnedTypeVariable.getOrDefault(declaration, NO_METHODS);
+    }
+}
@@ -0,0 +1,85 @@
+package org.spring4mc.utility.typetoken;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Receives measurements of token conversions, resolutions, registry lookups and caches of this package.
+ * <p>
+ * No-op by default. Bridge to a metrics library by extending this class, overriding the measurements of interest and
+ * installing it with {@link #install(TypeTokenMetrics)}. While the no-op instance is installed nothing is measured,
+ * not even the clock is read. Implementations are called concurrently on the hot path and must not block.
+ *
+ * @see TypeTokenResolutionEvent
+ */
+public abstract class TypeTokenMetrics {
+    public static final TypeTokenMetrics NOOP = new TypeTokenMetrics() {
+    };
+
+    private static volatile TypeTokenMetrics installed = NOOP;
+
+    public static TypeTokenMetrics get() {
+        return installed;
+    }
+
+    public static boolean isEnabled() {
+        return installed != NOOP;
+    }
+
+    /**
+     * Replaces the installed metrics and registers the sizes of the global caches with them.
+     */
+    public static void install(TypeTokenMetrics metrics) {
+        installed = metrics;
+        metrics.cacheSize(Cache.CONVERTED, TypeTokenCache::size);
+        metrics.cacheSize(Cache.INTERNED, TypeTokenInterner::size);
+    }
+
+    /**
+     * Returns the clock to pass to the measurements, or 0 without reading it if no metrics are installed.
+     */
+    static long start() {
+        return installed == NOOP ? 0 : System.nanoTime();
+    }
+
+    /**
+     * A type was converted to a token by reflection, nested types are part of the outermost conversion.
+     */
+    public void conversion(long nanos) {
+    }
+
+    /**
+     * A token was resolved against a class or a parent type, cached resolutions aren't measured.
+     */
+    public void resolution(long nanos) {
+    }
+
+    /**
+     * A registry lookup tested the given number of matchers, zero if it was answered by its lookup cache.
+     */
+    public void registryLookup(int matchersEvaluated) {
+    }
+
+    public void cacheHit(Cache cache) {
+    }
+
+    public void cacheMiss(Cache cache) {
+    }
+
+    /**
+     * Registers a gauge of the current number of entries of a global cache, called on {@link #install}.
+     * The sizes include entries that were collected but not purged yet.
+     */
+    public void cacheSize(Cache cache, LongSupplier size) {
+    }
+
+    public enum Cache {
+        /** Converted tokens per reflected type, see {@link TypeTokenCache#create}. */
+        CONVERTED,
+        /** Canonical tokens, only used while hash-consing is enabled, see {@link TypeTokenInterner}. */
+        INTERNED,
+        /** Resolved tokens per resolving class, see {@link TypeTokenResolver#tryResolve(TypeToken, Class)}. */
+        RESOLVED,
+        /** Matched values per token of registries created with a lookup cache, see {@link TypeTokenMatchedRegistry}. */
+        REGISTRY_LOOKUPS
+    }
+}
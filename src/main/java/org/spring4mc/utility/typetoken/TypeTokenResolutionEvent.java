@@ -0,0 +1,61 @@
+package org.spring4mc.utility.typetoken;
+
+import jdk.jfr.*;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Flight recorder event of a token resolution taking longer than the threshold, 10 ms unless configured otherwise in
+ * the recording settings. Cached resolutions are never recorded.
+ */
+@Name("org.spring4mc.utility.typetoken.Resolution")
+@Label("Type Token Resolution")
+@Category({"spring4mc", "Type Token"})
+@Description("Slow resolution of a type token against a class or parent type")
+@Threshold("10 ms")
+@StackTrace
+@ApiStatus.Internal
+public class TypeTokenResolutionEvent extends Event {
+    private static final EventType TYPE = EventType.getEventType(TypeTokenResolutionEvent.class);
+
+    @Label("Operation")
+    private String operation;
+
+    @Label("Token")
+    @Description("Canonical rendering of the resolved token")
+    private String token;
+
+    @Label("Resolving Class")
+    private Class<?> resolvingClass;
+
+    /**
+     * Starts timing an event, or returns null without allocating if the event isn't enabled in any recording.
+     */
+    @Nullable
+    static TypeTokenResolutionEvent start() {
+        if (!TYPE.isEnabled()) {
+            return null;
+        }
+
+        final TypeTokenResolutionEvent event = new TypeTokenResolutionEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Commits the event if it exceeded the threshold, the token is only rendered then.
+     */
+    static void finish(@Nullable TypeTokenResolutionEvent event, String operation, TypeToken<?> token, Class<?> resolvingClass) {
+        if (event == null) {
+            return;
+        }
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.operation = operation;
+            event.token = token.toCanonicalString();
+            event.resolvingClass = resolvingClass;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package org.spring4mc.utility.typetoken;
+
+import lombok.Getter;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * The types of all fields, method return types and method parameters declared in the hierarchy of a parent type,
+ * with the type variables of the hierarchy substituted by the arguments of the parent type.
+ *
+ * @see TypeTokenResolver#resolveMembers(TypeToken)
+ */
+@Getter
+@ApiStatus.Internal
+public class TypeTokenResolvedMembers {
+    private final TypeToken<?> parentType;
+    private final Map<Field, TypeToken<?>> fieldTypes;
+    private final Map<Method, TypeToken<?>> methodReturnTypes;
+    private final Map<Method, TypeToken<?>[]> methodParameterTypes;
+
+    TypeTokenResolvedMembers(TypeToken<?> parentType, Map<Field, TypeToken<?>> fieldTypes, Map<Method, TypeToken<?>> methodReturnTypes, Map<Method, TypeToken<?>[]> methodParameterTypes) {
+        this.parentType = parentType;
+        this.fieldTypes = Collections.unmodifiableMap(fieldTypes);
+        this.methodReturnTypes = Collections.unmodifiableMap(methodReturnTypes);
+        this.methodParameterTypes = Collections.unmodifiableMap(methodParameterTypes);
+    }
+
+    /**
+     * Returns the resolved type of the field, or null if it's not declared in the hierarchy of the parent type.
+     */
+    @Nullable
+    public <T> TypeToken<T> getFieldType(Field field) {
+        return (TypeToken<T>) this.fieldTypes.get(field);
+    }
+
+    /**
+     * Returns the resolved return type of the method, or null if it's not declared in the hierarchy of the parent type.
+     */
+    @Nullable
+    public <T> TypeToken<T> getMethodReturnType(Method method) {
+        return (TypeToken<T>) this.methodReturnTypes.get(method);
+    }
+
+    /**
+     * Returns the resolved parameter types of the method, or null if it's not declared in the hierarchy of the parent type.
+     * The returned array is shared and must not be modified.
+     */
+    @Nullable
+    public TypeToken<?>[] getMethodParameterTypes(Method method) {
+        return this.methodParameterTypes.get(method);
+    }
+}
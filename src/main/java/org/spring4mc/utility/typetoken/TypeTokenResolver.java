@@ -1,16 +1,78 @@
 package org.spring4mc.utility.typetoken;
 
 import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+import org.spring4mc.utility.collection.ConcurrentBoundedCache;
 
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericDeclaration;
 import java.lang.reflect.Method;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
-import java.lang.reflect.TypeVariable;
 import java.util.*;
 
 @ApiStatus.Internal
 public class TypeTokenResolver {
+    private static final int MAXIMUM_RESOLVED_PER_CLASS = 256;
+
+    // Resolved tokens per resolving class and token instance, only successful resolutions are cached. Declared tokens
+    // are equal regardless of their annotations, so the tokens are compared by identity, and only weakly referenced
+    private static final ClassValue<ConcurrentBoundedCache<TypeToken<?>, Resolution>> RESOLVED = new ClassValue<>() {
+        @Override
+        protected ConcurrentBoundedCache<TypeToken<?>, Resolution> computeValue(Class<?> type) {
+            return ConcurrentBoundedCache.withWeakIdentityKeys(MAXIMUM_RESOLVED_PER_CLASS);
+        }
+    };
+
+    /**
+     * Resolves the token against the given runtime class. Results are cached per resolving class and token instance,
+     * so repeated resolutions of the same token return the same instance without any reflection. Tokens built by the
+     * factories are shared, and canonical with hash-consing enabled, so equal tokens usually hit the same entry.
+     * Cached results live as long as their token, at most the 256 most frequently
+     * resolved tokens are cached per class.
+     */
     public static TypeToken<?> tryResolve(TypeToken<?> typeToken, Class<?> resolvingFrom) {
+        if (!(typeToken instanceof TypeTokenImpl<?>)) {
+            return measuredResolve(typeToken, resolvingFrom);
+        }
+
+        final ConcurrentBoundedCache<TypeToken<?>, Resolution> resolved = RESOLVED.get(resolvingFrom);
+        final Resolution cached = resolved.get(typeToken);
+        if (cached != null) {
+            if (TypeTokenMetrics.isEnabled()) {
+                TypeTokenMetrics.get().cacheHit(TypeTokenMetrics.Cache.RESOLVED);
+            }
+
+            return cached.resolved == null ? typeToken : cached.resolved;
+        }
+
+        if (TypeTokenMetrics.isEnabled()) {
+            TypeTokenMetrics.get().cacheMiss(TypeTokenMetrics.Cache.RESOLVED);
+        }
+
+        final TypeToken<?> resolvedToken = measuredResolve(typeToken, resolvingFrom);
+        resolved.put(typeToken, resolvedToken == typeToken ? Resolution.UNCHANGED : new Resolution(resolvedToken));
+        return resolvedToken;
+    }
+
+    private static TypeToken<?> measuredResolve(TypeToken<?> typeToken, Class<?> resolvingFrom) {
+        final long start = TypeTokenMetrics.start();
+        final TypeTokenResolutionEvent event = TypeTokenResolutionEvent.start();
+        try {
+            return resolve(typeToken, resolvingFrom);
+        } finally {
+            measured(start, event, "tryResolve", typeToken, resolvingFrom);
+        }
+    }
+
+    private static void measured(long start, @Nullable TypeTokenResolutionEvent event, String operation, TypeToken<?> typeToken, Class<?> resolvingClass) {
+        TypeTokenResolutionEvent.finish(event, operation, typeToken, resolvingClass);
+        if (start != 0) {
+            TypeTokenMetrics.get().resolution(System.nanoTime() - start);
+        }
+    }
+
+    static TypeToken<?> resolve(TypeToken<?> typeToken, Class<?> resolvingFrom) {
         if (typeToken instanceof TypeToken.Parameterized) {
             return tryToResolveParameterizedType((TypeToken.Parameterized) typeToken, resolvingFrom);
         }
@@ -35,35 +97,8 @@ public class TypeTokenResolver {
     }
 
     private static List<Class<?>> getClassHierarchy(Class<?> clazz, boolean skipSelf) {
-        final List<Class<?>> classes = new ArrayList<>();
-        final Set<Class<?>> visited = Collections.newSetFromMap(new IdentityHashMap<>());
-        final Queue<Class<?>> queue = new LinkedList<>();
-        queue.add(clazz);
-
-        while (!queue.isEmpty()) {
-            final Class<?> current = queue.poll();
-            if (!visited.add(current)) {
-                continue;
-            }
-
-            if (current == clazz) {
-                if (!skipSelf) {
-                    classes.add(current);
-                }
-            } else {
-                classes.add(current);
-            }
-
-            final Class<?> superclass = current.getSuperclass();
-            if (superclass != null && superclass != Object.class) {
-                queue.add(superclass);
-            }
-
-            final Class<?>[] interfaces = current.getInterfaces();
-            queue.addAll(Arrays.asList(interfaces));
-        }
-
-        return classes;
+        final List<Class<?>> classes = TypeTokenHierarchy.of(clazz).getClasses();
+        return skipSelf ? classes.subList(1, classes.size()) : classes;
     }
 
     private static TypeToken<?> tryToResolveWildcardType(TypeToken.TypeVar<?> against, TypeToken.Wildcard typeToken, Class<?> objectClass) {
@@ -78,44 +113,25 @@ public class TypeTokenResolver {
     }
 
     private static TypeToken<?> tryResolveByHierarchyWithElements(TypeToken.TypeVar<?> against, TypeToken.Wildcard typeToken, Class<?> objectClass) {
-        final List<Class<?>> classHierarchy = getClassHierarchy(objectClass, true);
-        for (final Class<?> aClass : classHierarchy) {
-            for (final Method declaredMethod : aClass.getDeclaredMethods()) {
-                final Type genericReturnType = declaredMethod.getGenericReturnType();
-                if (!(genericReturnType instanceof TypeVariable<?> declaredTypeVar)) {
-                    continue;
-                }
-
-                if (declaredTypeVar.getGenericDeclaration() != against.getGenericDeclaration()) {
-                    continue;
-                }
-
+        return TypeTokenHierarchy.of(objectClass).findClass(true, aClass -> {
+            for (final Method declaredMethod : TypeTokenMethodIndex.of(aClass).getMethodsReturningTypeVariableOf(against.getGenericDeclaration())) {
                 final TypeToken<?> resolvedType = findMethodWithSameSignatureAndTypeDeclaration(declaredMethod, typeToken, objectClass);
                 if (resolvedType != null) {
                     return resolvedType;
                 }
             }
-        }
 
-        return null;
+            return null;
+        });
     }
 
     private static TypeToken<?> findMethodWithSameSignatureAndTypeDeclaration(Method method, TypeToken.Wildcard typeToken, Class<?> objectClass) {
-        final List<Class<?>> classHierarchy = getClassHierarchy(objectClass, false);
-        for (final Class<?> aClass : classHierarchy) {
+        return TypeTokenHierarchy.of(objectClass).findClass(false, aClass -> {
             if (aClass == method.getDeclaringClass()) {
-                continue;
+                return null;
             }
 
-            for (final Method declaredMethod : aClass.getDeclaredMethods()) {
-                if (!declaredMethod.getName().equals(method.getName())) {
-                    continue;
-                }
-
-                if (declaredMethod.getParameterCount() != method.getParameterCount()) {
-                    continue;
-                }
-
+            for (final Method declaredMethod : TypeTokenMethodIndex.of(aClass).getMethods(method.getName(), method.getParameterCount())) {
                 final Class<?> returnType = declaredMethod.getReturnType();
                 if (!typeToken.isWithinBounds(returnType)) {
                     continue;
@@ -123,20 +139,14 @@ public class TypeTokenResolver {
 
                 return TypeToken.ofMethodReturnType(declaredMethod);
             }
-        }
 
-        return null;
+            return null;
+        });
     }
 
     private static TypeToken<?> tryResolveByHierarchy(TypeToken.TypeVar<?> against, TypeToken<?> typeToken, Class<?> objectClass) {
-        final List<Class<?>> classHierarchy = getClassHierarchy(objectClass, false);
-        for (final Class<?> hierarchy : classHierarchy) {
-            for (final Type genericInterface : hierarchy.getGenericInterfaces()) {
-                if (!(genericInterface instanceof ParameterizedType)) {
-                    continue;
-                }
-
-                final TypeToken.Parameterized<?> parameterizedInterface = (TypeToken.Parameterized<?>) TypeToken.ofType(genericInterface);
+        return TypeTokenHierarchy.of(objectClass).findClass(false, hierarchy -> {
+            for (final TypeToken.Parameterized<?> parameterizedInterface : TypeTokenHierarchy.of(hierarchy).getParameterizedInterfaces()) {
                 if (against.getGenericDeclaration() != parameterizedInterface.getDeclaredType()) {
                     continue;
                 }
@@ -154,9 +164,9 @@ public class TypeTokenResolver {
 
                 return generic;
             }
-        }
 
-        return null;
+            return null;
+        });
     }
 
     private static TypeToken<?> tryToResolveParameterizedType(TypeToken.Parameterized<?> typeToken, Class<?> objectClass) {
@@ -188,59 +198,51 @@ public class TypeTokenResolver {
     }
 
     public static TypeToken<?> resolveDeclaredTypes(TypeToken<?> type, TypeToken<?> parentType) {
-        if (!(type instanceof TypeToken.Generic<?> genericType)) {
-            return type;
+        final long start = TypeTokenMetrics.start();
+        final TypeTokenResolutionEvent event = TypeTokenResolutionEvent.start();
+        try {
+            return new Substitution(parentType).substitute(type);
+        } finally {
+            measured(start, event, "resolveDeclaredTypes", type, parentType.getDeclaredType());
         }
-
-        if (type instanceof TypeToken.TypeVar<?> typeVar) {
-            final TypeVariable<?>[] typeParameters = typeVar.getGenericDeclaration().getTypeParameters();
-            final Class<?> owner = ((Class<?>) typeVar.getGenericDeclaration());
-            if (owner != parentType.getDeclaredType()) {
-                final TypeToken<?> typeToken = resolveTypeVarFromUnknownParent(typeVar, parentType);
-                return typeToken;
-            }
-
-            final int index = typeVar.getIndex();
-            return ((TypeToken.Parameterized) parentType).getTypeArguments()[index];
-        }
-
-        final TypeToken<?>[] typeArguments = genericType.getGenerics();
-        final TypeToken<?>[] resolved = new TypeToken<?>[typeArguments.length];
-
-        for (int i = 0; i < typeArguments.length; i++) {
-            resolved[i] = resolveDeclaredTypes(typeArguments[i], parentType);
-        }
-
-        if (genericType instanceof TypeToken.Parameterized<?> parameterizedType) {
-            return parameterizedType.withParams(resolved);
-        }
-
-        return type;
     }
 
     /**
-     * 1) Collect all declared generics from all superclasses & interfaces
-     * 2) Resolve one by one, so our starting type var is the provided one, but if we resolve it and the value is another type token, we continue looking for the actual value
+     * Resolves the types of every field, method return type and method parameter declared by the class of the parent
+     * type and its supertypes. The type variable substitution is built once and shared by all members, each member type
+     * is resolved as by {@link #resolveDeclaredTypes(TypeToken, TypeToken)}. Members whose types aren't supported (generic
+     * arrays) are left out, as they are from the {@link TypeTokenMemberTable}.
      */
-    private static TypeToken<?> resolveTypeVarFromUnknownParent(TypeToken.TypeVar<?> provided, TypeToken<?> parentType) {
-        final List<TypeToken<?>> typeTokens = collectGenericHierarchy(parentType.getDeclaredType());
-        typeTokens.add(parentType);
-
-        TypeToken currentlyResolving = provided;
-
-        // We loop while we're at TypeVar
-        while (currentlyResolving instanceof TypeToken.TypeVar<?> typeVar) {
-            for (final TypeToken<?> typeToken : typeTokens) {
-                final Class<?> declaredType = typeToken.getDeclaredType();
-                if (typeVar.getGenericDeclaration() == declaredType) {
-                    currentlyResolving = ((TypeToken.Parameterized) typeToken).getTypeArguments()[typeVar.getIndex()];
-                    break;
-                }
-            }
+    public static TypeTokenResolvedMembers resolveMembers(TypeToken<?> parentType) {
+        final long start = TypeTokenMetrics.start();
+        final TypeTokenResolutionEvent event = TypeTokenResolutionEvent.start();
+        try {
+            return resolveMembers(parentType, new Substitution(parentType));
+        } finally {
+            measured(start, event, "resolveMembers", parentType, parentType.getDeclaredType());
         }
+    }
 
+    private static TypeTokenResolvedMembers resolveMembers(TypeToken<?> parentType, Substitution substitution) {
+        final Map<Field, TypeToken<?>> fieldTypes = new LinkedHashMap<>();
+        final Map<Method, TypeToken<?>> methodReturnTypes = new LinkedHashMap<>();
+        final Map<Method, TypeToken<?>[]> methodParameterTypes = new LinkedHashMap<>();
+
+        for (final Class<?> declaringClass : TypeTokenHierarchy.of(parentType.getDeclaredType()).getClasses()) {
+            final TypeTokenMemberTable table = TypeTokenMemberTable.of(declaringClass);
+            table.getFieldTypes().forEach((field, type) -> fieldTypes.put(field, substitution.substitute(type)));
+            table.getMethodReturnTypes().forEach((method, type) -> methodReturnTypes.put(method, substitution.substitute(type)));
+            table.getMethodParameterTypes().forEach((method, types) -> {
+                final TypeToken<?>[] parameterTypes = new TypeToken<?>[types.length];
+                for (int i = 0; i < parameterTypes.length; i++) {
+                    parameterTypes[i] = substitution.substitute(types[i]);
+                }
 
-        return currentlyResolving;
+                methodParameterTypes.put(method, parameterTypes);
+            });
+        }
+
+        return new TypeTokenResolvedMembers(parentType, fieldTypes, methodReturnTypes, methodParameterTypes);
     }
 
     /**
@@ -293,31 +295,7 @@ public class TypeTokenResolver {
     }
 
     protected static List<TypeToken<?>> collectGenericHierarchy(Class<?> clazz) {
-        final List<TypeToken<?>> result = new ArrayList<>();
-        final Queue<Type> queue = new LinkedList<>();
-        queue.add(clazz);
-
-        while (!queue.isEmpty()) {
-            final Type current = queue.poll();
-
-            final Class<?> lookup;
-            if (current instanceof ParameterizedType parameterizedType) {
-                lookup = (Class<?>) parameterizedType.getRawType();
-
-                result.add(TypeToken.ofType(parameterizedType));
-            } else {
-                lookup = (Class<?>) current;
-            }
-
-            final Type superclass = lookup.getGenericSuperclass();
-            if (superclass != Object.class) {
-                queue.add(superclass);
-            }
-
-            Collections.addAll(queue, lookup.getGenericInterfaces());
-        }
-
-        return result;
+        return new ArrayList<>(TypeTokenHierarchy.of(clazz).getGenericSupertypes());
     }
 
     private static TypeToken<?> tryResolveGenericSuper(TypeToken.TypeVar<?> against, TypeToken.Parameterized<?> declared) {
@@ -332,4 +310,99 @@ public class TypeTokenResolver {
 
         return possibleMatch;
     }
+
+    /**
+     * Cached result of a resolution, never referencing its source token so it doesn't keep its weak key reachable.
+     */
+    private static final class Resolution {
+        private static final Resolution UNCHANGED = new Resolution(null);
+
+        // Null if the token resolved to itself
+        @Nullable
+        private final TypeToken<?> resolved;
+
+        private Resolution(@Nullable TypeToken<?> resolved) {
+            this.resolved = resolved;
+        }
+    }
+
+    /**
+     * Type variable substitution of a parent type. The arguments of all parameterized supertypes of its class are
+     * collected once, a type variable is then resolved by following them until it's no longer a type variable.
+     */
+    private static final class Substitution {
+        private final TypeToken<?> parentType;
+        private final Map<GenericDeclaration, TypeToken<?>[]> arguments = new HashMap<>();
+        private final Map<TypeToken<?>, TypeToken<?>> substituted = new IdentityHashMap<>();
+
+        private Substitution(TypeToken<?> parentType) {
+            this.parentType = parentType;
+
+            // The first supertype declaring a variable wins, the parent type itself is looked at last
+            for (final TypeToken<?> supertype : TypeTokenHierarchy.of(parentType.getDeclaredType()).getGenericSupertypes()) {
+                this.arguments.putIfAbsent(supertype.getDeclaredType(), ((TypeToken.Parameterized<?>) supertype).getTypeArguments());
+            }
+
+            if (parentType instanceof TypeToken.Parameterized<?> parameterizedParent) {
+                this.arguments.putIfAbsent(parameterizedParent.getDeclaredType(), parameterizedParent.getTypeArguments());
+            }
+        }
+
+        private TypeToken<?> substitute(TypeToken<?> type) {
+            if (!(type instanceof TypeToken.Generic<?>)) {
+                return type;
+            }
+
+            TypeToken<?> substituted = this.substituted.get(type);
+            if (substituted == null) {
+                substituted = this.substituteGeneric((TypeToken.Generic<?>) type);
+                this.substituted.put(type, substituted);
+            }
+
+            return substituted;
+        }
+
+        private TypeToken<?> substituteGeneric(TypeToken.Generic<?> genericType) {
+            if (genericType instanceof TypeToken.TypeVar<?> typeVar) {
+                if (typeVar.getGenericDeclaration() == this.parentType.getDeclaredType() && this.parentType instanceof TypeToken.Parameterized<?> parameterizedParent) {
+                    return parameterizedParent.getTypeArguments()[typeVar.getIndex()];
+                }
+
+                return this.resolveTypeVar(typeVar);
+            }
+
+            final TypeToken<?>[] typeArguments = genericType.getGenerics();
+            final TypeToken<?>[] resolved = new TypeToken<?>[typeArguments.length];
+            boolean changed = false;
+
+            for (int i = 0; i < typeArguments.length; i++) {
+                resolved[i] = this.substitute(typeArguments[i]);
+                changed |= resolved[i] != typeArguments[i];
+            }
+
+            if (changed && genericType instanceof TypeToken.Parameterized<?> parameterizedType) {
+                return parameterizedType.withParams(resolved);
+            }
+
+            return genericType;
+        }
+
+        /**
+         * Follows the variable through the collected arguments, a variable that can't be resolved any further
+         * (e.g. declared by a method) is returned as is.
+         */
+        private TypeToken<?> resolveTypeVar(TypeToken.TypeVar<?> provided) {
+            TypeToken<?> currentlyResolving = provided;
+            while (currentlyResolving instanceof TypeToken.TypeVar<?> typeVar) {
+                final TypeToken<?>[] arguments = this.arguments.get(typeVar.getGenericDeclaration());
+                if (arguments == null || typeVar.getIndex() >= arguments.length || arguments[typeVar.getIndex()].equals(typeVar)) {
+                    return typeVar;
+                }
+
+                currentlyResolving = arguments[typeVar.getIndex()];
+            }
+
+            return currentlyResolving;
+        }
+    }
 }
@@ -1,11 +1,23 @@
 package org.spring4mc.utility.typetoken;
 
 import org.jetbrains.annotations.ApiStatus;
-
-import java.util.Arrays;
-import java.util.Set;
-import java.util.stream.Collectors;
-
+import org.springframework.core.annotation.AnnotationUtils;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.GenericDeclaration;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Renders type tokens into a caller supplied buffer.
+ * <p>
+ * Tokens are immutable and built bottom-up, with recursive type variables cut off as {@link TypeToken.UnresolvedTypeVar},
+ * so the token graph is acyclic and rendering needs no cycle tracking.
+ */
 @ApiStatus.Internal
 public class TypeTokenToString {
     public static String toString(TypeToken<?> token) {
@@ -14,44 +26,129 @@ public class TypeTokenToString {
 
     public static <T> String toString(TypeToken<?> token, boolean includeAnnotations) {
         final StringBuilder result = new StringBuilder();
-        visitUnknown(result, token, new java.util.HashSet<>(), includeAnnotations);
+        visitUnknown(result, token, includeAnnotations ? Style.ANNOTATED : Style.SIMPLE);
         return result.toString();
     }
 
-    private static void visitUnknown(StringBuilder result, TypeToken<?> unknown, Set<TypeToken<?>> processing, boolean includeAnnotations) {
-        if (unknown.getDeclaredAnnotations().length > 0 && includeAnnotations) {
-            result.append(Arrays.stream(unknown.getDeclaredAnnotations())
-                    .map(annotation -> "@" + annotation.annotationType().getSimpleName())
-                    .collect(Collectors.joining(" ")));
-            result.append(" ");
+    /**
+     * Renders the token with fully qualified names, all annotations including their attributes and the declarations
+     * of type variables, so structurally different tokens never render the same.
+     */
+    public static String toCanonicalString(TypeToken<?> token) {
+        final StringBuilder result = new StringBuilder();
+        visitUnknown(result, token, Style.CANONICAL);
+        return result.toString();
+    }
+
+    /**
+     * Appends the token as rendered by {@link TypeToken#toString(boolean)}. The rendering of tokens of this package
+     * is memoized, others are rendered directly into the buffer.
+     */
+    public static void appendTo(StringBuilder result, TypeToken<?> token, boolean includeAnnotations) {
+        if (token instanceof TypeTokenImpl<?>) {
+            result.append(token.toString(includeAnnotations));
+        } else {
+            visitUnknown(result, token, includeAnnotations ? Style.ANNOTATED : Style.SIMPLE);
+        }
+    }
+
+    /**
+     * Appends the token as rendered by {@link TypeToken#toString(boolean)}.
+     */
+    public static void appendTo(Appendable result, TypeToken<?> token, boolean includeAnnotations) throws IOException {
+        result.append(token.toString(includeAnnotations));
+    }
+
+    private static void visitUnknown(StringBuilder result, TypeToken<?> unknown, Style style) {
+        if (style != Style.SIMPLE) {
+            appendAnnotations(result, unknown, style);
         }
 
         if (unknown instanceof TypeToken.Declared) {
-            visitDeclared(result, (TypeToken.Declared<?>) unknown);
+            visitDeclared(result, (TypeToken.Declared<?>) unknown, style);
         }
 
         if (unknown instanceof TypeToken.Wildcard) {
-            visitWildcard(result, (TypeToken.Wildcard<?>) unknown, processing, includeAnnotations);
+            visitWildcard(result, (TypeToken.Wildcard<?>) unknown, style);
         }
 
         if (unknown instanceof TypeToken.Parameterized) {
-            visitParameterized(result, (TypeToken.Parameterized<?>) unknown, processing, includeAnnotations);
+            visitParameterized(result, (TypeToken.Parameterized<?>) unknown, style);
         }
 
         if (unknown instanceof TypeToken.UnresolvedTypeVar) {
-            result.append(((TypeToken.UnresolvedTypeVar) unknown).getName());
+            appendTypeVarName(result, (TypeToken.UnresolvedTypeVar<?>) unknown, style);
         } else {
             if (unknown instanceof TypeToken.ResolvedTypeVar) {
-                visitNamed(result, (TypeToken.ResolvedTypeVar<?>) unknown, processing, includeAnnotations);
+                visitNamed(result, (TypeToken.ResolvedTypeVar<?>) unknown, style);
+            }
+        }
+    }
+
+    private static void appendAnnotations(StringBuilder result, TypeToken<?> unknown, Style style) {
+        // Tokens of this package expose their shared array, others are asked once for a copy
+        final Annotation[] annotations = unknown instanceof TypeTokenImpl<?> ? ((TypeTokenImpl<?>) unknown).annotations : unknown.getDeclaredAnnotations();
+        for (final Annotation annotation : annotations) {
+            if (style == Style.CANONICAL) {
+                appendCanonicalAnnotation(result, annotation);
+            } else {
+                result.append('@').append(annotation.annotationType().getSimpleName());
+            }
+
+            result.append(' ');
+        }
+    }
+
+    /**
+     * Renders the annotation independent of its implementation, with the attributes sorted by name.
+     */
+    private static void appendCanonicalAnnotation(StringBuilder result, Annotation annotation) {
+        result.append('@').append(annotation.annotationType().getTypeName()).append('(');
+        final Map<String, Object> attributes = new TreeMap<>(AnnotationUtils.getAnnotationAttributes(annotation, false, false));
+        boolean first = true;
+        for (final Map.Entry<String, Object> attribute : attributes.entrySet()) {
+            if (!first) {
+                result.append(", ");
+            }
+
+            first = false;
+            result.append(attribute.getKey()).append('=');
+            appendCanonicalValue(result, attribute.getValue());
+        }
+
+        result.append(')');
+    }
+
+    private static void appendCanonicalValue(StringBuilder result, Object value) {
+        if (value instanceof String) {
+            result.append('"').append(((String) value).replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+        } else if (value instanceof Class<?>) {
+            result.append(((Class<?>) value).getTypeName()).append(".class");
+        } else if (value instanceof Enum<?>) {
+            result.append(((Enum<?>) value).name());
+        } else if (value instanceof Annotation) {
+            appendCanonicalAnnotation(result, (Annotation) value);
+        } else if (value.getClass().isArray()) {
+            result.append('{');
+            for (int i = 0; i < Array.getLength(value); i++) {
+                if (i > 0) {
+                    result.append(", ");
+                }
+
+                appendCanonicalValue(result, Array.get(value, i));
             }
+
+            result.append('}');
+        } else {
+            result.append(value);
         }
     }
 
-    private static void visitDeclared(StringBuilder result, TypeToken.Declared<?> declared) {
-        result.append(declared.getDeclaredType().getSimpleName());
+    private static void visitDeclared(StringBuilder result, TypeToken.Declared<?> declared, Style style) {
+        appendClass(result, declared.getDeclaredType(), style);
     }
 
-    private static void visitWildcard(StringBuilder result, TypeToken.Wildcard<?> wildcard, Set<TypeToken<?>> processing, boolean includeAnnotations) {
+    private static void visitWildcard(StringBuilder result, TypeToken.Wildcard<?> wildcard, Style style) {
         result.append("?");
         if (wildcard.getKind() == TypeToken.Wildcard.Kind.EXTENDS) {
             result.append(" extends ");
@@ -59,45 +156,91 @@ public class TypeTokenToString {
             result.append(" super ");
         }
 
-        processing.add(wildcard);
-        appendBounds(result, wildcard.getGenerics(), processing, includeAnnotations);
-        processing.remove(wildcard);
+        appendBounds(result, wildcard.getGenerics(), style);
     }
 
-    private static void visitParameterized(StringBuilder result, TypeToken.Parameterized<?> parameterized, Set<TypeToken<?>> processing, boolean includeAnnotations) {
-        result.append(parameterized.getDeclaredType().getSimpleName());
+    private static void visitParameterized(StringBuilder result, TypeToken.Parameterized<?> parameterized, Style style) {
+        if (style == Style.CANONICAL && parameterized instanceof TypeTokenImpl.ParameterizedImpl<?> impl && impl.getOwner() != null) {
+            // The owner may carry type arguments of its own, e.g. Outer<String>.Inner
+            visitUnknown(result, impl.getOwner(), style);
+            result.append('$').append(parameterized.getDeclaredType().getSimpleName());
+        } else {
+            appendClass(result, parameterized.getDeclaredType(), style);
+        }
+
         result.append("<");
-        appendArguments(parameterized.getTypeArguments(), processing, result, includeAnnotations);
+        appendArguments(result, parameterized.getTypeArguments(), style);
         result.append(">");
     }
 
-    private static void visitNamed(StringBuilder result, TypeToken.ResolvedTypeVar<?> named, Set<TypeToken<?>> processing, boolean includeAnnotations) {
-        result.append(named.getName());
-        processing.add(named);
+    private static void visitNamed(StringBuilder result, TypeToken.ResolvedTypeVar<?> named, Style style) {
+        appendTypeVarName(result, named, style);
         if (named.getGenerics().length > 0) {
             result.append(" extends ");
-            appendBounds(result, named.getGenerics(), processing, includeAnnotations);
+            appendBounds(result, named.getGenerics(), style);
+        }
+    }
+
+    private static void appendClass(StringBuilder result, Class<?> clazz, Style style) {
+        result.append(style == Style.CANONICAL ? clazz.getTypeName() : clazz.getSimpleName());
+    }
+
+    private static void appendTypeVarName(StringBuilder result, TypeToken.TypeVar<?> typeVar, Style style) {
+        if (style == Style.CANONICAL) {
+            appendDeclaration(result, typeVar.getGenericDeclaration());
+            result.append("::");
         }
 
-        processing.remove(named);
+        result.append(typeVar.getName());
     }
 
-    private static void appendBounds(StringBuilder result, TypeToken<?>[] bounds, Set<TypeToken<?>> processing, boolean includeAnnotations) {
+    private static void appendDeclaration(StringBuilder result, GenericDeclaration declaration) {
+        if (declaration instanceof Class<?> clazz) {
+            result.append(clazz.getTypeName());
+        } else if (declaration instanceof Method method) {
+            result.append(method.getDeclaringClass().getTypeName()).append('#').append(method.getName());
+            appendParameterTypes(result, method.getParameterTypes());
+        } else if (declaration instanceof Constructor<?> constructor) {
+            result.append(constructor.getDeclaringClass().getTypeName()).append("#<init>");
+            appendParameterTypes(result, constructor.getParameterTypes());
+        } else {
+            result.append(declaration);
+        }
+    }
+
+    private static void appendParameterTypes(StringBuilder result, Class<?>[] parameterTypes) {
+        result.append('(');
+        for (int i = 0; i < parameterTypes.length; i++) {
+            result.append(parameterTypes[i].getTypeName());
+            if (i < parameterTypes.length - 1) {
+                result.append(", ");
+            }
+        }
+
+        result.append(')');
+    }
+
+    private static void appendBounds(StringBuilder result, TypeToken<?>[] bounds, Style style) {
         for (int i = 0; i < bounds.length; i++) {
-            final TypeToken<?> bound = bounds[i];
-            visitUnknown(result, bound, processing, includeAnnotations);
+            visitUnknown(result, bounds[i], style);
             if (i < bounds.length - 1) {
                 result.append(" & ");
             }
         }
     }
 
-    private static void appendArguments(TypeToken<?>[] args, Set<TypeToken<?>> processing, StringBuilder result, boolean includeAnnotations) {
+    private static void appendArguments(StringBuilder result, TypeToken<?>[] args, Style style) {
         for (int i = 0; i < args.length; i++) {
-            visitUnknown(result, args[i], processing, includeAnnotations);
+            visitUnknown(result, args[i], style);
             if (i < args.length - 1) {
                 result.append(", ");
             }
         }
     }
+
+    private enum Style {
+        SIMPLE,
+        ANNOTATED,
+        CANONICAL
+    }
 }
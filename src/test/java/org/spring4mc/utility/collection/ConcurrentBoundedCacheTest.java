@@ -0,0 +1,85 @@
+package org.spring4mc.utility.collection;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConcurrentBoundedCacheTest {
+    @Test
+    void staysWithinMaximum() {
+        final ConcurrentBoundedCache<Integer, Integer> cache = new ConcurrentBoundedCache<>(100);
+        for (int i = 0; i < 10_000; i++) {
+            cache.put(i, i);
+            assertTrue(cache.size() <= 100);
+        }
+
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+        assertNull(cache.get(9_999));
+    }
+
+    @Test
+    void keepsFrequentlyUsedEntriesDuringScan() {
+        final ConcurrentBoundedCache<Integer, Integer> cache = new ConcurrentBoundedCache<>(1_000);
+        for (int round = 0; round < 20; round++) {
+            for (int i = 0; i < 500; i++) {
+                if (cache.get(i) == null) {
+                    cache.put(i, i);
+                }
+            }
+        }
+
+        // Far more one-off keys than the sketch initially had room for, it grows with the entries
+        for (int i = 1_000; i < 100_000; i++) {
+            cache.put(i, i);
+        }
+
+        cache.cleanUp();
+        int retained = 0;
+        for (int i = 0; i < 500; i++) {
+            if (cache.get(i) != null) {
+                retained++;
+            }
+        }
+
+        assertTrue(retained >= 450, "Retained " + retained + " of 500 frequently used entries");
+    }
+
+    @Test
+    void boundsWeight() {
+        final ConcurrentBoundedCache<Integer, String> cache = new ConcurrentBoundedCache<>(1_000, (key, value) -> value.length(), false);
+        for (int i = 0; i < 1_000; i++) {
+            cache.put(i, "x".repeat(i % 20));
+            assertTrue(cache.weightedSize() <= 1_000);
+        }
+    }
+
+    @Test
+    void comparesWeakIdentityKeysByIdentity() throws InterruptedException {
+        final ConcurrentBoundedCache<String, Integer> cache = ConcurrentBoundedCache.withWeakIdentityKeys(100);
+        final String first = new String("key");
+        final String second = new String("key");
+
+        cache.put(first, 1);
+        cache.put(second, 2);
+        assertEquals(1, cache.get(first));
+        assertEquals(2, cache.get(second));
+        assertNull(cache.get("key"));
+
+        this.putCollectable(cache);
+        for (int i = 0; i < 50 && cache.size() > 2; i++) {
+            System.gc();
+            Thread.sleep(10);
+            cache.cleanUp();
+        }
+
+        assertEquals(2, cache.size());
+    }
+
+    private void putCollectable(ConcurrentBoundedCache<String, Integer> cache) {
+        cache.put(new String("key"), 3);
+        assertEquals(3, cache.size());
+    }
+}
@@ -0,0 +1,142 @@
+package org.spring4mc.utility.collection;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConcurrentIntObjectMapTest {
+    @Test
+    void removesAcrossWraparound() {
+        final ConcurrentIntObjectMap<String> map = new ConcurrentIntObjectMap<>(16, 1);
+        final int mask = IntObjectMap.tableSize(16, 0.75f) - 1;
+        final int[] wrapping = IntObjectMapTest.keysAt(mask, mask, 4);
+        for (final int key : wrapping) {
+            map.put(key, "wrapping-" + key);
+        }
+
+        assertEquals("wrapping-" + wrapping[0], map.remove(wrapping[0]));
+        assertNull(map.get(wrapping[0]));
+        for (int i = 1; i < wrapping.length; i++) {
+            assertEquals("wrapping-" + wrapping[i], map.get(wrapping[i]));
+        }
+
+        assertTrue(map.removeIf((key, value) -> key == wrapping[2]));
+        assertNull(map.get(wrapping[2]));
+        assertEquals("wrapping-" + wrapping[1], map.get(wrapping[1]));
+        assertEquals("wrapping-" + wrapping[3], map.get(wrapping[3]));
+        assertEquals(2, map.size());
+    }
+
+    @Test
+    void readsStayConsistentWhileSegmentsResize() throws Exception {
+        // A single small segment, so nearly every optimistic read races with a write or resize and falls back
+        final ConcurrentIntObjectMap<Integer> map = new ConcurrentIntObjectMap<>(2, 1);
+        for (int key = 0; key < 100; key++) {
+            map.put(key, key);
+        }
+
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<?>> readers = new ArrayList<>();
+            for (int thread = 0; thread < 3; thread++) {
+                readers.add(executor.submit(() -> {
+                    while (running.get()) {
+                        for (int key = 0; key < 100; key++) {
+                            assertEquals(key, map.get(key));
+                        }
+                    }
+
+                    return null;
+                }));
+            }
+
+            final Future<?> writer = executor.submit(() -> {
+                for (int round = 0; round < 20; round++) {
+                    for (int key = 1_000; key < 5_000; key++) {
+                        map.put(key, key);
+                    }
+
+                    for (int key = 1_000; key < 5_000; key++) {
+                        assertEquals(key, map.remove(key));
+                    }
+                }
+
+                return null;
+            });
+
+            writer.get(60, TimeUnit.SECONDS);
+            running.set(false);
+            for (final Future<?> reader : readers) {
+                reader.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            running.set(false);
+            executor.shutdownNow();
+        }
+
+        assertEquals(100, map.size());
+    }
+
+    @Test
+    void concurrentPutRemoveGet() throws Exception {
+        final ConcurrentIntObjectMap<Integer> map = new ConcurrentIntObjectMap<>(16, 4);
+        final int threads = 8;
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final CountDownLatch start = new CountDownLatch(1);
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < threads; thread++) {
+                final int from = thread * 10_000;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int round = 0; round < 20; round++) {
+                        for (int key = from; key < from + 1_000; key++) {
+                            assertNull(map.put(key, key));
+                            assertEquals(key, map.get(key));
+                        }
+
+                        for (int key = from; key < from + 1_000; key += 2) {
+                            assertEquals(key, map.remove(key));
+                            assertNull(map.get(key));
+                        }
+
+                        map.removeIf((key, value) -> key >= from && key < from + 1_000);
+                    }
+
+                    for (int key = from; key < from + 100; key++) {
+                        map.put(key, key);
+                    }
+
+                    return null;
+                }));
+            }
+
+            start.countDown();
+            for (final Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        final Map<Integer, Integer> entries = new HashMap<>();
+        map.forEach(entries::put);
+        assertEquals(threads * 100, entries.size());
+        assertEquals(threads * 100, map.size());
+        entries.forEach((key, value) -> assertEquals(key, value));
+    }
+}
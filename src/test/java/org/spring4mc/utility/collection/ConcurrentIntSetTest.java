@@ -0,0 +1,69 @@
+package org.spring4mc.utility.collection;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConcurrentIntSetTest {
+    @Test
+    void concurrentAddRemoveContains() throws Exception {
+        final ConcurrentIntSet set = new ConcurrentIntSet(16, 4);
+        final int threads = 8;
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final CountDownLatch start = new CountDownLatch(1);
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < threads; thread++) {
+                // The first range includes zero, which the set tracks outside of its tables
+                final int from = thread * 10_000;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int round = 0; round < 20; round++) {
+                        for (int key = from; key < from + 1_000; key++) {
+                            assertTrue(set.add(key));
+                            assertTrue(set.contains(key));
+                        }
+
+                        for (int key = from; key < from + 1_000; key += 2) {
+                            assertTrue(set.remove(key));
+                            assertFalse(set.contains(key));
+                        }
+
+                        set.removeIf(key -> key >= from && key < from + 1_000);
+                        assertFalse(set.contains(from + 1));
+                    }
+
+                    for (int key = from; key < from + 100; key++) {
+                        set.add(key);
+                    }
+
+                    return null;
+                }));
+            }
+
+            start.countDown();
+            for (final Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(threads * 100, set.size());
+        for (int thread = 0; thread < threads; thread++) {
+            for (int key = thread * 10_000; key < thread * 10_000 + 100; key++) {
+                assertTrue(set.contains(key));
+            }
+        }
+    }
+}
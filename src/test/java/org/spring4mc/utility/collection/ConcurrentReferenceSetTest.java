@@ -0,0 +1,170 @@
+package org.spring4mc.utility.collection;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.util.ConcurrentReferenceHashMap;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConcurrentReferenceSetTest {
+    @Test
+    void addsAndRemovesElements() {
+        final ConcurrentReferenceSet<String> set = new ConcurrentReferenceSet<>(ConcurrentReferenceHashMap.ReferenceType.SOFT);
+        final List<String> elements = elements(100);
+        for (final String element : elements) {
+            assertTrue(set.add(element));
+            assertFalse(set.add(element));
+        }
+
+        assertEquals(100, set.size());
+        assertTrue(set.containsAll(elements));
+        assertTrue(set.contains(new String(elements.get(0))));
+
+        assertTrue(set.remove(new String(elements.get(0))));
+        assertFalse(set.remove(elements.get(0)));
+        assertFalse(set.contains(elements.get(0)));
+        assertEquals(99, set.size());
+    }
+
+    @Test
+    void iteratorRemovesElements() {
+        final ConcurrentReferenceSet<String> set = new ConcurrentReferenceSet<>(4, 1);
+        final List<String> elements = elements(50);
+        set.addAll(elements);
+
+        for (final Iterator<String> iterator = set.iterator(); iterator.hasNext(); ) {
+            if (iterator.next().hashCode() % 2 == 0) {
+                iterator.remove();
+            }
+        }
+
+        for (final String element : elements) {
+            assertEquals(element.hashCode() % 2 != 0, set.contains(element));
+        }
+    }
+
+    @Test
+    void removeIfRemovesElementsCopiedByResize() {
+        final ConcurrentReferenceSet<String> set = new ConcurrentReferenceSet<>(16, 1);
+        final List<String> removed = elements(8);
+        final List<String> added = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            added.add("added-" + i);
+        }
+
+        set.addAll(removed);
+        final AtomicBoolean resized = new AtomicBoolean();
+        assertTrue(set.removeIf(element -> {
+            // The single segment resizes while the old table is still being traversed
+            if (resized.compareAndSet(false, true)) {
+                set.addAll(added);
+            }
+
+            return removed.contains(element);
+        }));
+
+        for (final String element : removed) {
+            assertFalse(set.contains(element), element);
+        }
+
+        assertTrue(set.containsAll(added));
+        assertEquals(added.size(), set.size());
+    }
+
+    @Test
+    void concurrentAddRemoveContains() throws Exception {
+        final ConcurrentReferenceSet<String> set = new ConcurrentReferenceSet<>(16, 4);
+        final int threads = 8;
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final CountDownLatch start = new CountDownLatch(1);
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < threads; thread++) {
+                final List<String> elements = elements(thread * 1000, 500);
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int round = 0; round < 20; round++) {
+                        for (final String element : elements) {
+                            assertTrue(set.add(element));
+                            assertTrue(set.contains(element));
+                        }
+
+                        for (final String element : elements) {
+                            assertTrue(set.remove(element));
+                            assertFalse(set.contains(element));
+                        }
+                    }
+
+                    set.addAll(elements);
+                    return null;
+                }));
+            }
+
+            start.countDown();
+            for (final Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+
+            assertEquals(threads * 500, set.size());
+            for (int thread = 0; thread < threads; thread++) {
+                assertTrue(set.containsAll(elements(thread * 1000, 500)));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void evictionRunsOnlyForCollectedElements() throws InterruptedException {
+        final ConcurrentIdentityReferenceSet<Object> set = new ConcurrentIdentityReferenceSet<>(ConcurrentReferenceHashMap.ReferenceType.WEAK);
+        final CountDownLatch collected = new CountDownLatch(1);
+        final AtomicBoolean removedEvicted = new AtomicBoolean();
+
+        Object removed = new Object();
+        assertTrue(set.add(removed, () -> removedEvicted.set(true)));
+        assertTrue(set.remove(removed));
+        removed = null;
+
+        set.add(new Object(), collected::countDown);
+        for (int i = 0; i < 50 && collected.getCount() > 0; i++) {
+            System.gc();
+            collected.await(100, TimeUnit.MILLISECONDS);
+        }
+
+        assertEquals(0, collected.getCount());
+        assertFalse(removedEvicted.get());
+
+        // The eviction action can run before the cleared node is enqueued for purging
+        set.purge();
+        for (int i = 0; i < 50 && !set.isEmpty(); i++) {
+            Thread.sleep(10);
+            set.purge();
+        }
+
+        assertTrue(set.isEmpty());
+    }
+
+    private static List<String> elements(int count) {
+        return elements(0, count);
+    }
+
+    private static List<String> elements(int from, int count) {
+        final List<String> elements = new ArrayList<>(count);
+        for (int i = from; i < from + count; i++) {
+            elements.add("element-" + i);
+        }
+
+        return elements;
+    }
+}
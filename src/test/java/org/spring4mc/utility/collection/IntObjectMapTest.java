@@ -0,0 +1,107 @@
+package org.spring4mc.utility.collection;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IntObjectMapTest {
+    @Test
+    void removesAcrossWraparound() {
+        final IntObjectMap<String> map = new IntObjectMap<>(16);
+        final int mask = IntObjectMap.tableSize(16, 0.75f) - 1;
+
+        // Four keys probing from the last slot wrap around to the first slots, a fifth key belongs into the first slot
+        final int[] wrapping = keysAt(mask, mask, 4);
+        final int first = keysAt(0, mask, 1)[0];
+        for (final int key : wrapping) {
+            map.put(key, "wrapping-" + key);
+        }
+
+        map.put(first, "first");
+
+        assertEquals("wrapping-" + wrapping[0], map.remove(wrapping[0]));
+        assertEquals("wrapping-" + wrapping[2], map.remove(wrapping[2]));
+        assertNull(map.get(wrapping[0]));
+        assertEquals("wrapping-" + wrapping[1], map.get(wrapping[1]));
+        assertEquals("wrapping-" + wrapping[3], map.get(wrapping[3]));
+        assertEquals("first", map.get(first));
+        assertEquals(3, map.size());
+    }
+
+    @Test
+    void removeIfTestsEveryEntryOnceAcrossWraparound() {
+        final IntObjectMap<String> map = new IntObjectMap<>(16);
+        final int mask = IntObjectMap.tableSize(16, 0.75f) - 1;
+        final int[] wrapping = keysAt(mask, mask, 4);
+        final int[] first = keysAt(0, mask, 2);
+        for (final int key : wrapping) {
+            map.put(key, "wrapping");
+        }
+
+        for (final int key : first) {
+            map.put(key, "first");
+        }
+
+        final Map<Integer, Integer> tested = new HashMap<>();
+        assertTrue(map.removeIf((key, value) -> {
+            tested.merge(key, 1, Integer::sum);
+            return value.equals("wrapping");
+        }));
+
+        assertEquals(6, tested.size());
+        tested.values().forEach(count -> assertEquals(1, count));
+        assertEquals(2, map.size());
+        for (final int key : first) {
+            assertEquals("first", map.get(key));
+        }
+    }
+
+    @Test
+    void behavesLikeHashMap() {
+        final IntObjectMap<Integer> map = new IntObjectMap<>(2);
+        final Map<Integer, Integer> expected = new HashMap<>();
+        final Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            final int key = random.nextInt(200) - 100;
+            switch (random.nextInt(5)) {
+                case 0, 1 -> assertEquals(expected.put(key, i), map.put(key, i));
+                case 2 -> assertEquals(expected.putIfAbsent(key, i), map.putIfAbsent(key, i));
+                case 3 -> assertEquals(expected.remove(key), map.remove(key));
+                default -> assertEquals(expected.get(key), map.get(key));
+            }
+
+            if (i % 1_000 == 0) {
+                final int divisor = random.nextInt(5) + 2;
+                expected.keySet().removeIf(candidate -> candidate % divisor == 0);
+                map.removeIf((candidate, value) -> candidate % divisor == 0);
+            }
+
+            assertEquals(expected.size(), map.size());
+        }
+
+        final Map<Integer, Integer> actual = new HashMap<>();
+        map.forEach(actual::put);
+        assertEquals(expected, actual);
+    }
+
+    /**
+     * Returns keys whose probe starts at the given slot of a table with the given mask.
+     */
+    static int[] keysAt(int slot, int mask, int count) {
+        final int[] keys = new int[count];
+        int found = 0;
+        for (int key = 1; found < count; key++) {
+            if ((IntObjectMap.hash(key) & mask) == slot) {
+                keys[found++] = key;
+            }
+        }
+
+        return keys;
+    }
+}
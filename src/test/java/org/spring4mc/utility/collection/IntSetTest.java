@@ -0,0 +1,65 @@
+package org.spring4mc.utility.collection;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IntSetTest {
+    @Test
+    void removesAcrossWraparound() {
+        final IntSet set = new IntSet(16);
+        final int mask = IntObjectMap.tableSize(16, 0.75f) - 1;
+        final int[] wrapping = IntObjectMapTest.keysAt(mask, mask, 4);
+        final int first = IntObjectMapTest.keysAt(0, mask, 1)[0];
+        for (final int key : wrapping) {
+            set.add(key);
+        }
+
+        set.add(first);
+        set.add(0);
+
+        assertTrue(set.remove(wrapping[0]));
+        assertFalse(set.contains(wrapping[0]));
+        assertTrue(set.contains(wrapping[1]));
+        assertTrue(set.contains(wrapping[2]));
+        assertTrue(set.contains(wrapping[3]));
+        assertTrue(set.contains(first));
+        assertTrue(set.contains(0));
+        assertEquals(5, set.size());
+    }
+
+    @Test
+    void behavesLikeHashSet() {
+        final IntSet set = new IntSet(2);
+        final Set<Integer> expected = new HashSet<>();
+        final Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            final int key = random.nextInt(200) - 100;
+            switch (random.nextInt(3)) {
+                case 0 -> assertEquals(expected.add(key), set.add(key));
+                case 1 -> assertEquals(expected.remove(key), set.remove(key));
+                default -> assertEquals(expected.contains(key), set.contains(key));
+            }
+
+            if (i % 1_000 == 0) {
+                final int divisor = random.nextInt(5) + 2;
+                assertEquals(expected.removeIf(candidate -> candidate % divisor == 0), set.removeIf(candidate -> candidate % divisor == 0));
+            }
+
+            assertEquals(expected.size(), set.size());
+        }
+
+        final Set<Integer> actual = new HashSet<>();
+        for (final int key : set.toArray()) {
+            assertTrue(actual.add(key));
+        }
+
+        assertEquals(expected, actual);
+    }
+}
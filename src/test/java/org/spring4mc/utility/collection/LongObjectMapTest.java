@@ -0,0 +1,68 @@
+package org.spring4mc.utility.collection;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class LongObjectMapTest {
+    @Test
+    void removesAcrossWraparound() {
+        final LongObjectMap<String> map = new LongObjectMap<>(16);
+        final int mask = IntObjectMap.tableSize(16, 0.75f) - 1;
+        final long[] wrapping = keysAt(mask, mask, 4);
+        for (final long key : wrapping) {
+            map.put(key, "wrapping-" + key);
+        }
+
+        assertEquals("wrapping-" + wrapping[1], map.remove(wrapping[1]));
+        assertNull(map.get(wrapping[1]));
+        assertEquals("wrapping-" + wrapping[0], map.get(wrapping[0]));
+        assertEquals("wrapping-" + wrapping[2], map.get(wrapping[2]));
+        assertEquals("wrapping-" + wrapping[3], map.get(wrapping[3]));
+        assertEquals(3, map.size());
+    }
+
+    @Test
+    void behavesLikeHashMap() {
+        final LongObjectMap<Integer> map = new LongObjectMap<>(2);
+        final Map<Long, Integer> expected = new HashMap<>();
+        final Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            // Keys differing only in their upper half must not collide
+            final long key = ((long) (random.nextInt(20) - 10) << 32) | random.nextInt(10);
+            switch (random.nextInt(4)) {
+                case 0, 1 -> assertEquals(expected.put(key, i), map.put(key, i));
+                case 2 -> assertEquals(expected.remove(key), map.remove(key));
+                default -> assertEquals(expected.get(key), map.get(key));
+            }
+
+            if (i % 1_000 == 0) {
+                expected.keySet().removeIf(candidate -> candidate % 3 == 0);
+                map.removeIf((candidate, value) -> candidate % 3 == 0);
+            }
+
+            assertEquals(expected.size(), map.size());
+        }
+
+        final Map<Long, Integer> actual = new HashMap<>();
+        map.forEach(actual::put);
+        assertEquals(expected, actual);
+    }
+
+    private static long[] keysAt(int slot, int mask, int count) {
+        final long[] keys = new long[count];
+        int found = 0;
+        for (long key = 1; found < count; key++) {
+            if ((LongObjectMap.hash(key) & mask) == slot) {
+                keys[found++] = key;
+            }
+        }
+
+        return keys;
+    }
+}
@@ -0,0 +1,40 @@
+package org.spring4mc.utility.collection;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LongSetTest {
+    @Test
+    void behavesLikeHashSet() {
+        final LongSet set = new LongSet(2);
+        final Set<Long> expected = new HashSet<>();
+        final Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            final long key = ((long) (random.nextInt(20) - 10) << 32) | random.nextInt(10);
+            switch (random.nextInt(3)) {
+                case 0 -> assertEquals(expected.add(key), set.add(key));
+                case 1 -> assertEquals(expected.remove(key), set.remove(key));
+                default -> assertEquals(expected.contains(key), set.contains(key));
+            }
+
+            if (i % 1_000 == 0) {
+                assertEquals(expected.removeIf(candidate -> candidate % 3 == 0), set.removeIf(candidate -> candidate % 3 == 0));
+            }
+
+            assertEquals(expected.size(), set.size());
+        }
+
+        final Set<Long> actual = new HashSet<>();
+        for (final long key : set.toArray()) {
+            assertTrue(actual.add(key));
+        }
+
+        assertEquals(expected, actual);
+    }
+}
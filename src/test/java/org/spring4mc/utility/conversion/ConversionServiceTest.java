@@ -0,0 +1,243 @@
+package org.spring4mc.utility.conversion;
+
+import org.junit.jupiter.api.Test;
+import org.spring4mc.utility.primitive.PrimitiveUtility;
+import org.spring4mc.utility.typetoken.TypeToken;
+
+import java.io.Serializable;
+import java.lang.invoke.MethodType;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConversionServiceTest {
+    private static final TypeToken<ArrayList<String>> STRING_ARRAY_LIST = TypeToken.capture(new TypeToken.Capturing<ArrayList<String>>() {
+    });
+    private static final TypeToken<ArrayList<Integer>> INTEGER_ARRAY_LIST = TypeToken.capture(new TypeToken.Capturing<ArrayList<Integer>>() {
+    });
+    private static final TypeToken<List<String>> STRING_LIST = TypeToken.capture(new TypeToken.Capturing<List<String>>() {
+    });
+    private static final TypeToken<Optional<Integer>> OPTIONAL_INTEGER = TypeToken.capture(new TypeToken.Capturing<Optional<Integer>>() {
+    });
+    private static final TypeToken<Optional<String>> OPTIONAL_STRING = TypeToken.capture(new TypeToken.Capturing<Optional<String>>() {
+    });
+
+    private static final Class<?>[] NUMERIC = {byte.class, short.class, char.class, int.class, long.class, float.class, double.class};
+
+    // Primitive widening conversions of JLS 5.1.2
+    private static final Map<Class<?>, Set<Class<?>>> WIDENING = Map.of(
+            byte.class, Set.of(short.class, int.class, long.class, float.class, double.class),
+            short.class, Set.of(int.class, long.class, float.class, double.class),
+            char.class, Set.of(int.class, long.class, float.class, double.class),
+            int.class, Set.of(long.class, float.class, double.class),
+            long.class, Set.of(float.class, double.class),
+            float.class, Set.of(double.class),
+            double.class, Set.of());
+
+    @Test
+    void assignsSourcesResolvedToTheTargetArguments() {
+        final ConversionService service = new ConversionService();
+
+        assertTrue(service.canConvert(STRING_ARRAY_LIST, STRING_LIST));
+        assertTrue(service.canConvert(STRING_ARRAY_LIST, TypeToken.capture(new TypeToken.Capturing<Collection<? extends CharSequence>>() {
+        })));
+        assertTrue(service.canConvert(STRING_ARRAY_LIST, TypeToken.capture(new TypeToken.Capturing<List<?>>() {
+        })));
+        assertTrue(service.canConvert(TypeToken.capture(new TypeToken.Capturing<List<Object>>() {
+        }), TypeToken.capture(new TypeToken.Capturing<List<? super String>>() {
+        })));
+    }
+
+    @Test
+    void rejectsSourcesWithOtherArguments() {
+        final ConversionService service = new ConversionService();
+
+        assertFalse(service.canConvert(INTEGER_ARRAY_LIST, STRING_LIST));
+        assertFalse(service.canConvert(STRING_ARRAY_LIST, TypeToken.capture(new TypeToken.Capturing<List<CharSequence>>() {
+        })));
+        assertFalse(service.canConvert(STRING_ARRAY_LIST, TypeToken.capture(new TypeToken.Capturing<List<? super Integer>>() {
+        })));
+    }
+
+    @Test
+    void assignsRawSourcesUnchecked() {
+        final ConversionService service = new ConversionService();
+        final List<String> value = new ArrayList<>(List.of("a"));
+
+        assertSame(value, service.convert(value, STRING_LIST));
+        assertTrue(service.canConvert(TypeToken.ofClass(ArrayList.class), STRING_LIST));
+    }
+
+    @Test
+    void discardsCachedConvertersOnRegistration() {
+        final ConversionService service = new ConversionService();
+        assertFalse(service.canConvert(TypeToken.ofClass(Integer.class), TypeToken.ofClass(Thread.State.class)));
+
+        service.register(Integer.class, Thread.State.class, value -> Thread.State.values()[value]);
+
+        assertEquals(Thread.State.RUNNABLE, service.convert(1, TypeToken.ofClass(Thread.State.class)));
+    }
+
+    @Test
+    void widensWrapsAndUnwrapsPrimitives() {
+        final ConversionService service = new ConversionService();
+        for (final Class<?> from : NUMERIC) {
+            for (final Class<?> to : NUMERIC) {
+                final boolean widening = from == to || WIDENING.get(from).contains(to);
+                for (final Class<?> source : new Class<?>[]{from, PrimitiveUtility.wrap(from)}) {
+                    for (final Class<?> target : new Class<?>[]{to, PrimitiveUtility.wrap(to)}) {
+                        final String pair = source.getName() + " to " + target.getName();
+                        assertEquals(widening, service.canConvert(TypeToken.ofClass(source), TypeToken.ofClass(target)), pair);
+                        if (widening) {
+                            final ValueConverter<Object, Object> converter = converter(service, source, target);
+                            assertEquals(MethodType.methodType(target, source), converter.getHandle().type(), pair);
+                            assertEquals(seven(to), converter.convert(seven(from)), pair);
+                        }
+                    }
+                }
+            }
+        }
+
+        assertEquals(7L, service.convert(7, TypeToken.ofClass(long.class)));
+        assertEquals(7L, converter(service, int.class, Long.class).convert(7));
+        assertEquals(true, converter(service, boolean.class, Boolean.class).convert(true));
+        assertEquals(false, converter(service, Boolean.class, boolean.class).convert(false));
+        assertFalse(service.canConvert(TypeToken.ofClass(boolean.class), TypeToken.ofClass(int.class)));
+        assertFalse(service.canConvert(TypeToken.ofClass(int.class), TypeToken.ofClass(Boolean.class)));
+    }
+
+    @Test
+    void boxesIntoSupertypesOfTheWrapper() {
+        final ConversionService service = new ConversionService();
+        for (final Class<?> target : new Class<?>[]{Object.class, Number.class, Comparable.class, Serializable.class}) {
+            assertTrue(service.canConvert(TypeToken.ofClass(int.class), TypeToken.ofClass(target)), target.getName());
+            assertEquals(7, converter(service, int.class, target).convert(7), target.getName());
+        }
+
+        assertEquals(7.0, converter(service, double.class, Number.class).convert(7.0));
+        assertTrue(service.canConvert(TypeToken.ofClass(int.class), TypeToken.capture(new TypeToken.Capturing<Comparable<Integer>>() {
+        })));
+        assertFalse(service.canConvert(TypeToken.ofClass(int.class), TypeToken.capture(new TypeToken.Capturing<Comparable<String>>() {
+        })));
+        assertFalse(service.canConvert(TypeToken.ofClass(int.class), TypeToken.ofClass(CharSequence.class)));
+    }
+
+    @Test
+    void parsesPrimitivesFromStrings() {
+        final ConversionService service = new ConversionService();
+        for (final Class<?> primitive : NUMERIC) {
+            if (primitive != char.class) {
+                assertEquals(seven(primitive), converter(service, String.class, primitive).convert("7"), primitive.getName());
+                assertEquals(seven(primitive), service.convert("7", TypeToken.ofClass(PrimitiveUtility.wrap(primitive))), primitive.getName());
+            }
+        }
+
+        assertEquals('x', converter(service, String.class, char.class).convert("x"));
+        assertEquals('x', service.convert("x", TypeToken.ofClass(Character.class)));
+        assertEquals(true, converter(service, String.class, boolean.class).convert("TRUE"));
+        assertEquals(false, service.convert("false", TypeToken.ofClass(Boolean.class)));
+
+        assertThrows(IllegalArgumentException.class, () -> service.convert("yes", TypeToken.ofClass(boolean.class)));
+        assertThrows(IllegalArgumentException.class, () -> service.convert("xy", TypeToken.ofClass(char.class)));
+        assertThrows(IllegalArgumentException.class, () -> service.convert("", TypeToken.ofClass(Character.class)));
+        assertThrows(NumberFormatException.class, () -> service.convert("7.5", TypeToken.ofClass(int.class)));
+
+        assertEquals("7", converter(service, byte.class, String.class).convert((byte) 7));
+        assertEquals("x", converter(service, char.class, String.class).convert('x'));
+        assertEquals("7.0", service.convert(7.0, TypeToken.ofClass(String.class)));
+    }
+
+    @Test
+    void convertsEnumsByName() {
+        final ConversionService service = new ConversionService();
+
+        assertEquals("FAST", service.convert(Mode.FAST, TypeToken.ofClass(String.class)));
+        assertEquals(Mode.FAST, service.convert("FAST", TypeToken.ofClass(Mode.class)));
+        assertThrows(IllegalArgumentException.class, () -> service.convert("fast", TypeToken.ofClass(Mode.class)));
+    }
+
+    @Test
+    void convertsToAndFromOptionals() {
+        final ConversionService service = new ConversionService();
+
+        assertEquals(Optional.of(7), converter(service, TypeToken.ofClass(String.class), OPTIONAL_INTEGER).convert("7"));
+        assertEquals(Optional.empty(), converter(service, TypeToken.ofClass(String.class), OPTIONAL_INTEGER).convert(null));
+        assertEquals(Optional.of(7), converter(service, TypeToken.ofClass(int.class), OPTIONAL_INTEGER).convert(7));
+        assertEquals(Optional.of(7), converter(service, OPTIONAL_STRING, OPTIONAL_INTEGER).convert(Optional.of("7")));
+        assertEquals(Optional.empty(), converter(service, OPTIONAL_STRING, OPTIONAL_INTEGER).convert(Optional.empty()));
+        assertEquals(7, converter(service, OPTIONAL_STRING, TypeToken.ofClass(Integer.class)).convert(Optional.of("7")));
+        assertNull(converter(service, OPTIONAL_STRING, TypeToken.ofClass(Integer.class)).convert(Optional.empty()));
+        assertEquals(7, converter(service, OPTIONAL_STRING, TypeToken.ofClass(int.class)).convert(Optional.of("7")));
+
+        assertEquals(Optional.of(7), service.convert(Optional.of("7"), OPTIONAL_INTEGER));
+        assertEquals(7, service.convert(Optional.of("7"), TypeToken.ofClass(int.class)));
+
+        assertThrows(NullPointerException.class, () -> converter(service, OPTIONAL_STRING, TypeToken.ofClass(int.class)).convert(Optional.empty()));
+        assertThrows(NullPointerException.class, () -> service.convert(Optional.empty(), TypeToken.ofClass(int.class)));
+    }
+
+    @Test
+    void convertsNullToNullUnlessPrimitive() {
+        final ConversionService service = new ConversionService();
+
+        assertNull(service.convert(null, TypeToken.ofClass(String.class)));
+        assertNull(converter(service, Integer.class, Long.class).convert(null));
+        assertNull(converter(service, Integer.class, String.class).convert(null));
+        assertNull(converter(service, String.class, Integer.class).convert(null));
+        assertNull(converter(service, String.class, Mode.class).convert(null));
+        assertNull(converter(service, Mode.class, String.class).convert(null));
+
+        assertThrows(NullPointerException.class, () -> service.convert(null, TypeToken.ofClass(int.class)));
+        assertThrows(NullPointerException.class, () -> converter(service, Integer.class, long.class).convert(null));
+        assertThrows(NullPointerException.class, () -> converter(service, int.class, String.class).convert(null));
+        assertThrows(NullPointerException.class, () -> converter(service, String.class, int.class).applyAsInt(null));
+    }
+
+    @Test
+    void appliesOnlyToTheConvertedPrimitive() {
+        final ConversionService service = new ConversionService();
+
+        assertEquals(7, converter(service, String.class, Integer.class).applyAsInt("7"));
+        assertEquals(7L, converter(service, int.class, long.class).applyAsLong(7));
+        assertEquals(7.0, converter(service, String.class, double.class).applyAsDouble("7"));
+        assertTrue(converter(service, String.class, Boolean.class).applyAsBoolean("true"));
+
+        assertThrows(IllegalStateException.class, () -> converter(service, String.class, String.class).applyAsInt("7"));
+        assertThrows(IllegalStateException.class, () -> converter(service, int.class, int.class).applyAsLong(7));
+        assertThrows(IllegalStateException.class, () -> converter(service, Integer.class, Long.class).applyAsDouble(7));
+        assertThrows(IllegalStateException.class, () -> converter(service, String.class, int.class).applyAsBoolean("7"));
+    }
+
+    private static ValueConverter<Object, Object> converter(ConversionService service, Class<?> sourceType, Class<?> targetType) {
+        return converter(service, TypeToken.ofClass(sourceType), TypeToken.ofClass(targetType));
+    }
+
+    private static ValueConverter<Object, Object> converter(ConversionService service, TypeToken<?> sourceType, TypeToken<?> targetType) {
+        return service.getConverter((TypeToken<Object>) sourceType, (TypeToken<Object>) targetType);
+    }
+
+    /**
+     * Returns 7 boxed as the wrapper of the primitive.
+     */
+    private static Object seven(Class<?> primitive) {
+        return switch (primitive.getName()) {
+            case "byte" -> (byte) 7;
+            case "short" -> (short) 7;
+            case "char" -> (char) 7;
+            case "int" -> 7;
+            case "long" -> 7L;
+            case "float" -> 7.0F;
+            case "double" -> 7.0;
+            default -> throw new IllegalArgumentException(primitive.getName());
+        };
+    }
+
+    private enum Mode {
+        FAST {
+            @Override
+            public String toString() {
+                return "fast";
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package org.spring4mc.utility.typetoken;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TypeTokenAnnotationsTest {
+    @Test
+    void emptyIsInitializedWhenFieldTypeIsConvertedFirst() throws Exception {
+        // The classes must be initialized fresh, so the scenario runs in its own class loader
+        final List<URL> urls = new ArrayList<>();
+        for (final String path : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            urls.add(new File(path).toURI().toURL());
+        }
+
+        try (final URLClassLoader classLoader = new URLClassLoader(urls.toArray(new URL[0]), ClassLoader.getPlatformClassLoader())) {
+            final Class<?> scenario = Class.forName(InitializationOrder.class.getName(), true, classLoader);
+            assertDoesNotThrow(() -> ((Runnable) scenario.getDeclaredConstructor().newInstance()).run());
+        }
+    }
+
+    @Test
+    void annotationsAreFoundByType() throws NoSuchFieldException {
+        final TypeToken<?> token = TypeToken.ofFieldType(InitializationOrder.class.getDeclaredField("value"));
+
+        assertTrue(token.isAnnotationPresent(M.class));
+        assertFalse(TypeToken.ofClass(String.class).isAnnotationPresent(M.class));
+    }
+
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target({ElementType.FIELD, ElementType.TYPE_USE})
+    @interface M {
+    }
+
+    public static final class InitializationOrder implements Runnable {
+        @M
+        private String value;
+
+        @Override
+        public void run() {
+            try {
+                TypeToken.ofFieldType(InitializationOrder.class.getDeclaredField("value"));
+            } catch (NoSuchFieldException e) {
+                throw new IllegalStateException(e);
+            }
+
+            if (TypeToken.ofClass(String.class).isAnnotationPresent(M.class)) {
+                throw new IllegalStateException("String must not be annotated");
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package org.spring4mc.utility.typetoken;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TypeTokenCacheTest {
+    @Test
+    void cachesConvertedTypes() throws NoSuchFieldException {
+        final Field field = Holder.class.getDeclaredField("values");
+
+        assertSame(TypeToken.ofType(field.getGenericType()), TypeToken.ofType(field.getGenericType()));
+        assertSame(TypeTokenCache.create(field.getGenericType(), field.getAnnotatedType(), Holder.class), TypeTokenCache.create(field.getGenericType(), field.getAnnotatedType(), Holder.class));
+    }
+
+    @Test
+    void ownsTypesByTheirDeepestClassLoader() throws Exception {
+        final Field field = Holder.class.getDeclaredField("byName");
+
+        assertEquals(Holder.class, TypeTokenCache.ownerOf(field.getGenericType(), null));
+        assertEquals(Holder.class, TypeTokenCache.ownerOf(field.getGenericType(), field));
+        assertNull(TypeTokenCache.ownerOf(field.getGenericType(), field.getAnnotatedType()));
+
+        try (final URLClassLoader classLoader = isolatedClassLoader()) {
+            final Class<?> isolated = Class.forName(Holder.class.getName(), false, classLoader);
+            final Field isolatedField = isolated.getDeclaredField("values");
+
+            assertEquals(isolated, TypeTokenCache.ownerOf(isolatedField.getGenericType(), null));
+            // Neither loader is an ancestor of the other
+            assertNull(TypeTokenCache.ownerOf(new Type2(isolated, Holder.class), null));
+        }
+    }
+
+    @Test
+    void releasesClassLoadersOfConvertedTypes() throws Exception {
+        final WeakReference<ClassLoader> classLoader = this.convertInIsolatedClassLoader();
+
+        for (int i = 0; i < 50 && classLoader.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+
+        assertNull(classLoader.get(), "Converted tokens keep their class loader reachable");
+    }
+
+    private WeakReference<ClassLoader> convertInIsolatedClassLoader() throws Exception {
+        try (final URLClassLoader classLoader = isolatedClassLoader()) {
+            final Class<?> isolated = Class.forName(Holder.class.getName(), false, classLoader);
+            for (final String name : new String[]{"values", "byName"}) {
+                final Field field = isolated.getDeclaredField(name);
+
+                assertSame(TypeToken.ofType(field.getGenericType()), TypeToken.ofType(field.getGenericType()));
+                assertNotNull(TypeToken.create(field.getGenericType(), field.getAnnotatedType()));
+                assertNotNull(TypeToken.ofFieldType(field));
+            }
+
+            return new WeakReference<>(classLoader);
+        }
+    }
+
+    private static URLClassLoader isolatedClassLoader() throws Exception {
+        final List<URL> urls = new ArrayList<>();
+        for (final String path : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            urls.add(new File(path).toURI().toURL());
+        }
+
+        return new URLClassLoader(urls.toArray(new URL[0]), ClassLoader.getPlatformClassLoader());
+    }
+
+    public static final class Holder {
+        private List<Holder> values;
+        private Map<String, List<? extends Holder>> byName;
+    }
+
+    /**
+     * {@code Map<first, second>}, to mix classes of unrelated class loaders in one type.
+     */
+    private static final class Type2 implements ParameterizedType {
+        private final Class<?> first;
+        private final Class<?> second;
+
+        private Type2(Class<?> first, Class<?> second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        public Type[] getActualTypeArguments() {
+            return new Type[]{this.first, this.second};
+        }
+
+        @Override
+        public Type getRawType() {
+            return Map.class;
+        }
+
+        @Override
+        public Type getOwnerType() {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package org.spring4mc.utility.typetoken;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class TypeTokenIndexTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void readsWrittenTokens() throws IOException {
+        final Path file = this.directory.resolve("tokens.idx");
+        final Map<String, TypeToken<?>> tokens = tokens();
+        TypeTokenIndex.write(file, tokens);
+        TypeTokenIndex.write(file, tokens);
+
+        final TypeTokenIndex index = TypeTokenIndex.open(file, this.getClass().getClassLoader());
+        assertNotNull(index);
+        tokens.forEach((key, token) -> assertEquals(token, index.get(key)));
+        try (final var files = Files.list(this.directory)) {
+            assertEquals(List.of(file), files.toList());
+        }
+    }
+
+    @Test
+    void rejectsTruncatedFiles() throws IOException {
+        final Path file = this.directory.resolve("tokens.idx");
+        TypeTokenIndex.write(file, tokens());
+        final byte[] bytes = Files.readAllBytes(file);
+
+        final Path truncated = this.directory.resolve("truncated.idx");
+        for (int length = 0; length < bytes.length; length++) {
+            Files.write(truncated, Arrays.copyOf(bytes, length));
+            assertNull(TypeTokenIndex.open(truncated, this.getClass().getClassLoader()), "Truncated to " + length + " bytes");
+        }
+    }
+
+    @Test
+    void rejectsCorruptCounts() throws IOException {
+        final Path file = this.directory.resolve("tokens.idx");
+        TypeTokenIndex.write(file, tokens());
+        final byte[] bytes = Files.readAllBytes(file);
+
+        // The string count follows the magic, the version and the Java version
+        final int javaVersionLength = ((bytes[8] & 0xFF) << 24) | ((bytes[9] & 0xFF) << 16) | ((bytes[10] & 0xFF) << 8) | (bytes[11] & 0xFF);
+        final int stringCount = 12 + javaVersionLength;
+        for (final int count : new int[]{-1, Integer.MAX_VALUE}) {
+            bytes[stringCount] = (byte) (count >>> 24);
+            bytes[stringCount + 1] = (byte) (count >>> 16);
+            bytes[stringCount + 2] = (byte) (count >>> 8);
+            bytes[stringCount + 3] = (byte) count;
+            Files.write(file, bytes);
+            assertNull(TypeTokenIndex.open(file, this.getClass().getClassLoader()));
+        }
+    }
+
+    private static Map<String, TypeToken<?>> tokens() {
+        final Map<String, TypeToken<?>> tokens = new LinkedHashMap<>();
+        tokens.put("string", TypeToken.ofClass(String.class));
+        tokens.put("list", TypeToken.convertGeneric(List.class));
+        tokens.put("map", TypeToken.convertGeneric(Map.class));
+        return tokens;
+    }
+}
@@ -0,0 +1,110 @@
+package org.spring4mc.utility.typetoken;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.lang.reflect.Field;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TypeTokenInternerTest {
+    @Test
+    void sharesEqualTokensWhileEnabled() throws NoSuchFieldException {
+        final boolean enabled = TypeTokenInterner.isEnabled();
+        try {
+            TypeTokenInterner.setEnabled(true);
+            for (final String name : new String[]{"parameterized", "wildcard", "recursive", "annotated"}) {
+                assertSame(convert(name), convert(name), name);
+            }
+
+            TypeTokenInterner.setEnabled(false);
+            assertNotSame(convert("parameterized"), convert("parameterized"));
+            assertEquals(convert("parameterized"), convert("parameterized"));
+        } finally {
+            TypeTokenInterner.setEnabled(enabled);
+        }
+    }
+
+    @Test
+    void neverMergesDifferentlyAnnotatedTokens() throws NoSuchFieldException {
+        final boolean enabled = TypeTokenInterner.isEnabled();
+        try {
+            TypeTokenInterner.setEnabled(true);
+            final TypeToken<?> plain = convert("plain");
+            final TypeToken<?> annotated = convert("annotated");
+
+            // Equal as the annotations of declared type arguments are ignored, but interned separately
+            assertEquals(plain, annotated);
+            assertNotSame(plain, annotated);
+            assertTrue(((TypeToken.Parameterized<?>) annotated).getTypeArguments()[1].isAnnotationPresent(M.class));
+            assertFalse(((TypeToken.Parameterized<?>) plain).getTypeArguments()[1].isAnnotationPresent(M.class));
+        } finally {
+            TypeTokenInterner.setEnabled(enabled);
+        }
+    }
+
+    @Test
+    void isEnabledByProperty() throws Exception {
+        final String previous = System.getProperty(TypeTokenInterner.ENABLED_PROPERTY);
+        final List<URL> urls = new ArrayList<>();
+        for (final String path : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            urls.add(new File(path).toURI().toURL());
+        }
+
+        // The property is read once, the interner is initialized fresh in its own class loader
+        System.setProperty(TypeTokenInterner.ENABLED_PROPERTY, "true");
+        try (final URLClassLoader classLoader = new URLClassLoader(urls.toArray(new URL[0]), ClassLoader.getPlatformClassLoader())) {
+            final Class<?> interner = Class.forName(TypeTokenInterner.class.getName(), true, classLoader);
+            assertEquals(true, interner.getMethod("isEnabled").invoke(null));
+        } finally {
+            if (previous == null) {
+                System.clearProperty(TypeTokenInterner.ENABLED_PROPERTY);
+            } else {
+                System.setProperty(TypeTokenInterner.ENABLED_PROPERTY, previous);
+            }
+        }
+    }
+
+    @Test
+    void hashCodeEqualsStructuralHash() throws NoSuchFieldException {
+        for (final String name : new String[]{"parameterized", "wildcard", "recursive", "annotated"}) {
+            final TypeToken<?> token = convert(name);
+            ((TypeTokenImpl<?>) token).visit(visited -> {
+                final TypeTokenImpl<?> impl = (TypeTokenImpl<?>) visited;
+                if (!(impl instanceof TypeTokenImpl.DeclaredImpl<?>)) {
+                    assertEquals(31 * Arrays.hashCode(impl.annotations) + impl.hashStructure(), impl.hashCode(), impl.toString());
+                }
+            });
+
+            assertEquals(convert(name).hashCode(), token.hashCode(), name);
+        }
+    }
+
+    private static TypeToken<?> convert(String name) throws NoSuchFieldException {
+        final Field field = Fixture.class.getDeclaredField(name);
+        return new TypeTokenImpl.TypeTokenConverter().convert(field.getGenericType(), field.getAnnotatedType());
+    }
+
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target(ElementType.TYPE_USE)
+    @interface M {
+    }
+
+    private static final class Fixture<E extends Comparable<E>> {
+        private Map<String, List<Integer>> parameterized;
+        private List<? extends Number> wildcard;
+        private E recursive;
+        private Map<String, Integer> plain;
+        private Map<String, @M Integer> annotated;
+    }
+}
@@ -0,0 +1,248 @@
+package org.spring4mc.utility.typetoken;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.Serializable;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Field;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TypeTokenMatchedRegistryTest {
+    @Test
+    void findsTheSameValuesAsLinearScan() throws NoSuchFieldException {
+        final List<TypeTokenMatcher> matchers = matchers();
+        final List<TypeToken<?>> tokens = tokens();
+
+        for (final boolean cached : new boolean[]{false, true}) {
+            final TypeTokenMatchedRegistry<Integer> registry = cached ? new TypeTokenMatchedRegistry<>(64) : new TypeTokenMatchedRegistry<>();
+            final LinkedList<Integer> order = new LinkedList<>();
+
+            for (int i = 0; i < matchers.size(); i++) {
+                // Interleaved, so registration order and position order differ
+                if (i % 3 == 0) {
+                    registry.registerFirst(matchers.get(i), i);
+                    order.addFirst(i);
+                } else {
+                    registry.registerLast(matchers.get(i), i);
+                    order.addLast(i);
+                }
+
+                // Lookups between registrations rebuild the index from a partial registry
+                for (final TypeToken<?> token : tokens) {
+                    assertMatchesLinearScan(registry, matchers, order, token);
+                }
+            }
+        }
+    }
+
+    @Test
+    void invalidatesCachedLookupsOnRegistration() {
+        final TypeTokenMatchedRegistry<Integer> registry = new TypeTokenMatchedRegistry<>(16);
+        final TypeToken<?> string = TypeToken.ofClass(String.class);
+        assertEquals(List.of(), registry.find(string));
+
+        registry.registerFirst(TypeTokenMatcher.isSuperClass(CharSequence.class), 1);
+        assertEquals(List.of(1), registry.find(string));
+
+        registry.registerLast(TypeTokenMatcher.isDeclared(), 2);
+        assertEquals(List.of(1, 2), registry.find(string));
+
+        registry.registerFirst(TypeTokenMatcher.any(), 3);
+        assertEquals(List.of(3, 1, 2), registry.find(string));
+        assertEquals(Optional.of(3), registry.findFirst(string));
+    }
+
+    @Test
+    void cachesDifferentlyAnnotatedTokensSeparately() throws NoSuchFieldException {
+        final TypeTokenMatchedRegistry<Integer> registry = new TypeTokenMatchedRegistry<>(16);
+        registry.registerLast(TypeTokenMatcher.declaredMatching(declared -> declared.isAnnotationPresent(M.class)), 1);
+
+        final TypeToken<?> plain = TypeToken.ofFieldType(Annotated.class.getDeclaredField("plain"));
+        final TypeToken<?> annotated = TypeToken.ofFieldType(Annotated.class.getDeclaredField("annotated"));
+        assertEquals(plain, annotated);
+
+        assertEquals(List.of(), registry.find(plain));
+        assertEquals(List.of(1), registry.find(annotated));
+        assertEquals(List.of(), registry.find(plain));
+    }
+
+    @Test
+    void reusesLookupsOnlyForEqualTokens() throws Exception {
+        final TypeTokenMatchedRegistry<Integer> registry = new TypeTokenMatchedRegistry<>(16);
+        registry.registerLast(TypeTokenMatcher.declaredMatching(declared -> declared.getDeclaredType() == Annotated.class), 1);
+
+        try (final URLClassLoader classLoader = isolatedClassLoader()) {
+            // Same canonical string, but a different class
+            final TypeToken<?> local = TypeToken.ofClass(Annotated.class);
+            final TypeToken<?> isolated = TypeToken.ofClass(Class.forName(Annotated.class.getName(), false, classLoader));
+            assertEquals(local.toCanonicalString(), isolated.toCanonicalString());
+
+            assertEquals(List.of(1), registry.find(local));
+            assertEquals(List.of(), registry.find(isolated));
+            assertEquals(List.of(1), registry.find(local));
+        }
+    }
+
+    @Test
+    void recomputesLookupsOfCollectedTokens() throws NoSuchFieldException, InterruptedException {
+        final TypeTokenMatchedRegistry<Integer> registry = new TypeTokenMatchedRegistry<>(16);
+        registry.registerLast(TypeTokenMatcher.isParameterized(), 1);
+
+        final AtomicInteger hits = new AtomicInteger();
+        TypeTokenMetrics.install(new TypeTokenMetrics() {
+            @Override
+            public void cacheHit(Cache cache) {
+                if (cache == Cache.REGISTRY_LOOKUPS) {
+                    hits.incrementAndGet();
+                }
+            }
+        });
+
+        try {
+            final Field field = Fixture.class.getDeclaredField("strings");
+            final WeakReference<TypeToken<?>> first = this.findConverted(registry, field);
+
+            // An equal token of its own is answered by the lookup of the first while that one is alive
+            final TypeToken<?> second = new TypeTokenImpl.TypeTokenConverter().convert(field.getGenericType(), field.getAnnotatedType());
+            if (first.get() != null) {
+                assertEquals(List.of(1), registry.find(second));
+                assertEquals(1, hits.get());
+            }
+
+            for (int i = 0; i < 50 && first.get() != null; i++) {
+                System.gc();
+                Thread.sleep(10);
+            }
+
+            assertNull(first.get());
+            hits.set(0);
+            assertEquals(List.of(1), registry.find(second));
+            assertEquals(0, hits.get());
+            assertEquals(List.of(1), registry.find(second));
+            assertEquals(1, hits.get());
+        } finally {
+            TypeTokenMetrics.install(TypeTokenMetrics.NOOP);
+        }
+    }
+
+    @Test
+    void sharesFoundListsOnlyWithLookupCache() {
+        final TypeToken<?> string = TypeToken.ofClass(String.class);
+
+        final TypeTokenMatchedRegistry<Integer> cached = new TypeTokenMatchedRegistry<>(16);
+        cached.registerLast(TypeTokenMatcher.any(), 1);
+        assertSame(cached.find(string), cached.find(string));
+        assertThrows(UnsupportedOperationException.class, () -> ((List<Integer>) cached.<Integer>find(string)).add(2));
+
+        final TypeTokenMatchedRegistry<Integer> uncached = new TypeTokenMatchedRegistry<>();
+        uncached.registerLast(TypeTokenMatcher.any(), 1);
+        assertNotSame(uncached.find(string), uncached.find(string));
+        assertEquals(ArrayList.class, uncached.find(string).getClass());
+        ((List<Integer>) uncached.<Integer>find(string)).add(2);
+    }
+
+    private WeakReference<TypeToken<?>> findConverted(TypeTokenMatchedRegistry<Integer> registry, Field field) {
+        final TypeToken<?> token = new TypeTokenImpl.TypeTokenConverter().convert(field.getGenericType(), field.getAnnotatedType());
+        assertEquals(List.of(1), registry.find(token));
+        return new WeakReference<>(token);
+    }
+
+    private static URLClassLoader isolatedClassLoader() throws Exception {
+        final List<URL> urls = new ArrayList<>();
+        for (final String path : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            urls.add(new File(path).toURI().toURL());
+        }
+
+        return new URLClassLoader(urls.toArray(new URL[0]), ClassLoader.getPlatformClassLoader());
+    }
+
+    private static void assertMatchesLinearScan(TypeTokenMatchedRegistry<Integer> registry, List<TypeTokenMatcher> matchers, List<Integer> order, TypeToken<?> token) {
+        final List<Integer> expected = new ArrayList<>();
+        for (final int value : order) {
+            if (matchers.get(value).test(token)) {
+                expected.add(value);
+            }
+        }
+
+        assertEquals(expected, new ArrayList<>(registry.find(token)), token.toString());
+        assertEquals(expected.isEmpty() ? Optional.empty() : Optional.of(expected.get(0)), registry.findFirst(token), token.toString());
+        assertEquals(expected.stream().filter(value -> value % 2 == 0).toList(), new ArrayList<>(registry.<Integer>find(token, value -> value % 2 == 0)), token.toString());
+    }
+
+    private static List<TypeTokenMatcher> matchers() {
+        // Raw, the factories' token types don't intersect
+        final TypeTokenMatcher comparable = TypeTokenMatcher.isSuperClass(Comparable.class);
+        final TypeTokenMatcher serializable = TypeTokenMatcher.isSuperClass(Serializable.class);
+        final TypeTokenMatcher charSequence = TypeTokenMatcher.isSuperClass(CharSequence.class);
+
+        return List.<TypeTokenMatcher>of(
+                TypeTokenMatcher.isSuperClass(CharSequence.class),
+                TypeTokenMatcher.isSuperClass(Number.class),
+                TypeTokenMatcher.isSuperClass(Object[].class),
+                TypeTokenMatcher.isSuperClass(Number[].class),
+                TypeTokenMatcher.isSuperClass(int.class),
+                TypeTokenMatcher.isSuperClass(List.class),
+                TypeTokenMatcher.isAnySuperClass(Number.class, CharSequence.class),
+                TypeTokenMatcher.isSuperClass(Number.class).invert(),
+                TypeTokenMatcher.isSuperClass(Object.class).invert(),
+                charSequence.or(TypeTokenMatcher.isSuperClass(Number.class)),
+                comparable.and(TypeTokenMatcher.isDeclared()),
+                serializable.and(comparable.invert()),
+                TypeTokenMatcher.isDeclared(),
+                TypeTokenMatcher.isWildcard(),
+                TypeTokenMatcher.isParameterized(),
+                TypeTokenMatcher.isTypeVar(),
+                TypeTokenMatcher.isGeneric().and(TypeTokenMatcher.isParameterized().invert()),
+                TypeTokenMatcher.genericChildAt(0, TypeTokenMatcher.isSuperClass(String.class)),
+                TypeTokenMatcher.declaredMatching(declared -> declared.getDeclaredType().isPrimitive()),
+                TypeTokenMatcher.any()
+        );
+    }
+
+    private static List<TypeToken<?>> tokens() throws NoSuchFieldException {
+        final List<TypeToken<?>> tokens = new ArrayList<>();
+        for (final Class<?> type : new Class<?>[]{Object.class, String.class, StringBuilder.class, Integer.class, int.class, long.class, Number.class, Comparable.class, String[].class, Integer[].class, int[].class, Object[].class, ArrayList.class}) {
+            tokens.add(TypeToken.ofClass(type));
+        }
+
+        for (final Field field : Fixture.class.getDeclaredFields()) {
+            final TypeToken<?> token = TypeToken.ofFieldType(field);
+            tokens.add(token);
+            if (token instanceof TypeToken.Parameterized<?> parameterized) {
+                tokens.addAll(Arrays.asList(parameterized.getTypeArguments()));
+            }
+        }
+
+        tokens.add(TypeToken.convertGeneric(Map.class));
+        return tokens;
+    }
+
+    private static final class Fixture<E extends Number> {
+        private List<String> strings;
+        private ArrayList<Integer> integers;
+        private List<? extends Number> numbers;
+        private Map<? super Integer, CharSequence> map;
+        private E element;
+        private Comparable<String> comparable;
+    }
+
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target(ElementType.TYPE_USE)
+    @interface M {
+    }
+
+    public static final class Annotated {
+        private String plain;
+        private @M String annotated;
+    }
+}
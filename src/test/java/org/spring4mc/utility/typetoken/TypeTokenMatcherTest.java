@@ -0,0 +1,25 @@
+package org.spring4mc.utility.typetoken;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TypeTokenMatcherTest {
+    @Test
+    void combinesMatchersOfDifferentKinds() {
+        final TypeTokenMatcher declaredOrParameterized = TypeTokenMatcher.isDeclared().or(TypeTokenMatcher.isParameterized());
+        final TypeTokenMatcher parameterized = TypeTokenMatcher.isGeneric().and(TypeTokenMatcher.isParameterized());
+
+        final TypeToken<?> declared = TypeToken.ofClass(String.class);
+        final TypeToken<?> list = TypeToken.convertGeneric(List.class);
+
+        assertTrue(declaredOrParameterized.test(declared));
+        assertTrue(declaredOrParameterized.test(list));
+        assertFalse(parameterized.test(declared));
+        assertTrue(parameterized.test(list));
+        assertTrue(parameterized.compile().test(list));
+    }
+}
@@ -0,0 +1,161 @@
+package org.spring4mc.utility.typetoken;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TypeTokenResolverTest {
+    @Test
+    void resolvesDeclaredTokensToSubclasses() {
+        assertEquals(TypeToken.ofClass(String.class), TypeTokenResolver.tryResolve(TypeToken.ofClass(CharSequence.class), String.class));
+        assertEquals(TypeToken.ofClass(Integer.class), TypeTokenResolver.tryResolve(TypeToken.ofClass(Number.class), Integer.class));
+    }
+
+    @Test
+    void keepsDeclaredTokensOfPrimitives() {
+        assertEquals(TypeToken.ofClass(Object.class), TypeTokenResolver.tryResolve(TypeToken.ofClass(Object.class), int.class));
+        assertEquals(TypeToken.ofClass(int.class), TypeTokenResolver.tryResolve(TypeToken.ofClass(int.class), Integer.class));
+        assertEquals(TypeToken.ofClass(int.class), TypeTokenResolver.tryResolve(TypeToken.ofClass(int.class), int.class));
+    }
+
+    @Test
+    void keepsResolutionsOfReachableTokensAcrossCollections() throws NoSuchFieldException {
+        final AtomicInteger hits = installHitCounter();
+        try {
+            // Resolves to a new annotated token every time it's resolved uncached
+            final TypeToken<?> token = TypeToken.ofFieldType(Fixture.class.getDeclaredField("variable"));
+            final TypeToken<?> resolved = TypeTokenResolver.tryResolve(token, String.class);
+            assertTrue(resolved.isAnnotationPresent(M.class));
+            assertNotSame(resolved, TypeTokenResolver.resolve(token, String.class));
+
+            System.gc();
+            hits.set(0);
+
+            assertSame(resolved, TypeTokenResolver.tryResolve(token, String.class));
+            assertEquals(1, hits.get());
+        } finally {
+            TypeTokenMetrics.install(TypeTokenMetrics.NOOP);
+        }
+    }
+
+    @Test
+    void cachesEqualTokensSeparately() throws NoSuchFieldException {
+        final AtomicInteger hits = installHitCounter();
+        try {
+            final TypeToken<?> plain = TypeToken.ofFieldType(Fixture.class.getDeclaredField("plain"));
+            final TypeToken<?> annotated = TypeToken.ofFieldType(Fixture.class.getDeclaredField("annotated"));
+            assertEquals(plain, annotated);
+
+            // Alternating, so tokens sharing an entry would replace each other's resolution
+            for (int i = 0; i < 2; i++) {
+                assertEquals(TypeToken.ofClass(StringBuilder.class), TypeTokenResolver.tryResolve(plain, StringBuilder.class));
+                assertEquals(TypeToken.ofClass(StringBuilder.class), TypeTokenResolver.tryResolve(annotated, StringBuilder.class));
+            }
+
+            assertEquals(2, hits.get());
+        } finally {
+            TypeTokenMetrics.install(TypeTokenMetrics.NOOP);
+        }
+    }
+
+    @Test
+    void resolvesMembersAsDeclaredTypes() {
+        final TypeToken<?> parent = TypeToken.capture(new TypeToken.Capturing<Level2<String>>() {
+        });
+        final TypeTokenResolvedMembers members = TypeTokenResolver.resolveMembers(parent);
+
+        for (final Class<?> declaringClass : List.of(Level2.class, Level1.class, Level0.class)) {
+            for (final Field field : declaringClass.getDeclaredFields()) {
+                if (field.getName().equals("array")) {
+                    // Generic arrays aren't supported and left out
+                    assertNull(members.getFieldType(field));
+                    continue;
+                }
+
+                assertEquals(TypeTokenResolver.resolveDeclaredTypes(TypeToken.ofFieldType(field), parent), members.getFieldType(field), field.toString());
+            }
+
+            for (final Method method : declaringClass.getDeclaredMethods()) {
+                assertEquals(TypeTokenResolver.resolveDeclaredTypes(TypeToken.ofMethodReturnType(method), parent), members.getMethodReturnType(method), method.toString());
+
+                final TypeToken<?>[] parameterTypes = members.getMethodParameterTypes(method);
+                assertEquals(method.getParameterCount(), parameterTypes.length);
+                for (int i = 0; i < parameterTypes.length; i++) {
+                    assertEquals(TypeTokenResolver.resolveDeclaredTypes(TypeToken.ofMethodParameterType(method, i), parent), parameterTypes[i], method.toString());
+                }
+            }
+        }
+
+        assertEquals(TypeToken.capture(new TypeToken.Capturing<Map<String, Integer>>() {
+        }), members.getFieldType(field(Level0.class, "map")));
+        assertEquals(TypeToken.ofClass(String.class), members.getFieldType(field(Level2.class, "value")));
+    }
+
+    private static Field field(Class<?> type, String name) {
+        try {
+            return type.getDeclaredField(name);
+        } catch (NoSuchFieldException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static AtomicInteger installHitCounter() {
+        final AtomicInteger hits = new AtomicInteger();
+        TypeTokenMetrics.install(new TypeTokenMetrics() {
+            @Override
+            public void cacheHit(Cache cache) {
+                if (cache == Cache.RESOLVED) {
+                    hits.incrementAndGet();
+                }
+            }
+        });
+
+        return hits;
+    }
+
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target(ElementType.TYPE_USE)
+    @interface M {
+    }
+
+    private static final class Fixture<T extends CharSequence> {
+        private CharSequence plain;
+        private @M CharSequence annotated;
+        private @M T variable;
+    }
+
+    private static class Level0<A, B> {
+        private Map<A, B> map;
+        private A[] array;
+
+        A first(List<? extends B> values) {
+            return null;
+        }
+    }
+
+    private static class Level1<C, D extends Number> extends Level0<C, D> {
+        private List<D> numbers;
+
+        <M> Map<C, M> second(M value, D number) {
+            return null;
+        }
+    }
+
+    private static class Level2<X> extends Level1<X, Integer> {
+        private X value;
+
+        List<? super X> third() {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package org.spring4mc.utility.typetoken;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TypeTokenTest {
+    @Test
+    void isWithinBoundsIsStrictForPrimitives() {
+        assertFalse(TypeToken.ofClass(Object.class).isWithinBounds(int.class));
+        assertFalse(TypeToken.ofClass(Integer.class).isWithinBounds(int.class));
+        assertFalse(TypeToken.ofClass(int.class).isWithinBounds(Integer.class));
+        assertTrue(TypeToken.ofClass(int.class).isWithinBounds(int.class));
+    }
+
+    @Test
+    void isWithinBoundsBoxedAcceptsBoxingAndUnboxing() {
+        assertTrue(TypeToken.ofClass(Object.class).isWithinBoundsBoxed(int.class));
+        assertTrue(TypeToken.ofClass(Number.class).isWithinBoundsBoxed(int.class));
+        assertTrue(TypeToken.ofClass(Integer.class).isWithinBoundsBoxed(int.class));
+        assertTrue(TypeToken.ofClass(int.class).isWithinBoundsBoxed(Integer.class));
+        assertFalse(TypeToken.ofClass(int.class).isWithinBoundsBoxed(Long.class));
+        assertFalse(TypeToken.ofClass(Long.class).isWithinBoundsBoxed(int.class));
+    }
+}
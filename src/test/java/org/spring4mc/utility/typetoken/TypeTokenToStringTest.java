@@ -0,0 +1,118 @@
+package org.spring4mc.utility.typetoken;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.annotation.AnnotationUtils;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.annotation.Annotation;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.lang.reflect.Field;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class TypeTokenToStringTest {
+    @Test
+    void distinguishesTokensEqualExceptForAnnotations() throws NoSuchFieldException {
+        final TypeToken<?> plain = fieldType("plain");
+        final TypeToken<?> annotated = fieldType("annotated");
+        final TypeToken<?> otherValue = fieldType("otherValue");
+
+        assertEquals(plain, annotated);
+        assertEquals(plain.toString(false), annotated.toString(false));
+        assertNotEquals(plain.toCanonicalString(), annotated.toCanonicalString());
+        assertNotEquals(annotated.toCanonicalString(), otherValue.toCanonicalString());
+
+        final TypeToken<?> string = TypeToken.ofClass(String.class);
+        final TypeToken<?> annotatedString = ((TypeToken.Parameterized<?>) annotated).getTypeArguments()[0];
+        assertEquals(string, annotatedString);
+        assertNotEquals(string.toCanonicalString(), annotatedString.toCanonicalString());
+    }
+
+    @Test
+    void rendersAnnotationsIndependentOfTheirImplementation() throws NoSuchFieldException {
+        final A reflected = Fixture.class.getDeclaredField("reflected").getAnnotation(A.class);
+
+        // Attributes in declaration order, the rendering sorts them by name
+        final Map<String, Object> attributes = new LinkedHashMap<>();
+        attributes.put("z", ElementType.FIELD);
+        attributes.put("values", new int[]{1, 2});
+        attributes.put("a", "x");
+        final A synthesized = AnnotationUtils.synthesizeAnnotation(attributes, A.class, null);
+
+        final String expected = "@" + A.class.getTypeName() + "(a=\"x\", values={1, 2}, z=FIELD) java.lang.String";
+        for (final Annotation annotation : List.of(reflected, synthesized, new ManualA())) {
+            assertEquals(expected, TypeToken.create(String.class, annotation).toCanonicalString(), annotation.getClass().getName());
+        }
+    }
+
+    @Test
+    void appendsTheSameAsToString() throws NoSuchFieldException, IOException {
+        for (final Field field : Fixture.class.getDeclaredFields()) {
+            final TypeToken<?> token = TypeToken.ofFieldType(field);
+            for (final boolean includeAnnotations : new boolean[]{false, true}) {
+                final StringBuilder builder = new StringBuilder("prefix ");
+                TypeTokenToString.appendTo(builder, token, includeAnnotations);
+                assertEquals("prefix " + token.toString(includeAnnotations), builder.toString());
+
+                final StringWriter writer = new StringWriter();
+                TypeTokenToString.appendTo(writer, token, includeAnnotations);
+                assertEquals(token.toString(includeAnnotations), writer.toString());
+            }
+
+            assertEquals(TypeTokenToString.toString(token), token.toString());
+        }
+    }
+
+    private static TypeToken<?> fieldType(String name) throws NoSuchFieldException {
+        return TypeToken.ofFieldType(Fixture.class.getDeclaredField(name));
+    }
+
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target({ElementType.FIELD, ElementType.TYPE_USE})
+    @interface A {
+        ElementType z();
+
+        int[] values();
+
+        String a();
+    }
+
+    private static final class Fixture<T extends Comparable<T>> {
+        @A(z = ElementType.FIELD, values = {1, 2}, a = "x")
+        private String reflected;
+        private List<String> plain;
+        private List<@A(z = ElementType.FIELD, values = {1, 2}, a = "x") String> annotated;
+        private List<@A(z = ElementType.FIELD, values = {1, 3}, a = "x") String> otherValue;
+        private Map<? extends T, ? super List<T>> generic;
+    }
+
+    private static final class ManualA implements A {
+        @Override
+        public ElementType z() {
+            return ElementType.FIELD;
+        }
+
+        @Override
+        public int[] values() {
+            return new int[]{1, 2};
+        }
+
+        @Override
+        public String a() {
+            return "x";
+        }
+
+        @Override
+        public Class<? extends Annotation> annotationType() {
+            return A.class;
+        }
+    }
+}
@@ -0,0 +1,337 @@
+package org.spring4mc.utility.processor;
+
+import javax.annotation.processing.*;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.*;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.*;
+
+/**
+ * Generates a {@code <Class>$$TypeTokens} implementation of {@code TypeTokenMetadata} for every class annotated with
+ * {@code GenerateTypeTokens}, with a constant for the type token of every declared field and method that can be
+ * built without reflection.
+ * <p>
+ * Members are left out, and converted by reflection at runtime, if their type contains a generic array, a type
+ * variable of a method, an inner class of a parameterized type, a type that isn't accessible from the package of
+ * the class or a type annotation that is retained at runtime.
+ */
+@SupportedAnnotationTypes(TypeTokenProcessor.ANNOTATION)
+public class TypeTokenProcessor extends AbstractProcessor {
+    static final String ANNOTATION = "org.spring4mc.utility.typetoken.GenerateTypeTokens";
+
+    private static final String METADATA = "org.spring4mc.utility.typetoken.TypeTokenMetadata";
+    private static final String TOKEN = "org.spring4mc.utility.typetoken.TypeToken<?>";
+    private static final String SUFFIX = "$$TypeTokens";
+
+    private Elements elements;
+    private Types types;
+
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnv) {
+        super.init(processingEnv);
+        this.elements = processingEnv.getElementUtils();
+        this.types = processingEnv.getTypeUtils();
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (final TypeElement annotation : annotations) {
+            for (final TypeElement type : ElementFilter.typesIn(roundEnv.getElementsAnnotatedWith(annotation))) {
+                try {
+                    this.generate(type);
+                } catch (IOException e) {
+                    this.processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Couldn't generate type tokens: " + e.getMessage(), type);
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private void generate(TypeElement type) throws IOException {
+        final PackageElement packageElement = this.elements.getPackageOf(type);
+        if (type.getNestingKind() == NestingKind.LOCAL || type.getNestingKind() == NestingKind.ANONYMOUS || !this.isAccessible(type, packageElement)) {
+            this.processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, "Type tokens are only generated for classes accessible from their package", type);
+            return;
+        }
+
+        final String packageName = packageElement.getQualifiedName().toString();
+        final String binaryName = this.elements.getBinaryName(type).toString();
+        final String simpleName = (packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1)) + SUFFIX;
+
+        final StringBuilder constants = new StringBuilder();
+        final StringBuilder describe = new StringBuilder();
+        for (final VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+            final String token = this.token(field.asType(), packageElement, new HashSet<>());
+            if (token != null) {
+                final String constant = "FIELD_" + field.getSimpleName();
+                constants.append("    public static final ").append(TOKEN).append(' ').append(constant).append(" = ").append(token).append(";\n");
+                describe.append("        collector.field(\"").append(field.getSimpleName()).append("\", ").append(constant).append(");\n");
+            }
+        }
+
+        int index = 0;
+        for (final ExecutableElement method : ElementFilter.methodsIn(type.getEnclosedElements())) {
+            final String parameterClasses = this.parameterClasses(method, packageElement);
+            if (parameterClasses == null) {
+                continue;
+            }
+
+            final String returnType = this.token(method.getReturnType(), packageElement, new HashSet<>());
+            final String parameterTypes = this.parameterTokens(method, packageElement);
+            if (returnType == null && parameterTypes == null) {
+                continue;
+            }
+
+            final String returnConstant = returnType == null ? "null" : "METHOD_" + index + "_RETURN";
+            final String parametersConstant = parameterTypes == null ? "null" : "METHOD_" + index + "_PARAMETERS";
+            if (returnType != null) {
+                constants.append("    public static final ").append(TOKEN).append(' ').append(returnConstant).append(" = ").append(returnType).append(";\n");
+            }
+
+            if (parameterTypes != null) {
+                // Arrays are handed out as is, so they are not exposed
+                constants.append("    private static final ").append(TOKEN).append("[] ").append(parametersConstant).append(" = ").append(parameterTypes).append(";\n");
+            }
+
+            describe.append("        collector.method(\"").append(method.getSimpleName()).append("\", ").append(parameterClasses)
+                    .append(", ").append(returnConstant).append(", ").append(parametersConstant).append(");\n");
+            index++;
+        }
+
+        try (final Writer writer = this.processingEnv.getFiler().createSourceFile(packageName.isEmpty() ? simpleName : packageName + "." + simpleName, type).openWriter()) {
+            if (!packageName.isEmpty()) {
+                writer.write("package " + packageName + ";\n\n");
+            }
+
+            if (this.elements.getTypeElement("javax.annotation.processing.Generated") != null) {
+                writer.write("@javax.annotation.processing.Generated(\"" + TypeTokenProcessor.class.getName() + "\")\n");
+            }
+
+            writer.write("public final class " + simpleName + " implements " + METADATA + " {\n");
+            writer.write(constants.toString());
+            writer.write("\n    @Override\n    public void describe(" + METADATA + ".Collector collector) {\n");
+            writer.write(describe.toString());
+            writer.write("    }\n}\n");
+        }
+    }
+
+    /**
+     * Returns the erased parameter types as a class array expression, or null if any of them isn't accessible.
+     */
+    private String parameterClasses(ExecutableElement method, PackageElement packageElement) {
+        if (method.getParameters().isEmpty()) {
+            return "new Class<?>[0]";
+        }
+
+        final StringJoiner result = new StringJoiner(", ", "new Class<?>[]{", "}");
+        for (final VariableElement parameter : method.getParameters()) {
+            final String literal = this.classLiteral(this.types.erasure(parameter.asType()), packageElement);
+            if (literal == null) {
+                return null;
+            }
+
+            result.add(literal);
+        }
+
+        return result.toString();
+    }
+
+    private String parameterTokens(ExecutableElement method, PackageElement packageElement) {
+        if (method.getParameters().isEmpty()) {
+            return "new " + TOKEN + "[0]";
+        }
+
+        final StringJoiner result = new StringJoiner(", ", "new " + TOKEN + "[]{", "}");
+        for (final VariableElement parameter : method.getParameters()) {
+            final String token = this.token(parameter.asType(), packageElement, new HashSet<>());
+            if (token == null) {
+                return null;
+            }
+
+            result.add(token);
+        }
+
+        return result.toString();
+    }
+
+    /**
+     * Returns an expression building the same token as converting the type by reflection, or null if the type isn't
+     * supported.
+     *
+     * @param resolving the type variables whose bounds are being built, they are cut off as recursive type variables
+     */
+    private String token(TypeMirror type, PackageElement packageElement, Set<TypeParameterElement> resolving) {
+        if (this.hasRuntimeAnnotations(type)) {
+            return null;
+        }
+
+        switch (type.getKind()) {
+            case BOOLEAN, BYTE, SHORT, INT, LONG, CHAR, FLOAT, DOUBLE, VOID, ARRAY -> {
+                // Arrays of generic types are generic arrays, everything else is a plain class
+                final String literal = type.getKind() == TypeKind.ARRAY && !this.isPlainClass(type) ? null : this.classLiteral(type, packageElement);
+                return literal == null ? null : METADATA + ".declared(" + literal + ")";
+            }
+            case DECLARED -> {
+                return this.declaredToken((DeclaredType) type, packageElement, resolving);
+            }
+            case WILDCARD -> {
+                final WildcardType wildcard = (WildcardType) type;
+                if (wildcard.getSuperBound() != null) {
+                    final String bound = this.token(wildcard.getSuperBound(), packageElement, resolving);
+                    return bound == null ? null : METADATA + ".wildcardSuper(" + bound + ")";
+                }
+
+                if (wildcard.getExtendsBound() != null) {
+                    final String bound = this.token(wildcard.getExtendsBound(), packageElement, resolving);
+                    return bound == null ? null : METADATA + ".wildcardExtends(" + bound + ")";
+                }
+
+                return METADATA + ".wildcard()";
+            }
+            case TYPEVAR -> {
+                return this.typeVarToken((TypeParameterElement) ((TypeVariable) type).asElement(), packageElement, resolving);
+            }
+            default -> {
+                return null;
+            }
+        }
+    }
+
+    private String declaredToken(DeclaredType type, PackageElement packageElement, Set<TypeParameterElement> resolving) {
+        final TypeElement element = (TypeElement) type.asElement();
+        final String literal = this.classLiteral(type, packageElement);
+        if (literal == null) {
+            return null;
+        }
+
+        // Raw uses of generic classes are plain classes as well
+        if (type.getTypeArguments().isEmpty()) {
+            return METADATA + ".declared(" + literal + ")";
+        }
+
+        // Owners are only built as plain classes, inner classes of parameterized types are left to reflection
+        if (type.getEnclosingType() instanceof DeclaredType enclosing && !enclosing.getTypeArguments().isEmpty()) {
+            return null;
+        }
+
+        final StringBuilder result = new StringBuilder(METADATA).append(".parameterized(").append(literal).append(", ");
+        if (element.getEnclosingElement() instanceof TypeElement owner) {
+            result.append(METADATA).append(".declared(").append(this.classLiteral(this.types.erasure(owner.asType()), packageElement)).append(')');
+        } else {
+            result.append("null");
+        }
+
+        for (final TypeMirror argument : type.getTypeArguments()) {
+            final String token = this.token(argument, packageElement, resolving);
+            if (token == null) {
+                return null;
+            }
+
+            result.append(", ").append(token);
+        }
+
+        return result.append(')').toString();
+    }
+
+    private String typeVarToken(TypeParameterElement parameter, PackageElement packageElement, Set<TypeParameterElement> resolving) {
+        // Methods and constructors can't be referenced without reflection
+        if (!(parameter.getGenericElement() instanceof TypeElement declaration)) {
+            return null;
+        }
+
+        final String literal = this.classLiteral(this.types.erasure(declaration.asType()), packageElement);
+        if (literal == null) {
+            return null;
+        }
+
+        final String arguments = literal + ", \"" + parameter.getSimpleName() + "\", " + declaration.getTypeParameters().indexOf(parameter);
+        if (!resolving.add(parameter)) {
+            return METADATA + ".recursiveTypeVar(" + arguments + ")";
+        }
+
+        final StringBuilder result = new StringBuilder(METADATA).append(".typeVar(").append(arguments);
+        for (final TypeMirror bound : parameter.getBounds()) {
+            final String token = this.token(bound, packageElement, resolving);
+            if (token == null) {
+                return null;
+            }
+
+            result.append(", ").append(token);
+        }
+
+        resolving.remove(parameter);
+        return result.append(')').toString();
+    }
+
+    /**
+     * Returns the class literal of an erased type, or null if it isn't accessible from the package.
+     */
+    private String classLiteral(TypeMirror type, PackageElement packageElement) {
+        return switch (type.getKind()) {
+            case BOOLEAN, BYTE, SHORT, INT, LONG, CHAR, FLOAT, DOUBLE, VOID -> type.getKind().name().toLowerCase(Locale.ROOT) + ".class";
+            case ARRAY -> {
+                final String component = this.classLiteral(this.types.erasure(((ArrayType) type).getComponentType()), packageElement);
+                yield component == null ? null : component.substring(0, component.length() - ".class".length()) + "[].class";
+            }
+            case DECLARED -> {
+                final TypeElement element = (TypeElement) ((DeclaredType) type).asElement();
+                yield this.isAccessible(element, packageElement) ? element.getQualifiedName() + ".class" : null;
+            }
+            default -> null;
+        };
+    }
+
+    private boolean isPlainClass(TypeMirror type) {
+        return switch (type.getKind()) {
+            case ARRAY -> this.isPlainClass(((ArrayType) type).getComponentType());
+            case DECLARED -> ((DeclaredType) type).getTypeArguments().isEmpty();
+            case TYPEVAR -> false;
+            default -> true;
+        };
+    }
+
+    private boolean isAccessible(TypeElement type, PackageElement packageElement) {
+        Element element = type;
+        while (element instanceof TypeElement typeElement) {
+            if (typeElement.getNestingKind() == NestingKind.LOCAL || typeElement.getNestingKind() == NestingKind.ANONYMOUS || typeElement.getModifiers().contains(Modifier.PRIVATE)) {
+                return false;
+            }
+
+            if (!typeElement.getModifiers().contains(Modifier.PUBLIC) && !this.elements.getPackageOf(typeElement).equals(packageElement)) {
+                return false;
+            }
+
+            element = typeElement.getEnclosingElement();
+        }
+
+        return true;
+    }
+
+    /**
+     * Only type annotations retained at runtime end up in reflectively converted tokens.
+     */
+    private boolean hasRuntimeAnnotations(TypeMirror type) {
+        for (final AnnotationMirror annotation : type.getAnnotationMirrors()) {
+            final Retention retention = annotation.getAnnotationType().asElement().getAnnotation(Retention.class);
+            if (retention != null && retention.value() == RetentionPolicy.RUNTIME) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,282 @@
+package org.spring4mc.utility.processor;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.spring4mc.utility.typetoken.TypeToken;
+import org.spring4mc.utility.typetoken.TypeTokenMetadata;
+
+import javax.tools.*;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TypeTokenProcessorTest {
+    private static final String MEMBERS = """
+            package fixture;
+
+            import org.spring4mc.utility.typetoken.GenerateTypeTokens;
+
+            import java.lang.annotation.*;
+            import java.util.*;
+
+            @GenerateTypeTokens
+            public class Members<T extends Comparable<T>, U extends List<? super T>> {
+                public int primitive;
+                public String[] array;
+                public List raw;
+                public List<?> unbounded;
+                public Map<String, ? extends Number> extendsBound;
+                public Comparator<? super T> superBound;
+                public T recursive;
+                public U dependent;
+                public Map.Entry<T, List<U>> nested;
+                public Static<Integer> staticNested;
+                public @Invisible String invisible;
+                public List<@Invisible String> invisibleArgument;
+
+                public T[] genericArray;
+                public List<String>[] parameterizedArray;
+                public Members<T, U>.Inner<String> inner;
+                public @Visible String visible;
+                public Map<String, @Visible Integer> visibleArgument;
+                Hidden hidden;
+
+                public void nothing() {
+                }
+
+                public List<T> parameters(Map<String, U> byName, int index) {
+                    return null;
+                }
+
+                public U overloaded(String value) {
+                    return null;
+                }
+
+                public U overloaded(List<T> values) {
+                    return null;
+                }
+
+                public T varargs(T... values) {
+                    return null;
+                }
+
+                public <M extends T> M methodTypeVar(M value) {
+                    return value;
+                }
+
+                public static <E extends Enum<E>> E enumOf(Class<?> type, String name) {
+                    return null;
+                }
+
+                public class Inner<V> {
+                }
+
+                public static class Static<S extends Number> {
+                }
+
+                private static class Hidden {
+                }
+
+                @Retention(RetentionPolicy.RUNTIME)
+                @Target(ElementType.TYPE_USE)
+                @interface Visible {
+                }
+
+                @Retention(RetentionPolicy.CLASS)
+                @Target(ElementType.TYPE_USE)
+                @interface Invisible {
+                }
+            }
+            """;
+
+    private static final String CONTAINER = """
+            package fixture;
+
+            import org.spring4mc.utility.typetoken.GenerateTypeTokens;
+
+            import java.util.*;
+
+            public class Container {
+                @GenerateTypeTokens
+                public static class Nested<K extends Comparable<? super K>> {
+                    public SortedMap<K, Set<? extends K>> sorted;
+
+                    public Optional<K> first(Collection<? extends K> values) {
+                        return null;
+                    }
+                }
+            }
+            """;
+
+    @TempDir
+    Path output;
+
+    @Test
+    void describesMembersAsConvertedByReflection() throws Exception {
+        try (final URLClassLoader classLoader = this.compile()) {
+            final Class<?> members = Class.forName("fixture.Members", true, classLoader);
+            final Described described = describe(members);
+
+            assertEquals(Set.of("primitive", "array", "raw", "unbounded", "extendsBound", "superBound", "recursive", "dependent",
+                    "nested", "staticNested", "invisible", "invisibleArgument"), described.fields.keySet());
+            assertEquals(Set.of("nothing[]", "parameters[java.util.Map, int]", "overloaded[java.lang.String]", "overloaded[java.util.List]",
+                    "varargs[[Ljava.lang.Comparable;]"), described.methodReturnTypes.keySet());
+            assertEquals(Set.of("nothing[]", "parameters[java.util.Map, int]", "overloaded[java.lang.String]", "overloaded[java.util.List]",
+                    "enumOf[java.lang.Class, java.lang.String]"), described.methodParameterTypes.keySet());
+
+            assertDescribedAsReflection(members, described);
+        }
+    }
+
+    @Test
+    void describesNestedClasses() throws Exception {
+        try (final URLClassLoader classLoader = this.compile()) {
+            final Class<?> nested = Class.forName("fixture.Container$Nested", true, classLoader);
+            final Described described = describe(nested);
+
+            assertEquals(Set.of("sorted"), described.fields.keySet());
+            assertEquals(Set.of("first[java.util.Collection]"), described.methodReturnTypes.keySet());
+            assertDescribedAsReflection(nested, described);
+        }
+    }
+
+    @Test
+    void leavesOutUnsupportedMembers() throws Exception {
+        try (final URLClassLoader classLoader = this.compile()) {
+            final Class<?> members = Class.forName("fixture.Members", true, classLoader);
+            final Described described = describe(members);
+
+            for (final String name : List.of("genericArray", "parameterizedArray", "inner", "visible", "visibleArgument", "hidden")) {
+                assertFalse(described.fields.containsKey(name), name);
+            }
+
+            // Left out members are still converted by reflection, as far as the converter supports them
+            for (final String name : List.of("inner", "visible", "visibleArgument", "hidden")) {
+                final Field field = members.getDeclaredField(name);
+                final TypeToken<?> converted = TypeToken.create(field.getGenericType(), field.getAnnotatedType());
+                assertEquals(converted, TypeToken.ofFieldType(field), name);
+                assertEquals(converted.toCanonicalString(), TypeToken.ofFieldType(field).toCanonicalString(), name);
+            }
+
+            assertThrows(UnsupportedOperationException.class, () -> TypeToken.ofFieldType(members.getDeclaredField("genericArray")));
+        }
+    }
+
+    private static void assertDescribedAsReflection(Class<?> type, Described described) {
+        for (final Map.Entry<String, TypeToken<?>> entry : described.fields.entrySet()) {
+            final Field field = getField(type, entry.getKey());
+            assertSameToken(TypeToken.create(field.getGenericType(), field.getAnnotatedType()), entry.getValue(), field.toString());
+            assertSameToken(TypeToken.ofFieldType(field), entry.getValue(), field.toString());
+        }
+
+        for (final Method method : type.getDeclaredMethods()) {
+            final TypeToken<?> returnType = described.methodReturnTypes.get(key(method.getName(), method.getParameterTypes()));
+            if (returnType != null) {
+                assertSameToken(TypeToken.create(method.getGenericReturnType(), method.getAnnotatedReturnType()), returnType, method.toString());
+                assertSameToken(TypeToken.ofMethodReturnType(method), returnType, method.toString());
+            }
+
+            final TypeToken<?>[] parameterTypes = described.methodParameterTypes.get(key(method.getName(), method.getParameterTypes()));
+            if (parameterTypes != null) {
+                assertEquals(method.getParameterCount(), parameterTypes.length, method.toString());
+                for (int i = 0; i < parameterTypes.length; i++) {
+                    assertSameToken(TypeToken.create(method.getGenericParameterTypes()[i], method.getAnnotatedParameterTypes()[i]), parameterTypes[i], method + " #" + i);
+                    assertSameToken(TypeToken.ofMethodParameterType(method, i), parameterTypes[i], method + " #" + i);
+                }
+            }
+        }
+    }
+
+    private static void assertSameToken(TypeToken<?> expected, TypeToken<?> actual, String member) {
+        assertEquals(expected, actual, member);
+        assertEquals(expected.toCanonicalString(), actual.toCanonicalString(), member);
+    }
+
+    private static Field getField(Class<?> type, String name) {
+        try {
+            return type.getDeclaredField(name);
+        } catch (NoSuchFieldException e) {
+            throw new AssertionError("Described field " + name + " isn't declared", e);
+        }
+    }
+
+    private static Described describe(Class<?> type) throws ReflectiveOperationException {
+        final Class<?> metadataClass = Class.forName(type.getName() + TypeTokenMetadata.SUFFIX, true, type.getClassLoader());
+        final Described described = new Described();
+        ((TypeTokenMetadata) metadataClass.getDeclaredConstructor().newInstance()).describe(described);
+        return described;
+    }
+
+    private static String key(String name, Class<?>[] parameterClasses) {
+        final StringJoiner key = new StringJoiner(", ", name + "[", "]");
+        for (final Class<?> parameterClass : parameterClasses) {
+            key.add(parameterClass.getName());
+        }
+
+        return key.toString();
+    }
+
+    /**
+     * Compiles the fixtures with the processor and loads them, together with the generated sources, in a new class
+     * loader on top of the test class path.
+     */
+    private URLClassLoader compile() throws IOException {
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        try (final StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, Locale.ROOT, null)) {
+            final List<String> options = List.of("-d", this.output.toString(), "-s", this.output.toString(),
+                    "-classpath", System.getProperty("java.class.path"));
+            final JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics, options, null,
+                    List.of(new Source("fixture/Members", MEMBERS), new Source("fixture/Container", CONTAINER)));
+            task.setProcessors(List.of(new TypeTokenProcessor()));
+
+            assertTrue(task.call(), () -> diagnostics.getDiagnostics().toString());
+        }
+
+        return new URLClassLoader(new URL[]{this.output.toUri().toURL()}, TypeTokenProcessorTest.class.getClassLoader());
+    }
+
+    private static final class Source extends SimpleJavaFileObject {
+        private final String content;
+
+        private Source(String path, String content) {
+            super(URI.create("string:///" + path + Kind.SOURCE.extension), Kind.SOURCE);
+            this.content = content;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return this.content;
+        }
+    }
+
+    private static final class Described implements TypeTokenMetadata.Collector {
+        private final Map<String, TypeToken<?>> fields = new HashMap<>();
+        private final Map<String, TypeToken<?>> methodReturnTypes = new HashMap<>();
+        private final Map<String, TypeToken<?>[]> methodParameterTypes = new HashMap<>();
+
+        @Override
+        public void field(String name, TypeToken<?> type) {
+            assertNull(this.fields.put(name, type), name);
+        }
+
+        @Override
+        public void method(String name, Class<?>[] parameterClasses, TypeToken<?> returnType, TypeToken<?>[] parameterTypes) {
+            final String key = key(name, parameterClasses);
+            if (returnType != null) {
+                assertNull(this.methodReturnTypes.put(key, returnType), key);
+            }
+
+            if (parameterTypes != null) {
+                assertNull(this.methodParameterTypes.put(key, parameterTypes), key);
+            }
+        }
+    }
+}